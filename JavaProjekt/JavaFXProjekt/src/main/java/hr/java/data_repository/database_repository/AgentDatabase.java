@@ -1,15 +1,21 @@
 package hr.java.data_repository.database_repository;
 
 import hr.java.entity.Agent;
-import hr.java.data_repository.file_repository.LoggedInUserDataRepository;
 import hr.java.entity.LoggedInUser;
 import hr.java.enums.AgentStatus;
 import hr.java.enums.AgentType;
+import hr.java.enums.TicketStatus;
+import hr.java.events.AgentChanged;
+import hr.java.events.EventBus;
 import hr.java.exception.DatabaseException;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
@@ -19,6 +25,8 @@ import static org.example.javafxprojekt.main.Main.logger;
  * This class provides methods for adding, getting, updating, and deleting agents,
  * as well as assigning tickets to agents.
  *
+ * Lookups by ID and email are served from an {@link EntityCache} that is invalidated
+ * when an agent is updated or deleted. Each call returns its own copy of the cached agent.
  */
 public class AgentDatabase extends Database
 {
@@ -30,6 +38,20 @@ public class AgentDatabase extends Database
     private static String email = "email";
     private static String agenttype = "agenttype";
 
+    private static final int CACHE_SIZE = 1000;
+    private static final Duration CACHE_TIME_TO_LIVE = Duration.ofSeconds(30);
+    private static final EntityCache<Long, Agent> agentsById = new EntityCache<>("agentsById", CACHE_SIZE, CACHE_TIME_TO_LIVE);
+    private static final EntityCache<String, Agent> agentsByEmail = new EntityCache<>("agentsByEmail", CACHE_SIZE, CACHE_TIME_TO_LIVE);
+
+    static
+    {
+        EventBus.subscribe(AgentChanged.class, event ->
+        {
+            agentsById.invalidate(event.agentID());
+            agentsByEmail.invalidateIf(agent -> event.agentID().equals(agent.getId()));
+        });
+    }
+
     /**
      * Private constructor to prevent instantiation.
      */
@@ -61,6 +83,39 @@ public class AgentDatabase extends Database
         }
     }
 
+    /**
+     * Adds a new agent together with their login credentials in one transaction.
+     *
+     * @param agent        the agent to add
+     * @param loggedInUser the credentials of the agent, with the password already hashed
+     * @throws DatabaseException if an error occurs during database operations or the email is already taken
+     */
+    public static void addNewAgent(Agent agent, LoggedInUser loggedInUser)
+    {
+        String sql = "INSERT INTO AGENT(FIRSTNAME, LASTNAME, EMAIL, AGENTTYPE) VALUES(?, ?, ?, ?)";
+        try (Connection connection = openConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql))
+            {
+                stmt.setString(1, agent.getFirstName());
+                stmt.setString(2, agent.getLastName());
+                stmt.setString(3, agent.getEmail());
+                stmt.setString(4, agent.getAgentType().toString());
+                stmt.executeUpdate();
+                CredentialDatabase.insert(connection, loggedInUser);
+                connection.commit();
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not add agent to the database! {} ", e.getMessage());
+            throw new DatabaseException("Could not add agent to the database!");
+        }
+    }
 
     /**
      * Retrieves all agents from the database.
@@ -73,19 +128,12 @@ public class AgentDatabase extends Database
         List<Agent> agents = new ArrayList<>();
         String sql = "SELECT ID, FIRSTNAME, LASTNAME, EMAIL, AGENTTYPE FROM AGENT";
         try (Connection connection = openConnection();
-             Statement stmt = connection.createStatement())
+             PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery())
         {
-
-            ResultSet rs = stmt.executeQuery(sql);
             while (rs.next())
             {
-                Long id = rs.getLong("ID");
-                String firstName = rs.getString(firstname);
-                String lastName = rs.getString(lastname);
-                String email = rs.getString(AgentDatabase.email);
-                String agentType = rs.getString(agenttype);
-                Agent agent = new Agent(id, firstName, lastName, email, AgentStatus.AVAILABLE, AgentType.valueOf(agentType));
-                agents.add(agent);
+                agents.add(mapAgent(rs));
             }
         } catch (SQLException e)
         {
@@ -122,6 +170,7 @@ public class AgentDatabase extends Database
 
     /**
      * Updates an agent's information in the database.
+     * A new first or last name is copied to the agent's credentials in the same transaction.
      *
      * @param column the column to update
      * @param newValue the new value for the column
@@ -131,80 +180,167 @@ public class AgentDatabase extends Database
     public static void updateAgent(String column, String newValue, Long agentID)
     {
         String sql = "UPDATE AGENT SET " + column + " = ? WHERE id = ?";
-        try (Connection connection = openConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql))
+        try (Connection connection = openConnection())
         {
-            stmt.setString(1, newValue);
-            stmt.setLong(2, agentID);
-            stmt.executeUpdate();
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql))
+            {
+                stmt.setString(1, newValue);
+                stmt.setLong(2, agentID);
+                stmt.executeUpdate();
+                CredentialDatabase.copyAgentName(connection, column, newValue, agentID);
+                connection.commit();
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e)
         {
             logger.error("Could not update agent {} ", e.getMessage());
             throw new DatabaseException("Could not update agent with id: " + agentID);
         }
+        EventBus.publish(new AgentChanged(agentID));
     }
 
     /**
-     * Deletes an agent from the database.
+     * Deletes an agent and their login credentials from the database in one transaction.
      *
      * @param agent the agent to delete
      * @throws DatabaseException if an error occurs during database operations
      */
     public static void deleteAgent(Agent agent)
     {
-        List<LoggedInUser> loggedInAgents = LoggedInUserDataRepository.readFromTextFile();
-        loggedInAgents.removeIf(loggedInUser -> loggedInUser.getEmail().equals(agent.getEmail()));
-        LoggedInUserDataRepository.saveToTextFile(loggedInAgents);
         String sql = "DELETE FROM AGENT WHERE ID = ?";
-        try (Connection connection = openConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql))
+        try (Connection connection = openConnection())
         {
-            stmt.setLong(1, agent.getId());
-            stmt.executeUpdate();
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql))
+            {
+                stmt.setLong(1, agent.getId());
+                if (stmt.executeUpdate() > 0)
+                {
+                    ChangeFeed.recordDeletion(connection, ChangeFeed.AGENT, agent.getId());
+                }
+                CredentialDatabase.delete(connection, agent.getEmail());
+                connection.commit();
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e)
         {
             logger.error("Could not delete agent {} ", e.getMessage());
             throw new DatabaseException("Could not delete agent with ID: " + agent.getId() + "!");
         }
+        EventBus.publish(new AgentChanged(agent.getId()));
     }
 
+    /**
+     * Retrieves the agents inserted, updated or deleted after the given version.
+     *
+     * @param version the last version the caller has seen, see {@link Database#getCurrentVersion()}
+     * @return the changed agents, the IDs of deleted agents and the version to continue from
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static ChangeSet<Agent> getChangesSince(long version)
+    {
+        try (Connection connection = openConnection())
+        {
+            return ChangeFeed.changesSince(connection, ChangeFeed.AGENT, "ID, FIRSTNAME, LASTNAME, EMAIL, AGENTTYPE",
+                    version, AgentDatabase::mapAgent);
+        } catch (SQLException e)
+        {
+            logger.error("Could not get changed agents! {} ", e.getMessage());
+            throw new DatabaseException("Could not get agents changed since version " + version + "!", e);
+        }
+    }
 
     /**
-     * Retrieves an agent by email from the database.
+     * Maps the current row of a ResultSet to an Agent.
+     *
+     * @param rs the result set positioned on an agent row
+     * @return the agent, available until its tickets say otherwise
+     * @throws SQLException if a database access error occurs
+     */
+    private static Agent mapAgent(ResultSet rs) throws SQLException
+    {
+        Long id = rs.getLong("ID");
+        String firstName = rs.getString(firstname);
+        String lastName = rs.getString(lastname);
+        String email = rs.getString(AgentDatabase.email);
+        String agentType = rs.getString(agenttype);
+        return new Agent(id, firstName, lastName, email, AgentStatus.AVAILABLE, AgentType.valueOf(agentType));
+    }
+
+    /**
+     * Retrieves an agent by email, from the cache if it was looked up recently.
      *
      * @param email the email of the agent to retrieve
      * @return the agent with the specified email
-     * @throws DatabaseException if an error occurs during database operations
+     * @throws DatabaseException if there is no such agent or an error occurs during database operations
      */
     public static Agent getAgentByEmail(String email)
     {
-        String sql = "SELECT ID, FIRSTNAME, LASTNAME, EMAIL, AGENTTYPE FROM AGENT WHERE EMAIL = ?";
+        Agent agent = agentsByEmail.get(email, key -> findAgent("EMAIL", key));
+        if (agent == null)
+        {
+            logger.error("Could not get agent with email: {}", email);
+            throw new DatabaseException("Could not get agent with email: " + email + "!");
+        }
+        return copyOf(agent);
+    }
+
+    /**
+     * Retrieves an agent by ID, from the cache if it was looked up recently.
+     *
+     * @param agentID the ID of the agent to retrieve
+     * @return the agent with the specified ID, or null if the ID is null or there is no such agent
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static Agent getAgentById(Long agentID)
+    {
+        if (agentID == null)
+        {
+            return null;
+        }
+        Agent agent = agentsById.get(agentID, key -> findAgent("ID", key));
+        return agent == null ? null : copyOf(agent);
+    }
+
+    /**
+     * Reads one agent by a unique column.
+     *
+     * @param column the unique column to match
+     * @param value  the value to match
+     * @return the agent, or null if there is none
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    private static Agent findAgent(String column, Object value)
+    {
+        String sql = "SELECT ID, FIRSTNAME, LASTNAME, EMAIL, AGENTTYPE FROM AGENT WHERE " + column + " = ?";
         try (Connection connection = openConnection();
              PreparedStatement stmt = connection.prepareStatement(sql))
         {
-            stmt.setString(1, email);
+            stmt.setObject(1, value);
             try (ResultSet rs = stmt.executeQuery())
             {
-                rs.next();
-                Long id = rs.getLong("ID");
-                String firstName = rs.getString("FIRSTNAME");
-                String lastName = rs.getString("LASTNAME");
-                String agentType = rs.getString("AGENTTYPE");
-                String agentEmail = rs.getString("EMAIL");
-                Result result = new Result(id, firstName, lastName, agentType, agentEmail);
-                return new Agent(result.id(), result.firstName(), result.lastName(), result.agentEmail(), AgentStatus.AVAILABLE, AgentType.valueOf(result.agentType()));
+                return rs.next() ? mapAgent(rs) : null;
             }
         } catch (SQLException e)
         {
-            logger.error("Could not get agent with email: {}", email);
-            throw new DatabaseException("Could not get agent with email: " + email + "!");
+            logger.error("Could not get agent by {}: {}", column, e.getMessage());
+            throw new DatabaseException("Could not get agent with " + column.toLowerCase() + ": " + value + "!", e);
         }
     }
 
-    private record Result(Long id, String firstName, String lastName, String agentType, String agentEmail) {
+    private static Agent copyOf(Agent agent)
+    {
+        return new Agent(agent.getId(), agent.getFirstName(), agent.getLastName(), agent.getEmail(),
+                agent.getAgentStatus(), agent.getAgentType());
     }
 
-
     /**
      * Assigns a ticket to an agent in the database.
      *
@@ -230,6 +366,63 @@ public class AgentDatabase extends Database
         }
     }
 
+    /**
+     * Assigns open tickets to agents in a single transaction using one JDBC batch.
+     * A ticket is only assigned if it is still open and not locked by another transaction,
+     * so tickets claimed in the meantime are reported as not assigned.
+     *
+     * @param assignments the agent ID to assign, keyed by ticket ID
+     * @return whether each ticket was assigned, keyed by ticket ID in the order given
+     * @throws DatabaseException if an error occurs during database operations, in which case no ticket is assigned
+     */
+    public static Map<Long, Boolean> assignTickets(Map<Long, Long> assignments)
+    {
+        Map<Long, Boolean> outcomes = new LinkedHashMap<>();
+        if (assignments.isEmpty())
+        {
+            return outcomes;
+        }
+        String sql = "UPDATE Ticket SET agent_id = ?, status = ? WHERE ticket_id = ? AND status = ?";
+        try (Connection connection = openConnection())
+        {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql))
+            {
+                Set<Long> claimed = TicketDatabase.claimTickets(connection, assignments.keySet(), TicketStatus.OPEN);
+                List<Long> claimedTicketIDs = new ArrayList<>();
+                for (Map.Entry<Long, Long> assignment : assignments.entrySet())
+                {
+                    outcomes.put(assignment.getKey(), false);
+                    if (!claimed.contains(assignment.getKey()))
+                    {
+                        continue;
+                    }
+                    claimedTicketIDs.add(assignment.getKey());
+                    stmt.setLong(1, assignment.getValue());
+                    stmt.setString(2, TicketStatus.IN_PROGRESS.toString());
+                    stmt.setLong(3, assignment.getKey());
+                    stmt.setString(4, TicketStatus.OPEN.toString());
+                    stmt.addBatch();
+                }
+                int[] updateCounts = claimedTicketIDs.isEmpty() ? new int[0] : stmt.executeBatch();
+                connection.commit();
+                for (int i = 0; i < claimedTicketIDs.size(); i++)
+                {
+                    outcomes.put(claimedTicketIDs.get(i), isRowUpdated(updateCounts[i]));
+                }
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not assign tickets to agents {} ", e.getMessage());
+            throw new DatabaseException("Could not assign " + assignments.size() + " tickets to agents!", e);
+        }
+        return outcomes;
+    }
+
     /**
      * Retrieves an agent by ticket ID from the database.
      *
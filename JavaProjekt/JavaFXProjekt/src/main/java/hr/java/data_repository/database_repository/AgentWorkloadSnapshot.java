@@ -0,0 +1,73 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.enums.AgentStatus;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The in-progress tickets of every agent at one point in time.
+ *
+ * A snapshot is read with a single grouped query by {@link TicketDatabase#getAgentWorkloadSnapshot()},
+ * so views can look up any number of agents without querying the database per agent.
+ */
+public final class AgentWorkloadSnapshot {
+
+    /**
+     * A snapshot in which no agent has in-progress tickets.
+     */
+    public static final AgentWorkloadSnapshot EMPTY = new AgentWorkloadSnapshot(Map.of());
+
+    private final Map<Long, List<Long>> ticketIDsByAgent;
+
+    /**
+     * Creates a snapshot.
+     *
+     * @param ticketIDsByAgent the in-progress ticket IDs keyed by agent ID
+     */
+    AgentWorkloadSnapshot(Map<Long, List<Long>> ticketIDsByAgent) {
+        this.ticketIDsByAgent = Map.copyOf(ticketIDsByAgent);
+    }
+
+    /**
+     * Returns the IDs of the agent's in-progress tickets.
+     *
+     * @param agentID the agent ID
+     * @return the ticket IDs in ascending order, empty if the agent has none
+     */
+    public List<Long> getInProgressTicketIDs(long agentID) {
+        return ticketIDsByAgent.getOrDefault(agentID, List.of());
+    }
+
+    /**
+     * Returns the number of the agent's in-progress tickets.
+     *
+     * @param agentID the agent ID
+     * @return the number of in-progress tickets
+     */
+    public int getInProgressTicketCount(long agentID) {
+        return getInProgressTicketIDs(agentID).size();
+    }
+
+    /**
+     * Returns the agent's status, busy while it has at least one ticket in progress.
+     *
+     * @param agentID the agent ID
+     * @return the agent status
+     */
+    public AgentStatus getAgentStatus(long agentID) {
+        return getInProgressTicketCount(agentID) > 0 ? AgentStatus.BUSY : AgentStatus.AVAILABLE;
+    }
+
+    /**
+     * Returns the number of in-progress tickets of every agent that has any.
+     *
+     * @return the ticket counts keyed by agent ID
+     */
+    public Map<Long, Integer> getInProgressTicketCounts() {
+        Map<Long, Integer> counts = new HashMap<>();
+        ticketIDsByAgent.forEach((agentID, ticketIDs) -> counts.put(agentID, ticketIDs.size()));
+        return counts;
+    }
+}
@@ -0,0 +1,28 @@
+package hr.java.data_repository.database_repository;
+
+/**
+ * A point-in-time snapshot of the metrics of one entity cache.
+ *
+ * @param name          the cache name
+ * @param size          the number of cached entries
+ * @param maxSize       the configured number of entries after which the least recently used one is evicted
+ * @param hits          the number of lookups served from the cache
+ * @param misses        the number of lookups that had to query the database
+ * @param evictions     the number of entries evicted because the cache was full
+ * @param expirations   the number of entries dropped because they were older than the time to live
+ * @param invalidations the number of entries dropped because the entity changed
+ */
+public record CacheStatistics(String name, int size, int maxSize, long hits, long misses, long evictions,
+                              long expirations, long invalidations)
+{
+    /**
+     * Returns the share of lookups served from the cache.
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    public double hitRatio()
+    {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+}
@@ -0,0 +1,93 @@
+package hr.java.data_repository.database_repository;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Remembers how far a reader has followed the change feed.
+ *
+ * A row takes its version from the CHANGE_VERSION sequence when it is written, but it only becomes visible when
+ * its transaction commits, which can be after a higher version was already read. A version read from
+ * {@link Database#getCurrentVersion()} therefore only counts as seen once it was read at least the settle time ago;
+ * until then every read starts again from the last settled version. Reading a change twice is harmless, applying it
+ * again gives the same rows. Transactions that stay open longer than the settle time are only picked up by a full reload.
+ */
+public final class ChangeCursor {
+
+    public static final Duration DEFAULT_SETTLE_TIME = Duration.ofSeconds(10);
+
+    private final long settleNanos;
+    private final Deque<Observation> observations = new ArrayDeque<>();
+    private long version;
+
+    /**
+     * Creates a cursor that starts at the version read before a full load, using the default settle time.
+     *
+     * @param version the version read before the full load
+     */
+    public ChangeCursor(long version) {
+        this(version, DEFAULT_SETTLE_TIME);
+    }
+
+    /**
+     * Creates a cursor that starts at the version read before a full load.
+     *
+     * @param version    the version read before the full load
+     * @param settleTime how long a version has to be known before the rows written with it are assumed committed
+     */
+    public ChangeCursor(long version, Duration settleTime) {
+        this.version = version;
+        this.settleNanos = settleTime.toNanos();
+    }
+
+    /**
+     * Plans the next read of the change feed. Nothing moves until {@link #advance(Read)} is called with the plan,
+     * so a read whose changes are dropped is simply planned again.
+     *
+     * @param currentVersion the current version, see {@link Database#getCurrentVersion()}
+     * @return the version to read the changes after and the version the cursor may advance to once they are
+     * applied, or null if every change up to the current version has been seen
+     */
+    public synchronized Read nextRead(long currentVersion) {
+        if (currentVersion <= version) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (observations.isEmpty() || observations.getLast().version() < currentVersion) {
+            observations.addLast(new Observation(currentVersion, now));
+        }
+        long settled = version;
+        for (Observation observation : observations) {
+            if (now - observation.nanoTime() < settleNanos) {
+                break;
+            }
+            settled = observation.version();
+        }
+        return new Read(version, settled);
+    }
+
+    /**
+     * Moves the cursor after the changes of a read were applied.
+     *
+     * @param read the applied read
+     */
+    public synchronized void advance(Read read) {
+        if (read.settledVersion() > version) {
+            version = read.settledVersion();
+            observations.removeIf(observation -> observation.version() <= version);
+        }
+    }
+
+    /**
+     * A planned read of the change feed.
+     *
+     * @param since          the version to read the changes after
+     * @param settledVersion the version the cursor advances to once the changes are applied
+     */
+    public record Read(long since, long settledVersion) {
+    }
+
+    private record Observation(long version, long nanoTime) {
+    }
+}
@@ -0,0 +1,155 @@
+package hr.java.data_repository.database_repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Tracks row changes of the TICKET, AGENT and CUSTOMER tables.
+ *
+ * Every table has a VERSION column that H2 sets from the CHANGE_VERSION sequence whenever a row is
+ * inserted or updated. Deleted rows leave a tombstone in CHANGE_TOMBSTONE with their own version, so
+ * a reader that remembers the highest version it has seen can ask for just the rows changed since.
+ */
+final class ChangeFeed {
+
+    static final String TICKET = "TICKET";
+    static final String AGENT = "AGENT";
+    static final String CUSTOMER = "CUSTOMER";
+
+    private static final String VERSION_COLUMN =
+            " ADD COLUMN IF NOT EXISTS VERSION BIGINT DEFAULT NEXT VALUE FOR CHANGE_VERSION ON UPDATE NEXT VALUE FOR CHANGE_VERSION";
+
+    private static final List<String> SCHEMA = List.of(
+            "CREATE SEQUENCE IF NOT EXISTS CHANGE_VERSION",
+            "ALTER TABLE TICKET" + VERSION_COLUMN,
+            "ALTER TABLE AGENT" + VERSION_COLUMN,
+            "ALTER TABLE CUSTOMER" + VERSION_COLUMN,
+            "CREATE INDEX IF NOT EXISTS TICKET_VERSION_IDX ON TICKET(VERSION)",
+            "CREATE INDEX IF NOT EXISTS AGENT_VERSION_IDX ON AGENT(VERSION)",
+            "CREATE INDEX IF NOT EXISTS CUSTOMER_VERSION_IDX ON CUSTOMER(VERSION)",
+            "CREATE TABLE IF NOT EXISTS CHANGE_TOMBSTONE (ENTITY VARCHAR(20) NOT NULL, ENTITY_ID BIGINT NOT NULL, "
+                    + "VERSION BIGINT DEFAULT NEXT VALUE FOR CHANGE_VERSION NOT NULL)",
+            "CREATE INDEX IF NOT EXISTS CHANGE_TOMBSTONE_VERSION_IDX ON CHANGE_TOMBSTONE(ENTITY, VERSION)");
+
+    /**
+     * Maps the current row of a result set to an entity.
+     *
+     * @param <T> the entity type
+     */
+    @FunctionalInterface
+    interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * Adds the version columns, the sequence and the tombstone table if they do not exist yet.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if the schema could not be changed
+     */
+    static void install(Connection connection) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : SCHEMA) {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Returns the highest version handed out so far.
+     *
+     * @param connection the connection to use
+     * @return the current version
+     * @throws SQLException if a database access error occurs
+     */
+    static long currentVersion(Connection connection) throws SQLException {
+        String sql = "SELECT BASE_VALUE - INCREMENT FROM INFORMATION_SCHEMA.SEQUENCES WHERE SEQUENCE_NAME = 'CHANGE_VERSION'";
+        try (PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    /**
+     * Records that rows were deleted. Must run in the same transaction as the delete,
+     * before it if the rows are selected by a condition.
+     *
+     * @param connection the connection to use
+     * @param entity     the table the rows belong to
+     * @param idQuery    a query selecting the IDs of the deleted rows
+     * @param id         the parameter of the ID query
+     * @throws SQLException if a database access error occurs
+     */
+    static void recordDeletions(Connection connection, String entity, String idQuery, long id) throws SQLException {
+        try (PreparedStatement stmt = connection.prepareStatement(
+                "INSERT INTO CHANGE_TOMBSTONE (ENTITY, ENTITY_ID) SELECT '" + entity + "', ID FROM (" + idQuery + ")")) {
+            stmt.setLong(1, id);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Records that one row was deleted.
+     *
+     * @param connection the connection to use
+     * @param entity     the table the row belongs to
+     * @param id         the ID of the deleted row
+     * @throws SQLException if a database access error occurs
+     */
+    static void recordDeletion(Connection connection, String entity, long id) throws SQLException {
+        recordDeletions(connection, entity, "SELECT CAST(? AS BIGINT) AS ID", id);
+    }
+
+    /**
+     * Reads the rows of a table changed after a version.
+     *
+     * Rows are only visible once their transaction commits, so a row written by a transaction that commits
+     * after a later version has been read can have a version below the returned one. Callers follow the feed
+     * with a {@link ChangeCursor}, which reads recent versions again until they have settled.
+     *
+     * @param connection the connection to use
+     * @param entity     the table
+     * @param columns    the columns the row mapper reads
+     * @param version    the last version the caller has seen
+     * @param mapper     maps one row to an entity
+     * @param <T>        the entity type
+     * @return the changed and deleted rows and the version to continue from
+     * @throws SQLException if a database access error occurs
+     */
+    static <T> ChangeSet<T> changesSince(Connection connection, String entity, String columns,
+                                         long version, RowMapper<T> mapper) throws SQLException {
+        long latest = version;
+        List<T> upserted = new ArrayList<>();
+        String sql = "SELECT " + columns + ", VERSION FROM " + entity + " WHERE VERSION > ? ORDER BY VERSION";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setLong(1, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    upserted.add(mapper.map(rs));
+                    latest = Math.max(latest, rs.getLong("VERSION"));
+                }
+            }
+        }
+        List<Long> deletedIds = new ArrayList<>();
+        sql = "SELECT ENTITY_ID, VERSION FROM CHANGE_TOMBSTONE WHERE ENTITY = ? AND VERSION > ? ORDER BY VERSION";
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, entity);
+            stmt.setLong(2, version);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    deletedIds.add(rs.getLong("ENTITY_ID"));
+                    latest = Math.max(latest, rs.getLong("VERSION"));
+                }
+            }
+        }
+        return new ChangeSet<>(upserted, deletedIds, latest);
+    }
+}
@@ -0,0 +1,61 @@
+package hr.java.data_repository.database_repository;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.ToLongFunction;
+
+/**
+ * The rows of one table that changed after a given version.
+ *
+ * @param upserted   the rows that were inserted or updated, in their current state
+ * @param deletedIds the IDs of the rows that were deleted
+ * @param version    the highest version among the changes, or the version asked for if nothing changed;
+ *                   follow the feed with a {@link ChangeCursor} rather than continuing from it
+ * @param <T>        the entity type
+ */
+public record ChangeSet<T>(List<T> upserted, List<Long> deletedIds, long version) {
+
+    /**
+     * Checks whether nothing changed.
+     *
+     * @return true if there are no upserted or deleted rows
+     */
+    public boolean isEmpty() {
+        return upserted.isEmpty() && deletedIds.isEmpty();
+    }
+
+    /**
+     * Applies the changes to a list holding every row of the table. Updated rows are replaced in place,
+     * new rows are appended and deleted rows are removed.
+     *
+     * @param items the list to update
+     * @param id    returns the ID of a row
+     */
+    public void applyTo(List<T> items, ToLongFunction<T> id) {
+        if (isEmpty()) {
+            return;
+        }
+        Map<Long, T> pending = new HashMap<>();
+        for (T entity : upserted) {
+            pending.put(id.applyAsLong(entity), entity);
+        }
+        Set<Long> deleted = new HashSet<>(deletedIds);
+        for (int i = 0; i < items.size(); i++) {
+            T replacement = pending.remove(id.applyAsLong(items.get(i)));
+            if (replacement != null) {
+                items.set(i, replacement);
+            }
+        }
+        if (!deleted.isEmpty()) {
+            items.removeIf(entity -> deleted.contains(id.applyAsLong(entity)));
+        }
+        for (T entity : upserted) {
+            if (pending.containsKey(id.applyAsLong(entity)) && !deleted.contains(id.applyAsLong(entity))) {
+                items.add(entity);
+            }
+        }
+    }
+}
@@ -0,0 +1,434 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * A bounded pool of validated JDBC connections.
+ *
+ * Connections are leased with {@link #lease()} and returned by closing the
+ * leased handle. Idle connections are validated before reuse, evicted after
+ * the idle timeout, and connections held longer than the leak threshold are
+ * reported in the log. The housekeeper opens connections in the background until
+ * at least {@code pool.minIdle} are idle, when the pool starts and after every eviction
+ * run, so the first leases after a quiet period do not wait for a new connection.
+ * Each connection keeps its own LRU cache of prepared statements.
+ */
+final class ConnectionPool
+{
+    private static final long HOUSEKEEPING_PERIOD_SECONDS = 30;
+
+    private final String databaseUrl;
+    private final String username;
+    private final String password;
+    private final int maxSize;
+    private final int minIdle;
+    private final long leaseTimeoutNanos;
+    private final long idleTimeoutMillis;
+    private final long validationIntervalMillis;
+    private final int validationTimeoutSeconds;
+    private final long leakThresholdMillis;
+    private final int statementCacheSize;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    private final Set<PooledConnection> leased = ConcurrentHashMap.newKeySet();
+    private final ScheduledExecutorService housekeeper;
+    private int totalConnections;
+    private boolean closed;
+
+    private final AtomicLong leaseCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong leaksDetected = new AtomicLong();
+    private final AtomicLong connectionsCreated = new AtomicLong();
+    private final AtomicLong connectionsEvicted = new AtomicLong();
+    private final AtomicLong statementCacheHits = new AtomicLong();
+    private final AtomicLong statementCacheMisses = new AtomicLong();
+
+    /**
+     * Creates a pool from the given connection properties.
+     *
+     * @param props the properties loaded from "database.properties"
+     */
+    ConnectionPool(Properties props)
+    {
+        this.databaseUrl = props.getProperty("databaseUrl");
+        this.username = props.getProperty("username");
+        this.password = props.getProperty("password");
+        this.maxSize = Math.max(1, intProperty(props, "pool.maxSize", 10));
+        this.minIdle = Math.clamp(intProperty(props, "pool.minIdle", 2), 0, maxSize);
+        this.leaseTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(intProperty(props, "pool.leaseTimeoutMillis", 5000));
+        this.idleTimeoutMillis = intProperty(props, "pool.idleTimeoutMillis", 300000);
+        this.validationIntervalMillis = intProperty(props, "pool.validationIntervalMillis", 5000);
+        this.validationTimeoutSeconds = intProperty(props, "pool.validationTimeoutSeconds", 2);
+        this.leakThresholdMillis = intProperty(props, "pool.leakThresholdMillis", 60000);
+        this.statementCacheSize = intProperty(props, "pool.statementCacheSize", 32);
+
+        this.housekeeper = Executors.newSingleThreadScheduledExecutor(runnable ->
+        {
+            Thread thread = new Thread(runnable, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        housekeeper.execute(this::fillIdle);
+        housekeeper.scheduleAtFixedRate(this::housekeeping,
+                HOUSEKEEPING_PERIOD_SECONDS, HOUSEKEEPING_PERIOD_SECONDS, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Leases a connection, waiting up to the lease timeout for one to become available.
+     *
+     * @return a connection handle which returns itself to the pool when closed
+     * @throws DatabaseException if the pool is closed, the wait times out or a connection cannot be opened
+     */
+    Connection lease()
+    {
+        long waitStart = System.nanoTime();
+        long deadline = waitStart + leaseTimeoutNanos;
+        while (true)
+        {
+            PooledConnection candidate = null;
+            boolean createNew = false;
+            lock.lock();
+            try
+            {
+                while (candidate == null && !createNew)
+                {
+                    if (closed)
+                    {
+                        throw new DatabaseException("Connection pool is closed!");
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate == null)
+                    {
+                        if (totalConnections < maxSize)
+                        {
+                            totalConnections++;
+                            createNew = true;
+                        } else
+                        {
+                            long remaining = deadline - System.nanoTime();
+                            if (remaining <= 0)
+                            {
+                                timeouts.incrementAndGet();
+                                logger.error("Timed out waiting for a database connection! Active: {}, max: {}", leased.size(), maxSize);
+                                throw new DatabaseException("Timed out waiting for a database connection!");
+                            }
+                            available.awaitNanos(remaining);
+                        }
+                    }
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new DatabaseException("Interrupted while waiting for a database connection!", e);
+            } finally
+            {
+                lock.unlock();
+            }
+
+            if (createNew)
+            {
+                candidate = createConnection();
+            } else if (!isUsable(candidate))
+            {
+                discard(candidate);
+                continue;
+            }
+            recordWait(System.nanoTime() - waitStart);
+            leased.add(candidate);
+            return candidate.lease(leakThresholdMillis > 0);
+        }
+    }
+
+    /**
+     * Returns a leased connection to the pool, resetting any transaction state.
+     *
+     * @param connection the connection being returned
+     */
+    void release(PooledConnection connection)
+    {
+        leased.remove(connection);
+        if (!connection.reset())
+        {
+            discard(connection);
+            return;
+        }
+        lock.lock();
+        try
+        {
+            if (closed)
+            {
+                totalConnections--;
+                connection.closePhysical();
+                return;
+            }
+            idle.addFirst(connection);
+            available.signal();
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a snapshot of the pool metrics.
+     *
+     * @return the current {@link PoolStatistics}
+     */
+    PoolStatistics getStatistics()
+    {
+        int idleCount;
+        int total;
+        lock.lock();
+        try
+        {
+            idleCount = idle.size();
+            total = totalConnections;
+        } finally
+        {
+            lock.unlock();
+        }
+        long leases = leaseCount.get();
+        double averageWaitMillis = leases == 0 ? 0 : totalWaitNanos.get() / 1_000_000.0 / leases;
+        return new PoolStatistics(leased.size(), idleCount, total, maxSize, leases, averageWaitMillis,
+                maxWaitNanos.get() / 1_000_000.0, timeouts.get(), leaksDetected.get(),
+                connectionsCreated.get(), connectionsEvicted.get(),
+                statementCacheHits.get(), statementCacheMisses.get());
+    }
+
+    /**
+     * Closes the pool. Idle connections are closed immediately, leased ones when they are returned.
+     */
+    void close()
+    {
+        housekeeper.shutdownNow();
+        lock.lock();
+        try
+        {
+            closed = true;
+            for (PooledConnection connection : idle)
+            {
+                connection.closePhysical();
+                totalConnections--;
+            }
+            idle.clear();
+            available.signalAll();
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Opens a new physical connection for a slot that has already been reserved.
+     *
+     * @return the new pooled connection
+     * @throws DatabaseException if the connection cannot be opened
+     */
+    private PooledConnection createConnection()
+    {
+        try
+        {
+            Connection physical = DriverManager.getConnection(databaseUrl, username, password);
+            connectionsCreated.incrementAndGet();
+            StatementCache statementCache = statementCacheSize > 0
+                    ? new StatementCache(statementCacheSize, statementCacheHits, statementCacheMisses)
+                    : null;
+            return new PooledConnection(this, physical, statementCache);
+        } catch (SQLException e)
+        {
+            releaseSlot();
+            logger.error("Could not open database connection! {}", e.getMessage());
+            throw new DatabaseException("Could not connect to database!", e);
+        }
+    }
+
+    /**
+     * Checks whether an idle connection can be handed out, validating it if it sat idle for a while.
+     *
+     * @param connection the idle connection
+     * @return true if the connection is still usable
+     */
+    private boolean isUsable(PooledConnection connection)
+    {
+        if (System.currentTimeMillis() - connection.getLastReturnedAt() < validationIntervalMillis)
+        {
+            return true;
+        }
+        return connection.isValid(validationTimeoutSeconds);
+    }
+
+    /**
+     * Closes a broken or evicted connection and frees its slot.
+     *
+     * @param connection the connection to discard
+     */
+    private void discard(PooledConnection connection)
+    {
+        connection.closePhysical();
+        connectionsEvicted.incrementAndGet();
+        releaseSlot();
+    }
+
+    /**
+     * Frees one connection slot and wakes up a waiting lessee.
+     */
+    private void releaseSlot()
+    {
+        lock.lock();
+        try
+        {
+            totalConnections--;
+            available.signal();
+        } finally
+        {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Records how long a lease waited for a connection.
+     *
+     * @param waitNanos the wait time in nanoseconds
+     */
+    private void recordWait(long waitNanos)
+    {
+        leaseCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+
+    /**
+     * Opens connections until the minimum number of idle connections is reached or the pool is full.
+     * A connection that cannot be opened is logged and tried again by the next housekeeping run.
+     */
+    private void fillIdle()
+    {
+        while (true)
+        {
+            lock.lock();
+            try
+            {
+                if (closed || idle.size() >= minIdle || totalConnections >= maxSize)
+                {
+                    return;
+                }
+                totalConnections++;
+            } finally
+            {
+                lock.unlock();
+            }
+
+            PooledConnection connection;
+            try
+            {
+                connection = createConnection();
+            } catch (DatabaseException e)
+            {
+                return;
+            }
+            lock.lock();
+            try
+            {
+                if (closed)
+                {
+                    totalConnections--;
+                    connection.closePhysical();
+                    return;
+                }
+                idle.addLast(connection);
+                available.signal();
+            } finally
+            {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Evicts connections that have been idle too long, refills the idle connections and reports leaked connections.
+     */
+    private void housekeeping()
+    {
+        long now = System.currentTimeMillis();
+        lock.lock();
+        try
+        {
+            Iterator<PooledConnection> oldestFirst = idle.descendingIterator();
+            while (oldestFirst.hasNext() && idle.size() > minIdle)
+            {
+                PooledConnection connection = oldestFirst.next();
+                if (now - connection.getLastReturnedAt() > idleTimeoutMillis)
+                {
+                    oldestFirst.remove();
+                    connection.closePhysical();
+                    totalConnections--;
+                    connectionsEvicted.incrementAndGet();
+                }
+            }
+        } finally
+        {
+            lock.unlock();
+        }
+        fillIdle();
+
+        if (leakThresholdMillis > 0)
+        {
+            for (PooledConnection connection : leased)
+            {
+                if (now - connection.getLeasedAt() > leakThresholdMillis && connection.markLeakReported())
+                {
+                    leaksDetected.incrementAndGet();
+                    logger.warn("Possible connection leak, connection leased {} ms ago and not returned!",
+                            now - connection.getLeasedAt(), connection.getLeaseTrace());
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads an integer pool setting, falling back to the default if it is missing or invalid.
+     *
+     * @param props        the properties
+     * @param key          the property key
+     * @param defaultValue the default value
+     * @return the configured value
+     */
+    private static int intProperty(Properties props, String key, int defaultValue)
+    {
+        String value = props.getProperty(key);
+        if (value == null || value.isBlank())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e)
+        {
+            logger.error("Invalid value for {}: {}, using {}", key, value, defaultValue);
+            return defaultValue;
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package hr.java.data_repository.database_repository;
+
+/**
+ * The IDs stored by {@link TicketDatabase#addTicketForCustomer}.
+ *
+ * @param customerID the ID of the inserted or updated customer
+ * @param ticketID   the ID of the new ticket
+ */
+public record CreatedTicket(long customerID, long ticketID) {
+}
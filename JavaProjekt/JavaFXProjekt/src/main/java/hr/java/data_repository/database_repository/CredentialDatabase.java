@@ -0,0 +1,240 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.data_repository.file_repository.LoggedInUserDataRepository;
+import hr.java.entity.LoggedInUser;
+import hr.java.enums.AgentType;
+import hr.java.exception.DatabaseException;
+import hr.java.exception.FileException;
+import hr.java.file_paths.FilePath;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.List;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Repository for the login credentials of agents.
+ *
+ * Credentials live in the CREDENTIAL table keyed by email, so logins, renames and deletes
+ * touch a single row inside a transaction. Users saved by older versions in loggedInUsers.txt
+ * are imported into an empty table when the schema is installed.
+ */
+public class CredentialDatabase extends Database
+{
+    private static final List<String> SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS CREDENTIAL (EMAIL VARCHAR(255) PRIMARY KEY, FIRSTNAME VARCHAR(255) NOT NULL, "
+                    + "LASTNAME VARCHAR(255) NOT NULL, PASSWORD_HASH VARCHAR(255) NOT NULL, AGENTTYPE VARCHAR(20) NOT NULL)");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private CredentialDatabase()
+    {
+        super();
+    }
+
+    /**
+     * Retrieves the credentials of a user by email.
+     *
+     * @param email the email of the user
+     * @return the {@link LoggedInUser} with the stored password hash, or null if there is none
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static LoggedInUser getCredential(String email)
+    {
+        String sql = "SELECT FIRSTNAME, LASTNAME, EMAIL, PASSWORD_HASH, AGENTTYPE FROM CREDENTIAL WHERE EMAIL = ?";
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, email);
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                if (rs.next())
+                {
+                    return new LoggedInUser(rs.getString(1), rs.getString(2), rs.getString(3), rs.getString(4),
+                            AgentType.valueOf(rs.getString(5)));
+                }
+                return null;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not get credentials! {} ", e.getMessage());
+            throw new DatabaseException("Could not get credentials for " + email + "!", e);
+        }
+    }
+
+    /**
+     * Replaces the password hash of a user.
+     *
+     * @param email        the email of the user
+     * @param passwordHash the new password hash
+     * @return true if the user exists
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static boolean updatePasswordHash(String email, String passwordHash)
+    {
+        String sql = "UPDATE CREDENTIAL SET PASSWORD_HASH = ? WHERE EMAIL = ?";
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, passwordHash);
+            stmt.setString(2, email);
+            return isRowUpdated(stmt.executeUpdate());
+        } catch (SQLException e)
+        {
+            logger.error("Could not update password hash! {} ", e.getMessage());
+            throw new DatabaseException("Could not update password hash of " + email + "!", e);
+        }
+    }
+
+    /**
+     * Creates the CREDENTIAL table if it does not exist yet and imports the legacy users file into an empty table.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if the schema could not be changed or the users could not be imported
+     */
+    static void install(Connection connection) throws SQLException
+    {
+        try (Statement stmt = connection.createStatement())
+        {
+            for (String sql : SCHEMA)
+            {
+                stmt.execute(sql);
+            }
+        }
+        importLegacyFile(connection);
+    }
+
+    /**
+     * Inserts the credentials of a user.
+     *
+     * @param connection   the connection to use
+     * @param loggedInUser the user with the password hash to store
+     * @throws SQLException if the email is already taken or a database access error occurs
+     */
+    static void insert(Connection connection, LoggedInUser loggedInUser) throws SQLException
+    {
+        String sql = "INSERT INTO CREDENTIAL(EMAIL, FIRSTNAME, LASTNAME, PASSWORD_HASH, AGENTTYPE) VALUES(?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, loggedInUser.getEmail());
+            stmt.setString(2, loggedInUser.getName());
+            stmt.setString(3, loggedInUser.getLastName());
+            stmt.setString(4, loggedInUser.getPassword());
+            stmt.setString(5, loggedInUser.getType().toString());
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Copies a renamed first or last name of an agent to their credentials.
+     * Other columns are not part of the credentials and are ignored.
+     *
+     * @param connection the connection to use
+     * @param column     the updated AGENT column
+     * @param newValue   the new value
+     * @param agentID    the ID of the agent
+     * @throws SQLException if a database access error occurs
+     */
+    static void copyAgentName(Connection connection, String column, String newValue, Long agentID) throws SQLException
+    {
+        if (!column.equalsIgnoreCase("FIRSTNAME") && !column.equalsIgnoreCase("LASTNAME"))
+        {
+            return;
+        }
+        String sql = "UPDATE CREDENTIAL SET " + column.toUpperCase() + " = ? WHERE EMAIL = (SELECT EMAIL FROM AGENT WHERE ID = ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, newValue);
+            stmt.setLong(2, agentID);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Deletes the credentials of a user.
+     *
+     * @param connection the connection to use
+     * @param email      the email of the user
+     * @throws SQLException if a database access error occurs
+     */
+    static void delete(Connection connection, String email) throws SQLException
+    {
+        try (PreparedStatement stmt = connection.prepareStatement("DELETE FROM CREDENTIAL WHERE EMAIL = ?"))
+        {
+            stmt.setString(1, email);
+            stmt.executeUpdate();
+        }
+    }
+
+    /**
+     * Imports the users of the legacy loggedInUsers.txt file into an empty CREDENTIAL table in one
+     * transaction and renames the file afterwards. Duplicate emails keep the first user, as the old
+     * login check did.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if the users could not be imported
+     */
+    private static void importLegacyFile(Connection connection) throws SQLException
+    {
+        Path legacy = Path.of(FilePath.LOGGED_IN_USERS.getPath());
+        if (!Files.exists(legacy))
+        {
+            return;
+        }
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT 1 FROM CREDENTIAL LIMIT 1"))
+        {
+            if (rs.next())
+            {
+                return;
+            }
+        }
+        List<LoggedInUser> users;
+        try
+        {
+            users = LoggedInUserDataRepository.readFromTextFile();
+        } catch (FileException e)
+        {
+            throw new SQLException("Could not read " + legacy, e);
+        }
+        String sql = "INSERT INTO CREDENTIAL(EMAIL, FIRSTNAME, LASTNAME, PASSWORD_HASH, AGENTTYPE) "
+                + "SELECT ?, ?, ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM CREDENTIAL WHERE EMAIL = ?)";
+        boolean autoCommit = connection.getAutoCommit();
+        connection.setAutoCommit(false);
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            for (LoggedInUser user : users)
+            {
+                stmt.setString(1, user.getEmail());
+                stmt.setString(2, user.getName());
+                stmt.setString(3, user.getLastName());
+                stmt.setString(4, user.getPassword());
+                stmt.setString(5, user.getType().toString());
+                stmt.setString(6, user.getEmail());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+            connection.commit();
+        } catch (SQLException e)
+        {
+            connection.rollback();
+            throw e;
+        } finally
+        {
+            connection.setAutoCommit(autoCommit);
+        }
+        try
+        {
+            Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e)
+        {
+            logger.error("Could not rename {} after importing the credentials! {}", legacy, e.getMessage());
+        }
+        logger.info("Imported {} users from {} into the CREDENTIAL table", users.size(), legacy);
+    }
+}
@@ -2,9 +2,12 @@ package hr.java.data_repository.database_repository;
 
 import hr.java.entity.Customer;
 import hr.java.entity.Person;
+import hr.java.events.CustomerChanged;
+import hr.java.events.EventBus;
 import hr.java.exception.DatabaseException;
 
 import java.sql.*;
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -17,9 +20,25 @@ import static org.example.javafxprojekt.main.Main.logger;
  *
  * This class provides methods for adding new customers to the database.
  *
+ * Lookups by ID and email are served from an {@link EntityCache} that is invalidated
+ * when a customer is deleted. Cached customers are shared and must not be changed.
  */
 public class CustomerDatabase extends Database
 {
+    private static final int CACHE_SIZE = 1000;
+    private static final Duration CACHE_TIME_TO_LIVE = Duration.ofSeconds(30);
+    private static final EntityCache<Long, Customer> customersById = new EntityCache<>("customersById", CACHE_SIZE, CACHE_TIME_TO_LIVE);
+    private static final EntityCache<String, Long> customerIDsByEmail = new EntityCache<>("customerIDsByEmail", CACHE_SIZE, CACHE_TIME_TO_LIVE);
+
+    static
+    {
+        EventBus.subscribe(CustomerChanged.class, event ->
+        {
+            customersById.invalidate(event.customerID());
+            customerIDsByEmail.invalidateIf(customerID -> customerID.equals(event.customerID()));
+        });
+    }
+
     /**
      * Adds a new customer to the database.
      *
@@ -55,6 +74,56 @@ public class CustomerDatabase extends Database
         }
     }
 
+    /**
+     * Inserts a customer, or updates the name of the customer with the same email, in one statement.
+     *
+     * @param customer the customer to insert or update
+     * @return the ID of the inserted or updated customer
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static Long upsertByEmail(Customer customer)
+    {
+        long customerID;
+        try (Connection connection = openConnection())
+        {
+            customerID = upsertByEmail(connection, customer);
+        } catch (SQLException e)
+        {
+            logger.error("Could not add or update customer: {}", e.getMessage());
+            throw new DatabaseException("Could not add or update customer with email: " + customer.getCustomerEmail() + "!", e);
+        }
+        EventBus.publish(new CustomerChanged(customerID));
+        return customerID;
+    }
+
+    /**
+     * Inserts a customer, or updates the name of the customer with the same email, on the given connection.
+     * The caller publishes the {@link CustomerChanged} event once the change is committed.
+     *
+     * @param connection the connection to use
+     * @param customer   the customer to insert or update
+     * @return the ID of the inserted or updated customer
+     * @throws SQLException if a database access error occurs
+     */
+    static long upsertByEmail(Connection connection, Customer customer) throws SQLException
+    {
+        String sql = "SELECT ID FROM FINAL TABLE (MERGE INTO CUSTOMER(FIRSTNAME, LASTNAME, EMAIL) KEY(EMAIL) VALUES(?, ?, ?))";
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, customer.getFirstName());
+            stmt.setString(2, customer.getLastName());
+            stmt.setString(3, customer.getCustomerEmail());
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                if (!rs.next())
+                {
+                    throw new SQLException("Merging customer " + customer.getCustomerEmail() + " returned no ID");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+
     /**
      * Checks if a customer with the given email already exists in the database.
      *
@@ -81,19 +150,24 @@ public class CustomerDatabase extends Database
     }
 
     /**
-     * Retrieves the ID of a customer by their email.
+     * Retrieves the ID of a customer by their email, from the cache if it was looked up recently.
      *
      * @param customer the customer to retrieve the ID for
-     * @return the ID of the customer with the specified email
+     * @return the ID of the customer with the specified email, or null if there is none
      * @throws DatabaseException if an error occurs during database operations
      */
     public static Long idFromCustomerEmail(Customer customer)
+    {
+        return customerIDsByEmail.get(customer.getCustomerEmail(), CustomerDatabase::findCustomerID);
+    }
+
+    private static Long findCustomerID(String email)
     {
         String sql = "SELECT ID FROM CUSTOMER WHERE EMAIL = ?";
         try (Connection connection = openConnection();
              PreparedStatement stmt = connection.prepareStatement(sql))
         {
-            stmt.setString(1, customer.getCustomerEmail());
+            stmt.setString(1, email);
             try (ResultSet rs = stmt.executeQuery())
             {
                 if (rs.next())
@@ -120,17 +194,12 @@ public class CustomerDatabase extends Database
         Set<Customer> customers = new HashSet<>();
         String sql = "SELECT ID, FIRSTNAME, LASTNAME, EMAIL FROM CUSTOMER";
         try (Connection connection = openConnection();
-             Statement stmt = connection.createStatement())
+             PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery())
         {
-            ResultSet rs = stmt.executeQuery(sql);
             while (rs.next())
             {
-                Long id = rs.getLong("ID");
-                String firstName = rs.getString("FIRSTNAME");
-                String lastName = rs.getString("LASTNAME");
-                String email = rs.getString("EMAIL");
-                Customer customer = new Customer(new Person(id, firstName, lastName), email);
-                customers.add(customer);
+                customers.add(mapCustomer(rs));
             }
         } catch (SQLException e)
         {
@@ -141,13 +210,105 @@ public class CustomerDatabase extends Database
     }
 
     /**
-     * Retrieves a customer by their ID.
+     * Retrieves customers with the IDs of their tickets in a single grouped query.
+     * All filters are applied by the database; a null or empty filter is ignored.
+     *
+     * @param firstNamePrefix the case-insensitive start of the first name
+     * @param lastNamePrefix  the case-insensitive start of the last name
+     * @param ticketCount     the exact number of tickets the customer made
+     * @return the matching customers ordered by ID
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static List<CustomerTicketSummary> getCustomerTicketSummaries(String firstNamePrefix, String lastNamePrefix,
+                                                                         Integer ticketCount)
+    {
+        StringBuilder sql = new StringBuilder("SELECT c.ID, c.FIRSTNAME, c.LASTNAME, c.EMAIL, "
+                + "ARRAY_AGG(t.TICKET_ID ORDER BY t.TICKET_ID) FILTER (WHERE t.TICKET_ID IS NOT NULL) AS TICKET_IDS "
+                + "FROM CUSTOMER c LEFT JOIN TICKET t ON t.CUSTOMER_ID = c.ID");
+        List<Object> parameters = new ArrayList<>();
+        List<String> conditions = new ArrayList<>();
+        if (firstNamePrefix != null && !firstNamePrefix.isEmpty())
+        {
+            conditions.add("LOWER(c.FIRSTNAME) LIKE ?");
+            parameters.add(likePrefix(firstNamePrefix));
+        }
+        if (lastNamePrefix != null && !lastNamePrefix.isEmpty())
+        {
+            conditions.add("LOWER(c.LASTNAME) LIKE ?");
+            parameters.add(likePrefix(lastNamePrefix));
+        }
+        if (!conditions.isEmpty())
+        {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+        sql.append(" GROUP BY c.ID, c.FIRSTNAME, c.LASTNAME, c.EMAIL");
+        if (ticketCount != null)
+        {
+            sql.append(" HAVING COUNT(t.TICKET_ID) = ?");
+            parameters.add(ticketCount);
+        }
+        sql.append(" ORDER BY c.ID");
+
+        List<CustomerTicketSummary> summaries = new ArrayList<>();
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString()))
+        {
+            for (int i = 0; i < parameters.size(); i++)
+            {
+                stmt.setObject(i + 1, parameters.get(i));
+            }
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                while (rs.next())
+                {
+                    List<Long> ticketIDs = new ArrayList<>();
+                    Array array = rs.getArray("TICKET_IDS");
+                    if (array != null)
+                    {
+                        for (Object ticketID : (Object[]) array.getArray())
+                        {
+                            ticketIDs.add(((Number) ticketID).longValue());
+                        }
+                        array.free();
+                    }
+                    summaries.add(new CustomerTicketSummary(mapCustomer(rs), ticketIDs));
+                }
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not get customer ticket summaries: {}", e.getMessage());
+            throw new DatabaseException("Could not get customers with their tickets!", e);
+        }
+        return summaries;
+    }
+
+    /**
+     * Turns user input into a lower case LIKE pattern matching values that start with it.
+     *
+     * @param prefix the user input
+     * @return the LIKE pattern
+     */
+    private static String likePrefix(String prefix)
+    {
+        return prefix.toLowerCase()
+                .replace("\\", "\\\\")
+                .replace("%", "\\%")
+                .replace("_", "\\_") + "%";
+    }
+
+    /**
+     * Retrieves a customer by their ID, from the cache if it was looked up recently.
      *
      * @param customerID the ID of the customer to retrieve
-     * @return the customer with the specified ID
+     * @return the customer with the specified ID, or null if there is none
      * @throws DatabaseException if an error occurs during database operations
      */
     public static Customer getCustomerById(Long customerID)
+    {
+        return customersById.get(customerID, CustomerDatabase::findCustomer);
+    }
+
+    private static Customer findCustomer(Long customerID)
     {
         String sql = "SELECT ID, FIRSTNAME, LASTNAME, EMAIL FROM CUSTOMER WHERE ID = ?";
         try (Connection connection = openConnection();
@@ -182,15 +343,65 @@ public class CustomerDatabase extends Database
     public static void deleteCustomer(Long customerID)
     {
         String sql = "DELETE FROM CUSTOMER WHERE ID = ?";
-        try (Connection connection = openConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql))
+        try (Connection connection = openConnection())
         {
-            stmt.setLong(1, customerID);
-            stmt.executeUpdate();
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql))
+            {
+                ChangeFeed.recordDeletions(connection, ChangeFeed.TICKET,
+                        "SELECT TICKET_ID AS ID FROM TICKET WHERE CUSTOMER_ID = ?", customerID);
+                stmt.setLong(1, customerID);
+                if (stmt.executeUpdate() > 0)
+                {
+                    ChangeFeed.recordDeletion(connection, ChangeFeed.CUSTOMER, customerID);
+                }
+                connection.commit();
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e)
         {
             logger.error("Could not delete customer with ID: {}", customerID);
             throw new DatabaseException("Could not delete customer with ID: " + customerID + "!");
         }
+        EventBus.publish(new CustomerChanged(customerID));
+    }
+
+    /**
+     * Retrieves the customers inserted, updated or deleted after the given version.
+     *
+     * @param version the last version the caller has seen, see {@link Database#getCurrentVersion()}
+     * @return the changed customers, the IDs of deleted customers and the version to continue from
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static ChangeSet<Customer> getChangesSince(long version)
+    {
+        try (Connection connection = openConnection())
+        {
+            return ChangeFeed.changesSince(connection, ChangeFeed.CUSTOMER, "ID, FIRSTNAME, LASTNAME, EMAIL", version,
+                    CustomerDatabase::mapCustomer);
+        } catch (SQLException e)
+        {
+            logger.error("Could not get changed customers: {}", e.getMessage());
+            throw new DatabaseException("Could not get customers changed since version " + version + "!", e);
+        }
+    }
+
+    /**
+     * Maps the current row of a ResultSet to a Customer.
+     *
+     * @param rs the result set positioned on a customer row
+     * @return the customer
+     * @throws SQLException if a database access error occurs
+     */
+    private static Customer mapCustomer(ResultSet rs) throws SQLException
+    {
+        Long id = rs.getLong("ID");
+        String firstName = rs.getString("FIRSTNAME");
+        String lastName = rs.getString("LASTNAME");
+        String email = rs.getString("EMAIL");
+        return new Customer(new Person(id, firstName, lastName), email);
     }
 }
@@ -0,0 +1,23 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.entity.Customer;
+
+import java.util.List;
+
+/**
+ * A customer together with the IDs of the tickets they made.
+ *
+ * @param customer  the customer
+ * @param ticketIDs the IDs of the customer's tickets in ascending order
+ */
+public record CustomerTicketSummary(Customer customer, List<Long> ticketIDs) {
+
+    /**
+     * Returns the number of tickets the customer made.
+     *
+     * @return the ticket count
+     */
+    public int ticketCount() {
+        return ticketIDs.size();
+    }
+}
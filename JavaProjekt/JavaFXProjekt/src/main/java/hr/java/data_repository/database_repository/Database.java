@@ -4,15 +4,24 @@ import hr.java.exception.FileException;
 import java.io.FileReader;
 import java.io.IOException;
 import java.sql.*;
+import java.util.List;
 import java.util.Properties;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
 /**
  * Utility class for database connections.
+ * Connections are leased from a shared {@link ConnectionPool} that is created
+ * once from "database.properties" on first use. Creating the pool also runs the
+ * {@link SchemaMigrator}, which creates the tables, the {@link ChangeFeed} used for
+ * incremental refreshes, the {@link CredentialDatabase} table used for logins, the
+ * {@link LeaseDatabase} table used to elect the ticket dispatcher, the lookup indexes and
+ * the {@link ImportDatabase} checkpoints of bulk imports.
  */
 public class Database
 {
+    private static final String PROPERTIES_FILE = "database.properties";
+    private static volatile ConnectionPool connectionPool;
 
     /**
      * Private constructor to prevent instantiation.
@@ -20,16 +29,145 @@ public class Database
     Database() {}
 
     /**
-     * Opens a database connection using information from "database.properties".
+     * Leases a pooled database connection. Closing the returned connection
+     * returns it to the pool instead of closing the physical connection.
      *
      * @return a database {@link Connection}.
      * @throws FileException if the properties file cannot be loaded.
-     * @throws DatabaseException if the connection fails.
+     * @throws DatabaseException if no connection could be obtained.
      */
     public static Connection openConnection()
+    {
+        return getConnectionPool().lease();
+    }
+
+    /**
+     * Returns a snapshot of the connection pool metrics.
+     *
+     * @return the current {@link PoolStatistics}
+     */
+    public static PoolStatistics getPoolStatistics()
+    {
+        return getConnectionPool().getStatistics();
+    }
+
+    /**
+     * Returns a snapshot of the metrics of the agent and customer lookup caches.
+     *
+     * @return one {@link CacheStatistics} per cache
+     */
+    public static List<CacheStatistics> getCacheStatistics()
+    {
+        return EntityCache.getAllStatistics();
+    }
+
+    /**
+     * Closes the connection pool and all idle connections.
+     * Leased connections are closed as soon as they are returned.
+     */
+    public static void closeConnectionPool()
+    {
+        synchronized (Database.class)
+        {
+            if (connectionPool != null)
+            {
+                connectionPool.close();
+                connectionPool = null;
+            }
+        }
+    }
+
+    /**
+     * Returns the current change version of the ticket, agent and customer tables.
+     * The version grows whenever a row of one of those tables is inserted, updated or deleted,
+     * so an unchanged version means there is nothing to refresh.
+     *
+     * @return the current change version
+     * @throws DatabaseException if the version could not be read
+     */
+    public static long getCurrentVersion()
+    {
+        try (Connection connection = openConnection())
+        {
+            return ChangeFeed.currentVersion(connection);
+        } catch (SQLException e)
+        {
+            logger.error("Could not read the change version! {}", e.getMessage());
+            throw new DatabaseException("Could not read the change version!", e);
+        }
+    }
+
+    /**
+     * Checks a batch update count, treating {@link Statement#SUCCESS_NO_INFO} as a successful update.
+     *
+     * @param updateCount the update count returned for a batched statement
+     * @return true if the row was updated
+     */
+    static boolean isRowUpdated(int updateCount)
+    {
+        return updateCount > 0 || updateCount == Statement.SUCCESS_NO_INFO;
+    }
+
+    /**
+     * Returns the shared connection pool, creating it on first use.
+     *
+     * @return the {@link ConnectionPool}
+     */
+    private static ConnectionPool getConnectionPool()
+    {
+        ConnectionPool pool = connectionPool;
+        if (pool == null)
+        {
+            synchronized (Database.class)
+            {
+                if (connectionPool == null)
+                {
+                    ConnectionPool newPool = new ConnectionPool(loadProperties());
+                    installSchema(newPool);
+                    connectionPool = newPool;
+                }
+                pool = connectionPool;
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Brings the schema up to date with the {@link SchemaMigrator} before the pool is handed out.
+     *
+     * The pool is closed if the migration fails in any way, so its housekeeper thread does not outlive it.
+     *
+     * @param pool the new connection pool
+     * @throws DatabaseException if the schema could not be migrated.
+     */
+    private static void installSchema(ConnectionPool pool)
+    {
+        try (Connection connection = pool.lease())
+        {
+            SchemaMigrator.migrate(connection);
+        } catch (SQLException e)
+        {
+            pool.close();
+            logger.error("Could not migrate the database schema! {}", e.getMessage());
+            throw new DatabaseException("Could not migrate the database schema!", e);
+        } catch (RuntimeException | Error e)
+        {
+            pool.close();
+            logger.error("Could not migrate the database schema! {}", e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Loads the connection settings from "database.properties".
+     *
+     * @return the loaded {@link Properties}
+     * @throws FileException if the properties file cannot be loaded.
+     */
+    private static Properties loadProperties()
     {
         Properties props = new Properties();
-        try (FileReader reader = new FileReader("database.properties"))
+        try (FileReader reader = new FileReader(PROPERTIES_FILE))
         {
             props.load(reader);
         } catch (IOException e)
@@ -37,16 +175,6 @@ public class Database
             logger.error("Could not open database.properties!");
             throw new FileException("Could not load database.properties!");
         }
-        String databaseUrl = props.getProperty("databaseUrl");
-        String username = props.getProperty("username");
-        String password = props.getProperty("password");
-        try
-        {
-            return DriverManager.getConnection(databaseUrl, username, password);
-        } catch (SQLException e)
-        {
-            logger.error("Could not open database connection!");
-            throw new DatabaseException("Could not connect to database!");
-        }
+        return props;
     }
-}
\ No newline at end of file
+}
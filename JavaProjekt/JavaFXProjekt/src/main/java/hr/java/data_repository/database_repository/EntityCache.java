@@ -0,0 +1,174 @@
+package hr.java.data_repository.database_repository;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * A bounded read-through cache of entities loaded from the database.
+ *
+ * A lookup returns the cached entity if it is younger than the time to live, otherwise it loads the entity
+ * and caches it. Once the cache is full the least recently used entry is evicted. Loads run outside the
+ * cache lock, so lookups of other keys never wait for the database. An invalidation drops the matching
+ * entries and makes loads that started before it skip caching their result, so an entity read just before
+ * a change is never cached after it. Missing entities are not cached. Cached entities are shared and must
+ * not be changed by the caller.
+ *
+ * @param <K> the key type
+ * @param <V> the entity type
+ */
+final class EntityCache<K, V>
+{
+    private static final List<EntityCache<?, ?>> caches = new CopyOnWriteArrayList<>();
+
+    private final String name;
+    private final int maxSize;
+    private final long timeToLiveNanos;
+    private final LinkedHashMap<K, CachedValue<V>> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long generation;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+    private long invalidations;
+
+    /**
+     * A cached entity and when it was loaded.
+     *
+     * @param value    the entity
+     * @param loadedAt the {@link System#nanoTime()} of the load
+     * @param <V>      the entity type
+     */
+    private record CachedValue<V>(V value, long loadedAt)
+    {
+    }
+
+    /**
+     * Creates a cache and registers it for {@link #getAllStatistics()}.
+     *
+     * @param name       the cache name used in the statistics
+     * @param maxSize    the number of entries after which the least recently used one is evicted
+     * @param timeToLive how long a cached entity is used before it is loaded again
+     */
+    EntityCache(String name, int maxSize, Duration timeToLive)
+    {
+        this.name = name;
+        this.maxSize = maxSize;
+        this.timeToLiveNanos = timeToLive.toNanos();
+        caches.add(this);
+    }
+
+    /**
+     * Returns the cached entity, loading it if it is not cached or has expired.
+     *
+     * @param key    the key
+     * @param loader loads the entity, returning null if it does not exist
+     * @return the entity, or null if it does not exist
+     */
+    V get(K key, Function<? super K, ? extends V> loader)
+    {
+        long loadGeneration;
+        synchronized (this)
+        {
+            CachedValue<V> cached = entries.get(key);
+            if (cached != null)
+            {
+                if (System.nanoTime() - cached.loadedAt() < timeToLiveNanos)
+                {
+                    hits++;
+                    return cached.value();
+                }
+                entries.remove(key);
+                expirations++;
+            }
+            misses++;
+            loadGeneration = generation;
+        }
+        V value = loader.apply(key);
+        if (value != null)
+        {
+            put(key, value, loadGeneration);
+        }
+        return value;
+    }
+
+    /**
+     * Drops the entry of a key.
+     *
+     * @param key the key
+     */
+    synchronized void invalidate(K key)
+    {
+        generation++;
+        if (entries.remove(key) != null)
+        {
+            invalidations++;
+        }
+    }
+
+    /**
+     * Drops every entry whose entity matches.
+     *
+     * @param filter selects the entities to drop
+     */
+    synchronized void invalidateIf(Predicate<? super V> filter)
+    {
+        generation++;
+        Iterator<CachedValue<V>> iterator = entries.values().iterator();
+        while (iterator.hasNext())
+        {
+            if (filter.test(iterator.next().value()))
+            {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    /**
+     * Returns a snapshot of the cache metrics.
+     *
+     * @return the current {@link CacheStatistics}
+     */
+    synchronized CacheStatistics getStatistics()
+    {
+        return new CacheStatistics(name, entries.size(), maxSize, hits, misses, evictions, expirations, invalidations);
+    }
+
+    /**
+     * Returns a snapshot of the metrics of every cache.
+     *
+     * @return one {@link CacheStatistics} per cache
+     */
+    static List<CacheStatistics> getAllStatistics()
+    {
+        List<CacheStatistics> statistics = new ArrayList<>();
+        for (EntityCache<?, ?> cache : caches)
+        {
+            statistics.add(cache.getStatistics());
+        }
+        return statistics;
+    }
+
+    private synchronized void put(K key, V value, long loadGeneration)
+    {
+        if (loadGeneration != generation)
+        {
+            return;
+        }
+        entries.put(key, new CachedValue<>(value, System.nanoTime()));
+        if (entries.size() > maxSize)
+        {
+            Iterator<Map.Entry<K, CachedValue<V>>> eldest = entries.entrySet().iterator();
+            eldest.next();
+            eldest.remove();
+            evictions++;
+        }
+    }
+}
@@ -0,0 +1,206 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.exception.DatabaseException;
+
+import java.sql.*;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Repository for bulk imports of historical tickets.
+ *
+ * Every batch is stored in one transaction together with the number of records of its source file that have
+ * been handled so far. That checkpoint lives in the IMPORT_CHECKPOINT table, so an interrupted import resumes
+ * after the last committed batch without storing a ticket twice.
+ */
+public class ImportDatabase extends Database
+{
+    private static final List<String> SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS IMPORT_CHECKPOINT (SOURCE VARCHAR(1024) PRIMARY KEY, RECORDS BIGINT NOT NULL, "
+                    + "UPDATED_AT TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL)");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private ImportDatabase()
+    {
+        super();
+    }
+
+    /**
+     * Returns the number of records of a source that have already been imported or rejected.
+     *
+     * @param source the source file
+     * @return the number of records to skip, 0 if the source was never imported
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static long getCheckpoint(String source)
+    {
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement("SELECT RECORDS FROM IMPORT_CHECKPOINT WHERE SOURCE = ?"))
+        {
+            stmt.setString(1, source);
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                return rs.next() ? rs.getLong(1) : 0;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not read the import checkpoint! {}", e.getMessage());
+            throw new DatabaseException("Could not read the import checkpoint of " + source + "!", e);
+        }
+    }
+
+    /**
+     * Stores a batch of tickets and moves the checkpoint of their source in one transaction.
+     * Customers are matched by email, unknown ones are inserted with the name of their first ticket in the batch.
+     * No events are published, the ticket manager notices the new tickets through the change version.
+     *
+     * @param source     the source file
+     * @param checkpoint the number of records of the source handled once this batch is stored
+     * @param tickets    the tickets to store, may be empty if every record of the batch was rejected
+     * @throws DatabaseException if an error occurs during database operations, in which case nothing is stored
+     */
+    public static void importTickets(String source, long checkpoint, List<ImportedTicket> tickets)
+    {
+        try (Connection connection = openConnection())
+        {
+            connection.setAutoCommit(false);
+            try
+            {
+                if (!tickets.isEmpty())
+                {
+                    Map<String, Long> customerIDs = insertCustomers(connection, tickets);
+                    insertTickets(connection, tickets, customerIDs);
+                }
+                saveCheckpoint(connection, source, checkpoint);
+                connection.commit();
+            } catch (SQLException e)
+            {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not import tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not import " + tickets.size() + " tickets from " + source + "!", e);
+        }
+    }
+
+    /**
+     * Creates the IMPORT_CHECKPOINT table if it does not exist yet.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if the schema could not be changed
+     */
+    static void install(Connection connection) throws SQLException
+    {
+        try (Statement stmt = connection.createStatement())
+        {
+            for (String sql : SCHEMA)
+            {
+                stmt.execute(sql);
+            }
+        }
+    }
+
+    /**
+     * Inserts the customers whose email is not stored yet and returns the IDs of every customer of the batch.
+     * Historical files mostly repeat known customers, so the emails are looked up first and only the missing
+     * customers are inserted.
+     *
+     * @param connection the connection to use
+     * @param tickets    the tickets of the batch
+     * @return the customer IDs keyed by email
+     * @throws SQLException if a database access error occurs
+     */
+    private static Map<String, Long> insertCustomers(Connection connection, List<ImportedTicket> tickets) throws SQLException
+    {
+        Map<String, ImportedTicket> firstByEmail = new LinkedHashMap<>();
+        for (ImportedTicket ticket : tickets)
+        {
+            firstByEmail.putIfAbsent(ticket.customer().getCustomerEmail(), ticket);
+        }
+        Map<String, Long> customerIDs = findCustomerIDs(connection, firstByEmail.keySet());
+        if (customerIDs.size() == firstByEmail.size())
+        {
+            return customerIDs;
+        }
+        String insert = "INSERT INTO CUSTOMER(FIRSTNAME, LASTNAME, EMAIL) "
+                + "SELECT ?, ?, ? WHERE NOT EXISTS (SELECT 1 FROM CUSTOMER WHERE EMAIL = ?)";
+        Set<String> missing = new HashSet<>(firstByEmail.keySet());
+        missing.removeAll(customerIDs.keySet());
+        try (PreparedStatement stmt = connection.prepareStatement(insert))
+        {
+            for (String email : missing)
+            {
+                ImportedTicket ticket = firstByEmail.get(email);
+                stmt.setString(1, ticket.customer().getFirstName());
+                stmt.setString(2, ticket.customer().getLastName());
+                stmt.setString(3, email);
+                stmt.setString(4, email);
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+        customerIDs.putAll(findCustomerIDs(connection, missing));
+        return customerIDs;
+    }
+
+    private static Map<String, Long> findCustomerIDs(Connection connection, Collection<String> emails) throws SQLException
+    {
+        Map<String, Long> customerIDs = new HashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement("SELECT ID, EMAIL FROM CUSTOMER WHERE EMAIL = ANY(?)"))
+        {
+            stmt.setArray(1, connection.createArrayOf("VARCHAR", emails.toArray()));
+            try (ResultSet rs = stmt.executeQuery())
+            {
+                while (rs.next())
+                {
+                    customerIDs.put(rs.getString(2), rs.getLong(1));
+                }
+            }
+        }
+        return customerIDs;
+    }
+
+    private static void insertTickets(Connection connection, List<ImportedTicket> tickets, Map<String, Long> customerIDs)
+            throws SQLException
+    {
+        String sql = "INSERT INTO TICKET(CUSTOMER_ID, SUMMARY, DESCRIPTION, STATUS, PRIORITY, CREATED_AT, RESOLVED_AT) "
+                + "VALUES(?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            for (ImportedTicket imported : tickets)
+            {
+                stmt.setLong(1, customerIDs.get(imported.customer().getCustomerEmail()));
+                stmt.setString(2, imported.ticket().getSummary());
+                stmt.setString(3, imported.ticket().getDescription());
+                stmt.setString(4, imported.ticket().getTicketStatus().toString());
+                stmt.setString(5, imported.ticket().getTicketPriority().toString());
+                stmt.setObject(6, imported.ticket().getDateCreated());
+                stmt.setObject(7, imported.ticket().getDateResolved());
+                stmt.addBatch();
+            }
+            stmt.executeBatch();
+        }
+    }
+
+    private static void saveCheckpoint(Connection connection, String source, long checkpoint) throws SQLException
+    {
+        String sql = "MERGE INTO IMPORT_CHECKPOINT(SOURCE, RECORDS, UPDATED_AT) KEY(SOURCE) VALUES(?, ?, LOCALTIMESTAMP)";
+        try (PreparedStatement stmt = connection.prepareStatement(sql))
+        {
+            stmt.setString(1, source);
+            stmt.setLong(2, checkpoint);
+            stmt.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.entity.Customer;
+import hr.java.entity.Ticket;
+
+/**
+ * A ticket read from an import file together with the customer who made it.
+ *
+ * @param customer the customer, matched to a stored customer by email
+ * @param ticket   the ticket, its ID and customer ID are ignored
+ */
+public record ImportedTicket(Customer customer, Ticket ticket)
+{
+}
@@ -0,0 +1,117 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.exception.DatabaseException;
+
+import java.sql.*;
+import java.time.Duration;
+import java.util.List;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Repository for leases that elect a single leader among the application instances sharing the database.
+ *
+ * A lease is a row of the LEASE table naming its owner and the time it expires. The owner renews it before
+ * it expires; once it has expired any instance can take it over. Expiry is compared with the database clock,
+ * so the clocks of the instances do not need to agree.
+ */
+public class LeaseDatabase extends Database
+{
+    private static final List<String> SCHEMA = List.of(
+            "CREATE TABLE IF NOT EXISTS LEASE (NAME VARCHAR(64) PRIMARY KEY, OWNER VARCHAR(128) NOT NULL, "
+                    + "EXPIRES_AT TIMESTAMP NOT NULL)");
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private LeaseDatabase()
+    {
+        super();
+    }
+
+    /**
+     * Takes or renews a lease. The lease is granted if nobody holds it, the owner already holds it
+     * or the previous owner let it expire.
+     *
+     * @param name     the lease name
+     * @param owner    the instance asking for the lease
+     * @param duration how long the lease is valid without being renewed
+     * @return true if the owner holds the lease
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static boolean tryAcquire(String name, String owner, Duration duration)
+    {
+        String update = "UPDATE LEASE SET OWNER = ?, EXPIRES_AT = DATEADD(MILLISECOND, ?, LOCALTIMESTAMP) "
+                + "WHERE NAME = ? AND (OWNER = ? OR EXPIRES_AT < LOCALTIMESTAMP)";
+        String insert = "INSERT INTO LEASE(NAME, OWNER, EXPIRES_AT) "
+                + "SELECT ?, ?, DATEADD(MILLISECOND, ?, LOCALTIMESTAMP) WHERE NOT EXISTS (SELECT 1 FROM LEASE WHERE NAME = ?)";
+        try (Connection connection = openConnection())
+        {
+            try (PreparedStatement stmt = connection.prepareStatement(update))
+            {
+                stmt.setString(1, owner);
+                stmt.setLong(2, duration.toMillis());
+                stmt.setString(3, name);
+                stmt.setString(4, owner);
+                if (isRowUpdated(stmt.executeUpdate()))
+                {
+                    return true;
+                }
+            }
+            try (PreparedStatement stmt = connection.prepareStatement(insert))
+            {
+                stmt.setString(1, name);
+                stmt.setString(2, owner);
+                stmt.setLong(3, duration.toMillis());
+                stmt.setString(4, name);
+                return isRowUpdated(stmt.executeUpdate());
+            } catch (SQLIntegrityConstraintViolationException e)
+            {
+                return false;
+            }
+        } catch (SQLException e)
+        {
+            logger.error("Could not acquire lease {}! {}", name, e.getMessage());
+            throw new DatabaseException("Could not acquire lease " + name + "!", e);
+        }
+    }
+
+    /**
+     * Gives up a lease so another instance can take it over right away.
+     *
+     * @param name  the lease name
+     * @param owner the instance holding the lease
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static void release(String name, String owner)
+    {
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement("DELETE FROM LEASE WHERE NAME = ? AND OWNER = ?"))
+        {
+            stmt.setString(1, name);
+            stmt.setString(2, owner);
+            stmt.executeUpdate();
+        } catch (SQLException e)
+        {
+            logger.error("Could not release lease {}! {}", name, e.getMessage());
+            throw new DatabaseException("Could not release lease " + name + "!", e);
+        }
+    }
+
+    /**
+     * Creates the LEASE table if it does not exist yet.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if the schema could not be changed
+     */
+    static void install(Connection connection) throws SQLException
+    {
+        try (Statement stmt = connection.createStatement())
+        {
+            for (String sql : SCHEMA)
+            {
+                stmt.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package hr.java.data_repository.database_repository;
+
+/**
+ * A point-in-time snapshot of the connection pool metrics.
+ *
+ * @param active               the number of leased connections
+ * @param idle                 the number of idle connections
+ * @param total                the number of open physical connections
+ * @param maxSize              the configured pool size
+ * @param leaseCount           the number of successful leases
+ * @param averageWaitMillis    the average time a lease waited for a connection
+ * @param maxWaitMillis        the longest time a lease waited for a connection
+ * @param timeouts             the number of leases that timed out
+ * @param leaksDetected        the number of connections reported as leaked
+ * @param connectionsCreated   the number of physical connections opened
+ * @param connectionsEvicted   the number of physical connections closed by the pool
+ * @param statementCacheHits   the number of prepared statements served from a statement cache
+ * @param statementCacheMisses the number of prepared statements that had to be parsed
+ */
+public record PoolStatistics(int active, int idle, int total, int maxSize, long leaseCount,
+                             double averageWaitMillis, double maxWaitMillis, long timeouts,
+                             long leaksDetected, long connectionsCreated, long connectionsEvicted,
+                             long statementCacheHits, long statementCacheMisses)
+{
+    /**
+     * Returns the share of prepared statements served from a statement cache.
+     *
+     * @return the hit ratio between 0 and 1
+     */
+    public double statementCacheHitRatio()
+    {
+        long lookups = statementCacheHits + statementCacheMisses;
+        return lookups == 0 ? 0 : (double) statementCacheHits / lookups;
+    }
+}
@@ -0,0 +1,235 @@
+package hr.java.data_repository.database_repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * A physical connection owned by the {@link ConnectionPool}.
+ *
+ * Every lease hands out a fresh {@link Connection} proxy whose {@code close()}
+ * returns the physical connection to the pool, so a handle that was already
+ * closed can never return the same connection twice. Prepared statements are
+ * served from the connection's {@link StatementCache} when one is configured.
+ */
+final class PooledConnection
+{
+    private final ConnectionPool pool;
+    private final Connection physical;
+    private final StatementCache statementCache;
+    private volatile long lastReturnedAt;
+    private volatile long leasedAt;
+    private volatile Throwable leaseTrace;
+    private volatile boolean leakReported;
+
+    /**
+     * Wraps a newly opened physical connection.
+     *
+     * @param pool           the owning pool
+     * @param physical       the physical connection
+     * @param statementCache the statement cache for this connection, or null to disable caching
+     */
+    PooledConnection(ConnectionPool pool, Connection physical, StatementCache statementCache)
+    {
+        this.pool = pool;
+        this.physical = physical;
+        this.statementCache = statementCache;
+        this.lastReturnedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Marks the connection as leased and creates a new handle for the lessee.
+     *
+     * @param captureTrace whether to remember the lessee's stack trace for leak reports
+     * @return the connection handle
+     */
+    Connection lease(boolean captureTrace)
+    {
+        leasedAt = System.currentTimeMillis();
+        leaseTrace = captureTrace ? new Throwable("Connection leased here") : null;
+        leakReported = false;
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new Handle());
+    }
+
+    /**
+     * Restores the default connection state before the connection goes back to the pool.
+     *
+     * @return true if the connection can be reused
+     */
+    boolean reset()
+    {
+        try
+        {
+            if (!physical.getAutoCommit())
+            {
+                physical.rollback();
+                physical.setAutoCommit(true);
+            }
+            physical.clearWarnings();
+            lastReturnedAt = System.currentTimeMillis();
+            return !physical.isClosed();
+        } catch (SQLException e)
+        {
+            logger.error("Could not reset pooled connection, discarding it! {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether the physical connection is still alive.
+     *
+     * @param timeoutSeconds the validation timeout
+     * @return true if the connection is valid
+     */
+    boolean isValid(int timeoutSeconds)
+    {
+        try
+        {
+            return physical.isValid(timeoutSeconds);
+        } catch (SQLException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Closes the cached statements and the physical connection.
+     */
+    void closePhysical()
+    {
+        if (statementCache != null)
+        {
+            statementCache.invalidate();
+        }
+        try
+        {
+            physical.close();
+        } catch (SQLException e)
+        {
+            logger.error("Could not close database connection! {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Marks a leak as reported so it is logged only once per lease.
+     *
+     * @return true if the leak had not been reported yet
+     */
+    boolean markLeakReported()
+    {
+        if (leakReported)
+        {
+            return false;
+        }
+        leakReported = true;
+        return true;
+    }
+
+    long getLastReturnedAt()
+    {
+        return lastReturnedAt;
+    }
+
+    long getLeasedAt()
+    {
+        return leasedAt;
+    }
+
+    Throwable getLeaseTrace()
+    {
+        return leaseTrace;
+    }
+
+    /**
+     * The handle given to a single lessee. Delegates to the physical connection
+     * until closed, after which every call except {@code close()} and {@code isClosed()} fails.
+     */
+    private final class Handle implements InvocationHandler
+    {
+        private boolean closed;
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            switch (method.getName())
+            {
+                case "close" ->
+                {
+                    if (!closed)
+                    {
+                        closed = true;
+                        pool.release(PooledConnection.this);
+                    }
+                    return null;
+                }
+                case "isClosed" ->
+                {
+                    return closed || physical.isClosed();
+                }
+                case "prepareStatement" ->
+                {
+                    if (closed)
+                    {
+                        throw new SQLException("Connection is closed!");
+                    }
+                    if (statementCache != null && isCacheable(method))
+                    {
+                        Integer autoGeneratedKeys = args.length == 2 ? (Integer) args[1] : null;
+                        return statementCache.prepare(physical, (Connection) proxy, (String) args[0], autoGeneratedKeys);
+                    }
+                    return delegate(method, args);
+                }
+                case "equals" ->
+                {
+                    return proxy == args[0];
+                }
+                case "hashCode" ->
+                {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" ->
+                {
+                    return "Pooled" + physical;
+                }
+                default ->
+                {
+                    if (closed)
+                    {
+                        throw new SQLException("Connection is closed!");
+                    }
+                    return delegate(method, args);
+                }
+            }
+        }
+
+        /**
+         * Only {@code prepareStatement(String)} and {@code prepareStatement(String, int)} are cached.
+         *
+         * @param method the invoked method
+         * @return true if the statement can be served from the cache
+         */
+        private boolean isCacheable(Method method)
+        {
+            Class<?>[] parameterTypes = method.getParameterTypes();
+            return parameterTypes.length == 1
+                    || (parameterTypes.length == 2 && parameterTypes[1] == int.class);
+        }
+
+        private Object delegate(Method method, Object[] args) throws Throwable
+        {
+            try
+            {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e)
+            {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package hr.java.data_repository.database_repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Brings the database schema up to date when the application starts.
+ *
+ * Every schema change is a numbered migration. The numbers of the applied migrations are stored in
+ * SCHEMA_HISTORY, and only the migrations above the highest stored number run. Every migration can run on
+ * a database that already has some of its objects, because databases created before the migrations
+ * existed start with an empty history.
+ */
+final class SchemaMigrator {
+
+    private static final List<String> TABLES = List.of(
+            "CREATE TABLE IF NOT EXISTS CUSTOMER (ID BIGINT PRIMARY KEY AUTO_INCREMENT, FIRSTNAME VARCHAR(30) NOT NULL, "
+                    + "LASTNAME VARCHAR(30) NOT NULL, EMAIL VARCHAR(50) NOT NULL UNIQUE)",
+            "CREATE TABLE IF NOT EXISTS AGENT (ID BIGINT PRIMARY KEY AUTO_INCREMENT, FIRSTNAME VARCHAR(30) NOT NULL, "
+                    + "LASTNAME VARCHAR(30) NOT NULL, EMAIL VARCHAR(50) NOT NULL UNIQUE, AGENTTYPE ENUM('AGENT', 'SUPERAGENT'))",
+            "CREATE TABLE IF NOT EXISTS TICKET (TICKET_ID BIGINT PRIMARY KEY AUTO_INCREMENT, CUSTOMER_ID BIGINT NOT NULL, "
+                    + "AGENT_ID BIGINT, SUMMARY VARCHAR(50) NOT NULL, DESCRIPTION VARCHAR(300) NOT NULL, "
+                    + "STATUS ENUM('OPEN', 'IN_PROGRESS', 'CLOSED') DEFAULT 'OPEN', PRIORITY ENUM('LOW', 'NORMAL', 'HIGH') DEFAULT 'NORMAL', "
+                    + "CREATED_AT TIMESTAMP, RESOLVED_AT TIMESTAMP, "
+                    + "FOREIGN KEY (CUSTOMER_ID) REFERENCES CUSTOMER(ID) ON DELETE CASCADE, "
+                    + "FOREIGN KEY (AGENT_ID) REFERENCES AGENT(ID) ON DELETE SET NULL)");
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Create the CUSTOMER, AGENT and TICKET tables", connection -> execute(connection, TABLES)),
+            new Migration(2, "Add the change feed", ChangeFeed::install),
+            new Migration(3, "Add the CREDENTIAL table", CredentialDatabase::install),
+            new Migration(4, "Add the LEASE table", LeaseDatabase::install),
+            new Migration(5, "Index the ticket, agent and customer lookups", SchemaMigrator::addLookupIndexes),
+            new Migration(6, "Add the IMPORT_CHECKPOINT table", ImportDatabase::install));
+
+    /**
+     * Changes the schema of a connection.
+     */
+    @FunctionalInterface
+    private interface SchemaChange {
+        void apply(Connection connection) throws SQLException;
+    }
+
+    /**
+     * A numbered schema change.
+     *
+     * @param version     the migration number, migrations run in ascending order
+     * @param description what the migration changes
+     * @param change      the schema change
+     */
+    private record Migration(int version, String description, SchemaChange change) {
+    }
+
+    private SchemaMigrator() {
+    }
+
+    /**
+     * Runs the migrations that have not been applied to the database yet.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if a migration fails, the migrations before it stay applied
+     */
+    static void migrate(Connection connection) throws SQLException {
+        execute(connection, List.of("CREATE TABLE IF NOT EXISTS SCHEMA_HISTORY (VERSION INT PRIMARY KEY, "
+                + "DESCRIPTION VARCHAR(255) NOT NULL, INSTALLED_AT TIMESTAMP DEFAULT LOCALTIMESTAMP NOT NULL)"));
+        int installed;
+        try (Statement stmt = connection.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COALESCE(MAX(VERSION), 0) FROM SCHEMA_HISTORY")) {
+            rs.next();
+            installed = rs.getInt(1);
+        }
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= installed) {
+                continue;
+            }
+            migration.change().apply(connection);
+            try (PreparedStatement stmt = connection.prepareStatement(
+                    "MERGE INTO SCHEMA_HISTORY(VERSION, DESCRIPTION) KEY(VERSION) VALUES(?, ?)")) {
+                stmt.setInt(1, migration.version());
+                stmt.setString(2, migration.description());
+                stmt.executeUpdate();
+            }
+            logger.info("Applied schema migration {}: {}", migration.version(), migration.description());
+        }
+    }
+
+    /**
+     * Indexes the columns the dispatcher and the views filter on. An index is skipped when an existing one
+     * already starts with the same columns, such as the indexes H2 creates for keys and unique columns.
+     *
+     * @param connection the connection to use
+     * @throws SQLException if an index could not be created
+     */
+    private static void addLookupIndexes(Connection connection) throws SQLException {
+        createIndex(connection, "TICKET_STATUS_PRIORITY_CREATED_IDX", "TICKET", false, "STATUS", "PRIORITY", "CREATED_AT");
+        createIndex(connection, "TICKET_AGENT_STATUS_IDX", "TICKET", false, "AGENT_ID", "STATUS");
+        createIndex(connection, "TICKET_CUSTOMER_IDX", "TICKET", false, "CUSTOMER_ID");
+        createIndex(connection, "AGENT_EMAIL_UQ", "AGENT", true, "EMAIL");
+        createIndex(connection, "CUSTOMER_EMAIL_UQ", "CUSTOMER", true, "EMAIL");
+    }
+
+    /**
+     * Creates an index unless an existing index already covers it.
+     *
+     * @param connection the connection to use
+     * @param name       the index name
+     * @param table      the table
+     * @param unique     whether the index enforces unique values
+     * @param columns    the indexed columns, in order
+     * @throws SQLException if the index could not be created, for example because of duplicate values
+     */
+    private static void createIndex(Connection connection, String name, String table, boolean unique,
+                                    String... columns) throws SQLException {
+        List<String> wanted = List.of(columns);
+        for (IndexColumns existing : findIndexes(connection, table)) {
+            boolean covered = unique
+                    ? existing.unique() && existing.columns().equals(wanted)
+                    : existing.columns().size() >= wanted.size() && existing.columns().subList(0, wanted.size()).equals(wanted);
+            if (covered) {
+                return;
+            }
+        }
+        execute(connection, List.of("CREATE " + (unique ? "UNIQUE " : "") + "INDEX IF NOT EXISTS " + name
+                + " ON " + table + "(" + String.join(", ", columns) + ")"));
+    }
+
+    /**
+     * The columns of an existing index.
+     *
+     * @param unique  whether the index enforces unique values
+     * @param columns the indexed columns, in order
+     */
+    private record IndexColumns(boolean unique, List<String> columns) {
+    }
+
+    private static List<IndexColumns> findIndexes(Connection connection, String table) throws SQLException {
+        String sql = "SELECT I.INDEX_NAME, I.INDEX_TYPE_NAME, C.COLUMN_NAME FROM INFORMATION_SCHEMA.INDEXES I "
+                + "JOIN INFORMATION_SCHEMA.INDEX_COLUMNS C ON C.INDEX_SCHEMA = I.INDEX_SCHEMA AND C.INDEX_NAME = I.INDEX_NAME "
+                + "WHERE I.TABLE_SCHEMA = SCHEMA() AND I.TABLE_NAME = ? ORDER BY I.INDEX_NAME, C.ORDINAL_POSITION";
+        Map<String, IndexColumns> indexes = new LinkedHashMap<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, table);
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    String type = rs.getString(2);
+                    boolean unique = type.equals("PRIMARY KEY") || type.equals("UNIQUE INDEX");
+                    indexes.computeIfAbsent(rs.getString(1), key -> new IndexColumns(unique, new ArrayList<>()))
+                            .columns().add(rs.getString(3));
+                }
+            }
+        }
+        return new ArrayList<>(indexes.values());
+    }
+
+    private static void execute(Connection connection, List<String> statements) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            for (String sql : statements) {
+                stmt.execute(sql);
+            }
+        }
+    }
+}
@@ -0,0 +1,288 @@
+package hr.java.data_repository.database_repository;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * An LRU cache of prepared statements for a single {@link PooledConnection}, keyed by SQL text.
+ *
+ * Statements handed out by the cache are returned to it when closed instead of being
+ * closed on the database, so repeated queries on the same connection skip parsing and planning.
+ * On return the open result sets are closed and the parameters, pending batch, fetch size,
+ * maximum rows and query timeout are reset; a statement that cannot be reset is dropped from the cache.
+ * A cache is only used by the thread currently leasing its connection, so it needs no locking.
+ */
+final class StatementCache
+{
+    private final int maxSize;
+    private final AtomicLong hits;
+    private final AtomicLong misses;
+    private final Map<Key, Entry> entries;
+
+    /**
+     * Creates a statement cache.
+     *
+     * @param maxSize the maximum number of cached statements
+     * @param hits    the pool-wide hit counter
+     * @param misses  the pool-wide miss counter
+     */
+    StatementCache(int maxSize, AtomicLong hits, AtomicLong misses)
+    {
+        this.maxSize = maxSize;
+        this.hits = hits;
+        this.misses = misses;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest)
+            {
+                if (size() > StatementCache.this.maxSize)
+                {
+                    eldest.getValue().evict();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Returns a cached statement for the SQL text, preparing and caching it on a miss.
+     * If the cached statement is still open by the caller, an uncached statement is returned instead.
+     *
+     * @param physical          the physical connection
+     * @param handle            the connection handle returned by {@link PreparedStatement#getConnection()}
+     * @param sql               the SQL text
+     * @param autoGeneratedKeys the generated keys flag, or null when not requested
+     * @return the prepared statement
+     * @throws SQLException if the statement cannot be prepared
+     */
+    PreparedStatement prepare(Connection physical, Connection handle, String sql, Integer autoGeneratedKeys) throws SQLException
+    {
+        Key key = new Key(sql, autoGeneratedKeys);
+        Entry entry = entries.get(key);
+        if (entry != null && !entry.inUse)
+        {
+            hits.incrementAndGet();
+            return entry.checkOut(handle);
+        }
+        misses.incrementAndGet();
+        PreparedStatement statement = autoGeneratedKeys == null
+                ? physical.prepareStatement(sql)
+                : physical.prepareStatement(sql, autoGeneratedKeys);
+        if (entry != null)
+        {
+            return statement;
+        }
+        Entry newEntry = new Entry(key, statement);
+        entries.put(key, newEntry);
+        return newEntry.checkOut(handle);
+    }
+
+    /**
+     * Closes every cached statement. Called before the physical connection is closed.
+     */
+    void invalidate()
+    {
+        List<Entry> cached = new ArrayList<>(entries.values());
+        entries.clear();
+        for (Entry entry : cached)
+        {
+            entry.evict();
+        }
+    }
+
+    /**
+     * The cache key: the SQL text plus the generated keys flag it was prepared with.
+     */
+    private record Key(String sql, Integer autoGeneratedKeys)
+    {
+    }
+
+    /**
+     * A cached statement, its checkout state and the settings it was prepared with.
+     */
+    private final class Entry
+    {
+        private final Key key;
+        private final PreparedStatement statement;
+        private final int fetchSize;
+        private final int maxRows;
+        private final int queryTimeout;
+        private boolean inUse;
+        private boolean evicted;
+
+        Entry(Key key, PreparedStatement statement) throws SQLException
+        {
+            this.key = key;
+            this.statement = statement;
+            this.fetchSize = statement.getFetchSize();
+            this.maxRows = statement.getMaxRows();
+            this.queryTimeout = statement.getQueryTimeout();
+        }
+
+        /**
+         * Hands the statement out behind a handle whose {@code close()} returns it to the cache.
+         *
+         * @param connection the connection handle the statement belongs to
+         * @return the statement handle
+         */
+        PreparedStatement checkOut(Connection connection)
+        {
+            inUse = true;
+            return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class}, new Handle(this, connection));
+        }
+
+        /**
+         * Resets the statement and returns it to the cache, or closes it if it was evicted while in use.
+         * A statement that cannot be reset is removed from the cache and closed.
+         *
+         * @param openResultSets the last query and generated keys result sets opened through the handle, may be null
+         */
+        void checkIn(ResultSet... openResultSets)
+        {
+            inUse = false;
+            try
+            {
+                for (ResultSet resultSet : openResultSets)
+                {
+                    if (resultSet != null)
+                    {
+                        resultSet.close();
+                    }
+                }
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.setMaxRows(maxRows);
+                statement.setFetchSize(fetchSize);
+                statement.setQueryTimeout(queryTimeout);
+            } catch (SQLException e)
+            {
+                logger.error("Could not reset cached statement! {}", e.getMessage());
+                entries.remove(key, this);
+                evicted = true;
+            }
+            if (evicted)
+            {
+                closeQuietly();
+            }
+        }
+
+        /**
+         * Removes the statement from the cache, closing it now unless it is still in use.
+         */
+        void evict()
+        {
+            evicted = true;
+            if (!inUse)
+            {
+                closeQuietly();
+            }
+        }
+
+        private void closeQuietly()
+        {
+            try
+            {
+                statement.close();
+            } catch (SQLException e)
+            {
+                logger.error("Could not close cached statement! {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * The handle given to a single caller of a cached statement.
+     */
+    private static final class Handle implements InvocationHandler
+    {
+        private final Entry entry;
+        private final Connection connection;
+        private ResultSet lastResultSet;
+        private ResultSet generatedKeys;
+        private boolean closed;
+
+        Handle(Entry entry, Connection connection)
+        {
+            this.entry = entry;
+            this.connection = connection;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable
+        {
+            switch (method.getName())
+            {
+                case "close" ->
+                {
+                    if (!closed)
+                    {
+                        closed = true;
+                        entry.checkIn(lastResultSet, generatedKeys);
+                    }
+                    return null;
+                }
+                case "isClosed" ->
+                {
+                    return closed;
+                }
+                case "getConnection" ->
+                {
+                    return connection;
+                }
+                case "equals" ->
+                {
+                    return proxy == args[0];
+                }
+                case "hashCode" ->
+                {
+                    return System.identityHashCode(proxy);
+                }
+                case "toString" ->
+                {
+                    return "Cached" + entry.statement;
+                }
+                default ->
+                {
+                    if (closed)
+                    {
+                        throw new SQLException("Statement is closed!");
+                    }
+                    try
+                    {
+                        Object result = method.invoke(entry.statement, args);
+                        if (result instanceof ResultSet resultSet)
+                        {
+                            if ("getGeneratedKeys".equals(method.getName()))
+                            {
+                                generatedKeys = resultSet;
+                            } else
+                            {
+                                lastResultSet = resultSet;
+                            }
+                        }
+                        return result;
+                    } catch (InvocationTargetException e)
+                    {
+                        throw e.getCause();
+                    }
+                }
+            }
+        }
+    }
+}
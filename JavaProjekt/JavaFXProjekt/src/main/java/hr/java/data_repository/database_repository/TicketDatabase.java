@@ -1,14 +1,30 @@
 package hr.java.data_repository.database_repository;
 
+import hr.java.entity.Customer;
 import hr.java.entity.Ticket;
+import hr.java.events.CustomerChanged;
+import hr.java.events.EventBus;
+import hr.java.events.TicketCreated;
 import hr.java.enums.TicketPriority;
+import hr.java.enums.TicketSortKey;
 import hr.java.enums.TicketStatus;
 import hr.java.exception.DatabaseException;
 
 import java.sql.*;
 import java.time.LocalDateTime;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
@@ -18,19 +34,70 @@ import static org.example.javafxprojekt.main.Main.logger;
 public class TicketDatabase extends Database {
 
     /**
-     * Adds a new ticket to the database.
+     * Adds a new ticket to the database and publishes a {@link TicketCreated} event once it is stored.
      *
      * @param ticket the ticket to be added to the database
      * @return the ID of the newly added ticket
      * @throws DatabaseException if an error occurs during database operations
      */
     public static Long addTicket(Ticket ticket) {
+        long ticketID;
+        try (Connection connection = openConnection()) {
+            ticketID = insertTicket(connection, ticket, ticket.getCustomerID());
+        } catch (SQLException e) {
+            logger.error("Could not add ticket to the database! {}", e.getMessage());
+            throw new DatabaseException("Could not add ticket to the database!");
+        }
+        EventBus.publish(new TicketCreated(ticketID, ticket.getCustomerID(), ticket.getTicketPriority(), ticket.getDateCreated()));
+        return ticketID;
+    }
+
+    /**
+     * Adds a customer by email, or updates their name if the email is already known, and adds a ticket
+     * for them in one transaction. {@link CustomerChanged} and {@link TicketCreated} are published after the commit.
+     *
+     * @param customer the customer who made the ticket
+     * @param ticket   the ticket, its customer ID is ignored
+     * @return the IDs of the customer and the new ticket
+     * @throws DatabaseException if an error occurs during database operations, in which case nothing is stored
+     */
+    public static CreatedTicket addTicketForCustomer(Customer customer, Ticket ticket) {
+        CreatedTicket created;
+        try (Connection connection = openConnection()) {
+            connection.setAutoCommit(false);
+            try {
+                long customerID = CustomerDatabase.upsertByEmail(connection, customer);
+                long ticketID = insertTicket(connection, ticket, customerID);
+                connection.commit();
+                created = new CreatedTicket(customerID, ticketID);
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Could not add ticket for customer {}! {}", customer.getCustomerEmail(), e.getMessage());
+            throw new DatabaseException("Could not add ticket for customer " + customer.getCustomerEmail() + "!", e);
+        }
+        EventBus.publish(new CustomerChanged(created.customerID()));
+        EventBus.publish(new TicketCreated(created.ticketID(), created.customerID(), ticket.getTicketPriority(),
+                ticket.getDateCreated()));
+        return created;
+    }
+
+    /**
+     * Inserts a ticket on the given connection.
+     *
+     * @param connection the connection to use
+     * @param ticket     the ticket to insert
+     * @param customerID the ID of the customer who made the ticket
+     * @return the ID of the inserted ticket
+     * @throws SQLException if the ticket could not be inserted
+     */
+    private static long insertTicket(Connection connection, Ticket ticket, Long customerID) throws SQLException {
         String sql = "INSERT INTO Ticket (customer_id, agent_id, summary, description, status, priority, created_at) " +
                 "VALUES (?, ?, ?, ?, ?, ?, ?)";
-
-        try (Connection connection = openConnection();
-             PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
-            statement.setLong(1, ticket.getCustomerID());
+        try (PreparedStatement statement = connection.prepareStatement(sql, Statement.RETURN_GENERATED_KEYS)) {
+            statement.setLong(1, customerID);
             if (ticket.getAssignedAgentID() != null) {
                 statement.setLong(2, ticket.getAssignedAgentID());
             } else {
@@ -42,23 +109,15 @@ public class TicketDatabase extends Database {
             statement.setString(6, ticket.getTicketPriority().toString());
             statement.setObject(7, ticket.getDateCreated());
 
-            int affectedRows = statement.executeUpdate();
-            if (affectedRows == 0) {
-                logger.error("Creating ticket failed, no rows affected.");
+            if (statement.executeUpdate() == 0) {
                 throw new SQLException("Creating ticket failed, no rows affected.");
             }
-
             try (ResultSet generatedKeys = statement.getGeneratedKeys()) {
-                if (generatedKeys.next()) {
-                    return generatedKeys.getLong(1);
-                } else {
-                    logger.error("Could not add ticket to the database and could not find an ID!");
-                    throw new DatabaseException("Could not add ticket to the database and could not find an ID!");
+                if (!generatedKeys.next()) {
+                    throw new SQLException("Creating ticket failed, no ID returned.");
                 }
+                return generatedKeys.getLong(1);
             }
-        } catch (SQLException e) {
-            logger.error("Could not add ticket to the database!");
-            throw new DatabaseException("Could not add ticket to the database!");
         }
     }
 
@@ -72,8 +131,8 @@ public class TicketDatabase extends Database {
         List<Ticket> tickets = new ArrayList<>();
         String sql = "SELECT TICKET_ID, CUSTOMER_ID, AGENT_ID, SUMMARY, DESCRIPTION, STATUS, PRIORITY, CREATED_AT, RESOLVED_AT FROM TICKET";
         try (Connection connection = openConnection();
-             Statement stmt = connection.createStatement()) {
-            ResultSet rs = stmt.executeQuery(sql);
+             PreparedStatement stmt = connection.prepareStatement(sql);
+             ResultSet rs = stmt.executeQuery()) {
             resultSetMethod(tickets, rs);
         } catch (SQLException e) {
             logger.error("Could not get all tickets!");
@@ -82,6 +141,187 @@ public class TicketDatabase extends Database {
         return tickets;
     }
 
+    /**
+     * Streams all tickets in ticket ID order without loading them into memory at once.
+     *
+     * The query runs lazily and rows are fetched from the database in groups of the fetch size as the stream
+     * is consumed, so memory use does not grow with the number of tickets. The stream holds a pooled connection
+     * until it is closed, so it must be used in a try-with-resources block.
+     *
+     * @param fetchSize the number of rows fetched from the database at once
+     * @return the tickets, closing the stream releases the connection
+     * @throws DatabaseException if the query fails, or later from the stream if reading a row fails
+     */
+    public static Stream<Ticket> streamTickets(int fetchSize) {
+        String sql = "SELECT TICKET_ID, CUSTOMER_ID, AGENT_ID, SUMMARY, DESCRIPTION, STATUS, PRIORITY, CREATED_AT, RESOLVED_AT "
+                + "FROM TICKET ORDER BY TICKET_ID";
+        Connection connection = openConnection();
+        try {
+            setLazyQueryExecution(connection, true);
+            PreparedStatement stmt = connection.prepareStatement(sql);
+            stmt.setFetchSize(fetchSize);
+            ResultSet rs = stmt.executeQuery();
+            Spliterator<Ticket> tickets = new Spliterators.AbstractSpliterator<>(Long.MAX_VALUE,
+                    Spliterator.ORDERED | Spliterator.NONNULL) {
+                @Override
+                public boolean tryAdvance(Consumer<? super Ticket> action) {
+                    try {
+                        if (!rs.next()) {
+                            return false;
+                        }
+                        action.accept(mapTicket(rs));
+                        return true;
+                    } catch (SQLException e) {
+                        logger.error("Could not read the next ticket! {}", e.getMessage());
+                        throw new DatabaseException("Could not read the next ticket!", e);
+                    }
+                }
+            };
+            return StreamSupport.stream(tickets, false).onClose(() -> closeStream(connection, stmt, rs));
+        } catch (SQLException e) {
+            closeStream(connection, null, null);
+            logger.error("Could not stream tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not stream tickets!", e);
+        }
+    }
+
+    private static void closeStream(Connection connection, Statement stmt, ResultSet rs) {
+        try (connection) {
+            if (rs != null) {
+                rs.close();
+            }
+            if (stmt != null) {
+                stmt.close();
+            }
+            setLazyQueryExecution(connection, false);
+        } catch (SQLException e) {
+            logger.error("Could not close the ticket stream! {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Switches the lazy query execution of the H2 session, which computes result rows as they are fetched
+     * instead of up front. The session belongs to a pooled connection, so it is switched off again before
+     * the connection is returned.
+     */
+    private static void setLazyQueryExecution(Connection connection, boolean lazy) throws SQLException {
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("SET LAZY_QUERY_EXECUTION " + lazy);
+        }
+    }
+
+    /**
+     * Gets one page of tickets matching the query. Filtering, sorting and paging are done by the database,
+     * so only the rows of the requested page are transferred.
+     *
+     * @param query the filters, sort order and page cursor
+     * @return the tickets of the page, at most {@link TicketQuery#getPageSize()}
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static List<Ticket> findTickets(TicketQuery query) {
+        StringBuilder sql = new StringBuilder("SELECT TICKET_ID, CUSTOMER_ID, AGENT_ID, SUMMARY, DESCRIPTION, STATUS, PRIORITY, CREATED_AT, RESOLVED_AT FROM TICKET");
+        List<Object> parameters = new ArrayList<>();
+        List<String> conditions = filterConditions(query, parameters);
+
+        String comparison = query.isDescending() ? " < " : " > ";
+        String direction = query.isDescending() ? " DESC" : "";
+        if (query.getAfterTicketID() != null) {
+            if (query.getSortKey() == TicketSortKey.CREATED_AT) {
+                conditions.add("(CREATED_AT, TICKET_ID)" + comparison + "(?, ?)");
+                parameters.add(query.getAfterCreatedAt());
+            } else {
+                conditions.add("TICKET_ID" + comparison + "?");
+            }
+            parameters.add(query.getAfterTicketID());
+        }
+        appendWhere(sql, conditions);
+        if (query.getSortKey() == TicketSortKey.CREATED_AT) {
+            sql.append(" ORDER BY CREATED_AT").append(direction).append(", TICKET_ID").append(direction);
+        } else {
+            sql.append(" ORDER BY TICKET_ID").append(direction);
+        }
+        sql.append(" FETCH FIRST ? ROWS ONLY");
+        parameters.add(query.getPageSize());
+
+        List<Ticket> tickets = new ArrayList<>(query.getPageSize());
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            setParameters(stmt, parameters);
+            return getTickets(tickets, stmt);
+        } catch (SQLException e) {
+            logger.error("Could not find tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not find tickets!", e);
+        }
+    }
+
+    /**
+     * Counts all tickets matching the filters of the query, ignoring its page cursor.
+     *
+     * @param query the filters
+     * @return the number of matching tickets
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static int countTickets(TicketQuery query) {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM TICKET");
+        List<Object> parameters = new ArrayList<>();
+        appendWhere(sql, filterConditions(query, parameters));
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql.toString())) {
+            setParameters(stmt, parameters);
+            try (ResultSet rs = stmt.executeQuery()) {
+                rs.next();
+                return rs.getInt(1);
+            }
+        } catch (SQLException e) {
+            logger.error("Could not count tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not count tickets!", e);
+        }
+    }
+
+    /**
+     * Builds the SQL conditions for the filters of a query.
+     *
+     * @param query      the query
+     * @param parameters the list the condition parameters are added to, in order
+     * @return the conditions, to be joined with AND
+     */
+    private static List<String> filterConditions(TicketQuery query, List<Object> parameters) {
+        List<String> conditions = new ArrayList<>();
+        if (query.getStatus() != null) {
+            conditions.add("STATUS = ?");
+            parameters.add(query.getStatus().toString());
+        }
+        if (query.getPriority() != null) {
+            conditions.add("PRIORITY = ?");
+            parameters.add(query.getPriority().toString());
+        }
+        if (query.getAgentID() != null) {
+            conditions.add("AGENT_ID = ?");
+            parameters.add(query.getAgentID());
+        }
+        if (query.getCreatedFrom() != null) {
+            conditions.add("CREATED_AT >= ?");
+            parameters.add(query.getCreatedFrom());
+        }
+        if (query.getCreatedTo() != null) {
+            conditions.add("CREATED_AT < ?");
+            parameters.add(query.getCreatedTo());
+        }
+        return conditions;
+    }
+
+    private static void appendWhere(StringBuilder sql, List<String> conditions) {
+        if (!conditions.isEmpty()) {
+            sql.append(" WHERE ").append(String.join(" AND ", conditions));
+        }
+    }
+
+    private static void setParameters(PreparedStatement stmt, List<Object> parameters) throws SQLException {
+        for (int i = 0; i < parameters.size(); i++) {
+            stmt.setObject(i + 1, parameters.get(i));
+        }
+    }
+
     /**
      * Update ticket column with new provided value
      *
@@ -112,16 +352,41 @@ public class TicketDatabase extends Database {
      */
     public static void deleteTicket(Long ticketID) {
         String sql = "DELETE FROM TICKET WHERE ticket_id = ?";
-        try (Connection connection = openConnection();
-             PreparedStatement stmt = connection.prepareStatement(sql)) {
-            stmt.setLong(1, ticketID);
-            stmt.executeUpdate();
+        try (Connection connection = openConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                stmt.setLong(1, ticketID);
+                if (stmt.executeUpdate() > 0) {
+                    ChangeFeed.recordDeletion(connection, ChangeFeed.TICKET, ticketID);
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
         } catch (SQLException e) {
             logger.error("Could not delete ticket with ID: {} ", ticketID);
             throw new DatabaseException("Could not delete ticket with ID: " + ticketID + "!");
         }
     }
 
+    /**
+     * Gets the tickets inserted, updated or deleted after the given version.
+     *
+     * @param version the last version the caller has seen, see {@link Database#getCurrentVersion()}
+     * @return the changed tickets, the IDs of deleted tickets and the version to continue from
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static ChangeSet<Ticket> getChangesSince(long version) {
+        String columns = "TICKET_ID, CUSTOMER_ID, AGENT_ID, SUMMARY, DESCRIPTION, STATUS, PRIORITY, CREATED_AT, RESOLVED_AT";
+        try (Connection connection = openConnection()) {
+            return ChangeFeed.changesSince(connection, ChangeFeed.TICKET, columns, version, TicketDatabase::mapTicket);
+        } catch (SQLException e) {
+            logger.error("Could not get changed tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not get tickets changed since version " + version + "!", e);
+        }
+    }
+
     /**
      * Gets unassigned tickets.
      *
@@ -165,22 +430,32 @@ public class TicketDatabase extends Database {
      */
     private static void resultSetMethod(List<Ticket> tickets, ResultSet rs) throws SQLException {
         while (rs.next()) {
-            Long id = rs.getLong("ticket_id");
-            Long customerID = rs.getLong("customer_id");
-            Long agentID = rs.getLong("agent_id");
-            String summary = rs.getString("summary");
-            String description = rs.getString("description");
-            TicketStatus status = TicketStatus.valueOf(rs.getString("status").toUpperCase());
-            TicketPriority priority = TicketPriority.valueOf(rs.getString("priority").toUpperCase());
-            LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
-            LocalDateTime resolvedAt = null;
-            Timestamp resolvedAtTimestamp = rs.getTimestamp("resolved_at");
-            if (resolvedAtTimestamp != null) {
-                resolvedAt = resolvedAtTimestamp.toLocalDateTime();
-            }
-            Ticket ticket = new Ticket(id, summary, description, status, priority, agentID, customerID, createdAt, resolvedAt);
-            tickets.add(ticket);
+            tickets.add(mapTicket(rs));
+        }
+    }
+
+    /**
+     * Maps the current row of a ResultSet to a Ticket.
+     *
+     * @param rs the result set positioned on a ticket row
+     * @return the ticket
+     * @throws SQLException if a database access error occurs
+     */
+    private static Ticket mapTicket(ResultSet rs) throws SQLException {
+        Long id = rs.getLong("ticket_id");
+        Long customerID = rs.getLong("customer_id");
+        Long agentID = rs.getLong("agent_id");
+        String summary = rs.getString("summary");
+        String description = rs.getString("description");
+        TicketStatus status = TicketStatus.valueOf(rs.getString("status").toUpperCase());
+        TicketPriority priority = TicketPriority.valueOf(rs.getString("priority").toUpperCase());
+        LocalDateTime createdAt = rs.getTimestamp("created_at").toLocalDateTime();
+        LocalDateTime resolvedAt = null;
+        Timestamp resolvedAtTimestamp = rs.getTimestamp("resolved_at");
+        if (resolvedAtTimestamp != null) {
+            resolvedAt = resolvedAtTimestamp.toLocalDateTime();
         }
+        return new Ticket(id, summary, description, status, priority, agentID, customerID, createdAt, resolvedAt);
     }
 
     /**
@@ -227,6 +502,114 @@ public class TicketDatabase extends Database {
     }
 
 
+    /**
+     * Resolves in-progress tickets in a single transaction using one JDBC batch.
+     * A ticket is only resolved if it is still in progress and not locked by another transaction;
+     * the resolution time is set on every ticket passed in.
+     *
+     * @param tickets the tickets to resolve
+     * @return whether each ticket was resolved, keyed by ticket ID in the order given
+     * @throws DatabaseException if an error occurs during database operations, in which case no ticket is resolved
+     */
+    public static Map<Long, Boolean> resolveTickets(List<Ticket> tickets) {
+        Map<Long, Boolean> outcomes = new LinkedHashMap<>();
+        if (tickets.isEmpty()) {
+            return outcomes;
+        }
+        String sql = "UPDATE Ticket SET status = ?, RESOLVED_AT = ? WHERE ticket_id = ? AND status = ?";
+        LocalDateTime resolvedAt = LocalDateTime.now();
+        try (Connection connection = openConnection()) {
+            connection.setAutoCommit(false);
+            try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+                List<Long> ticketIDs = tickets.stream().map(Ticket::getId).toList();
+                Set<Long> claimed = claimTickets(connection, ticketIDs, TicketStatus.IN_PROGRESS);
+                List<Ticket> claimedTickets = new ArrayList<>();
+                for (Ticket ticket : tickets) {
+                    ticket.setDateResolved(resolvedAt);
+                    if (!claimed.contains(ticket.getId())) {
+                        outcomes.put(ticket.getId(), false);
+                        continue;
+                    }
+                    claimedTickets.add(ticket);
+                    stmt.setString(1, TicketStatus.CLOSED.toString());
+                    stmt.setTimestamp(2, Timestamp.valueOf(resolvedAt));
+                    stmt.setLong(3, ticket.getId());
+                    stmt.setString(4, TicketStatus.IN_PROGRESS.toString());
+                    stmt.addBatch();
+                }
+                int[] updateCounts = claimedTickets.isEmpty() ? new int[0] : stmt.executeBatch();
+                connection.commit();
+                for (int i = 0; i < claimedTickets.size(); i++) {
+                    outcomes.put(claimedTickets.get(i).getId(), isRowUpdated(updateCounts[i]));
+                }
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            }
+        } catch (SQLException e) {
+            logger.error("Could not resolve tickets! {}", e.getMessage());
+            throw new DatabaseException("Could not resolve " + tickets.size() + " tickets!", e);
+        }
+        return outcomes;
+    }
+
+    /**
+     * Locks the tickets that still have the expected status until the transaction ends. Tickets locked by
+     * another transaction are skipped instead of waited for, so concurrent dispatchers never block each other
+     * and never claim the same ticket.
+     *
+     * @param connection the connection of the transaction, with auto-commit turned off
+     * @param ticketIDs  the tickets to claim
+     * @param status     the status the tickets must still have
+     * @return the IDs of the claimed tickets
+     * @throws SQLException if a database access error occurs
+     */
+    static Set<Long> claimTickets(Connection connection, Collection<Long> ticketIDs, TicketStatus status) throws SQLException {
+        String sql = "SELECT TICKET_ID FROM TICKET WHERE TICKET_ID = ANY(?) AND STATUS = ? FOR UPDATE SKIP LOCKED";
+        Set<Long> claimed = new HashSet<>();
+        try (PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setArray(1, connection.createArrayOf("BIGINT", ticketIDs.toArray()));
+            stmt.setString(2, status.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    claimed.add(rs.getLong(1));
+                }
+            }
+        }
+        return claimed;
+    }
+
+    /**
+     * Reads the in-progress tickets of every agent in a single grouped query.
+     *
+     * @return the {@link AgentWorkloadSnapshot}; agents without in-progress tickets are absent
+     * @throws DatabaseException if an error occurs during database operations
+     */
+    public static AgentWorkloadSnapshot getAgentWorkloadSnapshot() {
+        String sql = "SELECT AGENT_ID, ARRAY_AGG(TICKET_ID ORDER BY TICKET_ID) AS TICKET_IDS FROM TICKET "
+                + "WHERE STATUS = ? AND AGENT_ID IS NOT NULL GROUP BY AGENT_ID";
+        Map<Long, List<Long>> ticketIDsByAgent = new HashMap<>();
+        try (Connection connection = openConnection();
+             PreparedStatement stmt = connection.prepareStatement(sql)) {
+            stmt.setString(1, TicketStatus.IN_PROGRESS.toString());
+            try (ResultSet rs = stmt.executeQuery()) {
+                while (rs.next()) {
+                    Array array = rs.getArray("TICKET_IDS");
+                    List<Long> ticketIDs = new ArrayList<>();
+                    for (Object ticketID : (Object[]) array.getArray()) {
+                        ticketIDs.add(((Number) ticketID).longValue());
+                    }
+                    array.free();
+                    ticketIDsByAgent.put(rs.getLong("AGENT_ID"), ticketIDs);
+                }
+            }
+        } catch (SQLException e) {
+            logger.error("Could not get agent workloads! {}", e.getMessage());
+            throw new DatabaseException("Could not get agent workloads!", e);
+        }
+        return new AgentWorkloadSnapshot(ticketIDsByAgent);
+    }
+
     /**
      * Gets tickets by agent id.
      *
@@ -241,8 +624,7 @@ public class TicketDatabase extends Database {
         try (Connection connection = openConnection();
              PreparedStatement stmt = connection.prepareStatement(sql)) {
             stmt.setLong(1, agentId);
-            ResultSet rs = stmt.executeQuery();
-            resultSetMethod(tickets, rs);
+            getTickets(tickets, stmt);
         } catch (SQLException e) {
             logger.error("Could not get tickets by agent!");
             throw new DatabaseException("Could not get tickets with Agent ID: " + agentId + "!");
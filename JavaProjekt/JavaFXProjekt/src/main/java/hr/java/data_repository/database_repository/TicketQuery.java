@@ -0,0 +1,205 @@
+package hr.java.data_repository.database_repository;
+
+import hr.java.entity.Ticket;
+import hr.java.enums.TicketPriority;
+import hr.java.enums.TicketSortKey;
+import hr.java.enums.TicketStatus;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.Objects;
+
+/**
+ * Describes one page of tickets to load with {@link TicketDatabase#findTickets(TicketQuery)}.
+ *
+ * All filters are optional and are evaluated by the database. Pages are addressed with a keyset
+ * cursor: the next page starts right after the last ticket of the previous one, so loading a page
+ * costs the same no matter how deep into the result it is.
+ */
+public final class TicketQuery {
+
+    public static final int DEFAULT_PAGE_SIZE = 100;
+
+    private final TicketStatus status;
+    private final TicketPriority priority;
+    private final Long agentID;
+    private final LocalDateTime createdFrom;
+    private final LocalDateTime createdTo;
+    private final TicketSortKey sortKey;
+    private final boolean descending;
+    private final int pageSize;
+    private final Long afterTicketID;
+    private final LocalDateTime afterCreatedAt;
+
+    private TicketQuery(Builder builder, Long afterTicketID, LocalDateTime afterCreatedAt) {
+        this.status = builder.status;
+        this.priority = builder.priority;
+        this.agentID = builder.agentID;
+        this.createdFrom = builder.createdFrom;
+        this.createdTo = builder.createdTo;
+        this.sortKey = builder.sortKey;
+        this.descending = builder.descending;
+        this.pageSize = builder.pageSize;
+        this.afterTicketID = afterTicketID;
+        this.afterCreatedAt = afterCreatedAt;
+    }
+
+    /**
+     * Returns the query for the page that follows the given ticket.
+     *
+     * @param lastTicket the last ticket of the current page
+     * @return the query for the next page
+     */
+    public TicketQuery nextPage(Ticket lastTicket) {
+        return new TicketQuery(toBuilder(), lastTicket.getId(), lastTicket.getDateCreated());
+    }
+
+    /**
+     * Checks whether a ticket satisfies the filters of this query, ignoring the page cursor.
+     *
+     * @param ticket the ticket to check
+     * @return true if the ticket matches every filter
+     */
+    public boolean matches(Ticket ticket) {
+        return (status == null || status == ticket.getTicketStatus())
+                && (priority == null || priority == ticket.getTicketPriority())
+                && (agentID == null || agentID.equals(ticket.getAssignedAgentID()))
+                && (createdFrom == null || !ticket.getDateCreated().isBefore(createdFrom))
+                && (createdTo == null || ticket.getDateCreated().isBefore(createdTo));
+    }
+
+    /**
+     * Returns the order the database returns the tickets of this query in.
+     *
+     * @return the ticket comparator
+     */
+    public Comparator<Ticket> comparator() {
+        Comparator<Ticket> byID = Comparator.comparingLong(Ticket::getId);
+        Comparator<Ticket> order = sortKey == TicketSortKey.CREATED_AT
+                ? Comparator.comparing(Ticket::getDateCreated).thenComparing(byID)
+                : byID;
+        return descending ? order.reversed() : order;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof TicketQuery that)) return false;
+        return descending == that.descending && pageSize == that.pageSize && status == that.status
+                && priority == that.priority && Objects.equals(agentID, that.agentID)
+                && Objects.equals(createdFrom, that.createdFrom) && Objects.equals(createdTo, that.createdTo)
+                && sortKey == that.sortKey && Objects.equals(afterTicketID, that.afterTicketID)
+                && Objects.equals(afterCreatedAt, that.afterCreatedAt);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(status, priority, agentID, createdFrom, createdTo, sortKey, descending, pageSize,
+                afterTicketID, afterCreatedAt);
+    }
+
+    private Builder toBuilder() {
+        return new Builder().setStatus(status).setPriority(priority).setAgentID(agentID)
+                .setCreatedBetween(createdFrom, createdTo).setSortKey(sortKey, descending).setPageSize(pageSize);
+    }
+
+    public TicketStatus getStatus() {
+        return status;
+    }
+
+    public TicketPriority getPriority() {
+        return priority;
+    }
+
+    public Long getAgentID() {
+        return agentID;
+    }
+
+    public LocalDateTime getCreatedFrom() {
+        return createdFrom;
+    }
+
+    public LocalDateTime getCreatedTo() {
+        return createdTo;
+    }
+
+    public TicketSortKey getSortKey() {
+        return sortKey;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public Long getAfterTicketID() {
+        return afterTicketID;
+    }
+
+    public LocalDateTime getAfterCreatedAt() {
+        return afterCreatedAt;
+    }
+
+    /**
+     * Builder for the first page of a {@link TicketQuery}.
+     */
+    public static class Builder {
+        private TicketStatus status;
+        private TicketPriority priority;
+        private Long agentID;
+        private LocalDateTime createdFrom;
+        private LocalDateTime createdTo;
+        private TicketSortKey sortKey = TicketSortKey.TICKET_ID;
+        private boolean descending;
+        private int pageSize = DEFAULT_PAGE_SIZE;
+
+        public Builder setStatus(TicketStatus status) {
+            this.status = status;
+            return this;
+        }
+
+        public Builder setPriority(TicketPriority priority) {
+            this.priority = priority;
+            return this;
+        }
+
+        public Builder setAgentID(Long agentID) {
+            this.agentID = agentID;
+            return this;
+        }
+
+        /**
+         * Limits the tickets to those created in the given range.
+         *
+         * @param from the inclusive start, or null for no lower bound
+         * @param to   the exclusive end, or null for no upper bound
+         * @return this builder
+         */
+        public Builder setCreatedBetween(LocalDateTime from, LocalDateTime to) {
+            this.createdFrom = from;
+            this.createdTo = to;
+            return this;
+        }
+
+        public Builder setSortKey(TicketSortKey sortKey, boolean descending) {
+            this.sortKey = sortKey;
+            this.descending = descending;
+            return this;
+        }
+
+        public Builder setPageSize(int pageSize) {
+            if (pageSize <= 0) {
+                throw new IllegalArgumentException("Page size must be positive!");
+            }
+            this.pageSize = pageSize;
+            return this;
+        }
+
+        public TicketQuery build() {
+            return new TicketQuery(this, null, null);
+        }
+    }
+}
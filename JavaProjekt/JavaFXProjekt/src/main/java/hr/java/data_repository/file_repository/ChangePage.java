@@ -0,0 +1,29 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.entity.Entity;
+import hr.java.entity.EntityChange;
+
+import java.util.List;
+
+/**
+ * One page of recorded entity changes, read from the newest towards the oldest.
+ *
+ * @param changes   the changes of the page, oldest first
+ * @param olderThan the position to read the next older page from, or 0 if there are no older changes
+ */
+public record ChangePage(List<EntityChange<Entity>> changes, long olderThan) {
+
+    /**
+     * The position to read the newest page from.
+     */
+    public static final long NEWEST = Long.MAX_VALUE;
+
+    /**
+     * Checks whether older changes may follow this page.
+     *
+     * @return true if the journal was not read to its start
+     */
+    public boolean hasOlder() {
+        return olderThan > 0;
+    }
+}
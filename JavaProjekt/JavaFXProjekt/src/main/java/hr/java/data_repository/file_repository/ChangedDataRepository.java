@@ -2,71 +2,167 @@ package hr.java.data_repository.file_repository;
 
 import hr.java.entity.Entity;
 import hr.java.entity.EntityChange;
+import hr.java.enums.ChangedEntity;
+import hr.java.enums.ChangedFieldName;
+import hr.java.enums.JournalSyncPolicy;
 import hr.java.exception.FileException;
+import hr.java.file_paths.FilePath;
 
 import java.io.*;
-import java.util.ArrayList;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
+import java.util.stream.Stream;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
 /**
- * The ChangedDataRepository class provides methods for saving and reading
- * changed data to and from a binary file.
+ * The ChangedDataRepository class records entity changes in an append-only
+ * {@link EntityChangeJournal} and reads them back, optionally filtered by entity type and field name.
+ * Changes saved by older versions in a single serialized list are moved into the journal on first use.
  */
 public class ChangedDataRepository {
 
+    private static final long MAX_SEGMENT_BYTES = 4L * 1024 * 1024;
+    private static final JournalSyncPolicy SYNC_POLICY = JournalSyncPolicy.EVERY_RECORD;
+
+    private static EntityChangeJournal journal;
+
     private ChangedDataRepository() {
     }
 
     /**
-     * Saves a list of changed data to a binary file.
+     * Appends a single entity change to the journal.
      *
-     * @param changes the list of {@link EntityChange} objects to be saved
+     * @param change the {@link EntityChange} object to be added
      * @throws FileException if an error occurs while saving the data
      */
-    public static void saveChangedDataToBinaryFile(List<EntityChange<Entity>> changes) {
-        try (ObjectOutputStream bos = new ObjectOutputStream(new FileOutputStream("data/changedData.bin"))) {
-            bos.writeObject(changes);
+    public static void changeSingleEntity(EntityChange<Entity> change) {
+        try {
+            getJournal().append(change);
         } catch (IOException e) {
-            logger.error("Could not save changed data to Binary file!");
-            throw new FileException("Could not save changed data to binary file!");
+            logger.error("Could not save changed data to the journal! {}", e.getMessage());
+            throw new FileException("Could not save changed data to the journal!");
         }
     }
 
     /**
-     * Reads changed data from a binary file.
+     * Reads one page of the changes of one entity type and field, newest page first.
+     * Only the matching records of the page are read from disk.
      *
-     * @return a list of {@link EntityChange} objects read from the file;
-     * returns an empty list if the file does not exist or is empty
+     * @param entity    the changed entity type, or null for all
+     * @param fieldName the changed field, or null for all
+     * @param limit     the maximum number of changes on the page
+     * @param olderThan {@link ChangePage#NEWEST} for the newest page, or {@link ChangePage#olderThan()} of the previous page
+     * @return the {@link ChangePage}
      * @throws FileException if an error occurs while reading the data
      */
-    public static List<EntityChange<Entity>> readChangedDataFromBinaryFile() {
-        File file = new File("data/changedData.bin");
+    public static ChangePage readChangePage(ChangedEntity entity, ChangedFieldName fieldName, int limit, long olderThan) {
+        try {
+            return getJournal().read(entity, fieldName, limit, olderThan);
+        } catch (IOException e) {
+            logger.error("Could not read changed data from the journal! {}", e.getMessage());
+            throw new FileException("Could not read changed data from the journal!");
+        }
+    }
 
-        if (!file.exists() || file.length() == 0) {
-            return new ArrayList<>();
+    /**
+     * Closes the journal, forcing recorded changes to disk.
+     */
+    public static synchronized void close() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException e) {
+                logger.error("Could not close the change journal! {}", e.getMessage());
+            }
+            journal = null;
         }
+    }
 
-        try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file)))) {
-            List<EntityChange<Entity>> changes = (List<EntityChange<Entity>>) ois.readObject();
-            return new ArrayList<>(changes);
-        } catch (Exception e) {
-            logger.error("Could not read changed data from binary file!");
-            throw new FileException("Could not read changed data from binary file!");
+    /**
+     * Returns the journal, opening it and migrating the legacy file on first use.
+     *
+     * @return the {@link EntityChangeJournal}
+     * @throws IOException if the journal cannot be opened
+     */
+    private static synchronized EntityChangeJournal getJournal() throws IOException {
+        if (journal == null) {
+            Path directory = Path.of(FilePath.CHANGE_JOURNAL.getPath());
+            migrateLegacyFile(directory);
+            journal = new EntityChangeJournal(directory, MAX_SEGMENT_BYTES, SYNC_POLICY);
         }
+        return journal;
     }
 
     /**
-     * Adds a single entity change to the binary file.
+     * Moves the changes of the legacy serialized list into the journal and renames the legacy file.
      *
-     * @param change the {@link EntityChange} object to be added
-     * @throws FileException if an error occurs while saving the data
+     * The changes are written to a staging journal that replaces the journal directory only once it is complete,
+     * so a journal holding records while the legacy file still exists was always migrated completely and an
+     * interrupted migration simply starts over.
+     *
+     * @param directory the journal directory
+     * @throws IOException if the legacy file cannot be read or moved
      */
-    public static void changeSingleEntity(EntityChange<Entity> change) {
-        List<EntityChange<Entity>> changes = readChangedDataFromBinaryFile();
-        changes.add(change);
-        saveChangedDataToBinaryFile(changes);
+    private static void migrateLegacyFile(Path directory) throws IOException {
+        Path legacy = Path.of(FilePath.CHANGED_DATA.getPath());
+        if (!Files.exists(legacy)) {
+            return;
+        }
+        if (Files.size(legacy) > 0 && !holdsRecords(directory)) {
+            List<EntityChange<Entity>> changes;
+            try (ObjectInputStream ois = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(legacy)))) {
+                changes = (List<EntityChange<Entity>>) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown class in " + legacy, e);
+            }
+            Path staging = directory.resolveSibling(directory.getFileName() + ".migrating");
+            deleteJournalFiles(staging);
+            try (EntityChangeJournal target = new EntityChangeJournal(staging, MAX_SEGMENT_BYTES, JournalSyncPolicy.ON_SEGMENT_ROLLOVER)) {
+                for (EntityChange<Entity> change : changes) {
+                    target.append(change);
+                }
+            }
+            deleteJournalFiles(directory);
+            Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+            logger.info("Migrated {} changes from {} to the change journal", changes.size(), legacy);
+        }
+        Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
     }
-}
 
+    /**
+     * Checks whether the journal in a directory holds any records.
+     *
+     * @param directory the journal directory
+     * @return true if records were appended to the journal
+     * @throws IOException if the journal cannot be opened
+     */
+    private static boolean holdsRecords(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+        try (EntityChangeJournal existing = new EntityChangeJournal(directory, MAX_SEGMENT_BYTES, SYNC_POLICY)) {
+            return !existing.isEmpty();
+        }
+    }
+
+    /**
+     * Deletes a journal directory and its files.
+     *
+     * @param directory the journal directory
+     * @throws IOException if a file cannot be deleted
+     */
+    private static void deleteJournalFiles(Path directory) throws IOException {
+        if (!Files.isDirectory(directory)) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                Files.delete(file);
+            }
+        }
+        Files.delete(directory);
+    }
+}
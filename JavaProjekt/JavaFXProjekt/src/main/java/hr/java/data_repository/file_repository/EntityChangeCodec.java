@@ -0,0 +1,262 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.entity.Agent;
+import hr.java.entity.Entity;
+import hr.java.entity.EntityChange;
+import hr.java.entity.Ticket;
+import hr.java.enums.AgentStatus;
+import hr.java.enums.AgentType;
+import hr.java.enums.ChangedEntity;
+import hr.java.enums.ChangedFieldName;
+import hr.java.enums.TicketPriority;
+import hr.java.enums.TicketStatus;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Encodes {@link EntityChange} objects into compact binary records for the {@link EntityChangeJournal}.
+ *
+ * Tickets and agents are written field by field; any other entity falls back to Java serialization.
+ * The entity and field codes used by the journal index are derived from {@link ChangedEntity} and
+ * {@link ChangedFieldName}, with {@link #UNKNOWN_CODE} for values outside those enums.
+ */
+final class EntityChangeCodec {
+
+    static final byte UNKNOWN_CODE = -1;
+
+    private static final byte FORMAT_VERSION = 1;
+    private static final byte SERIALIZED_ENTITY = -1;
+
+    private EntityChangeCodec() {
+    }
+
+    /**
+     * Returns the index code of the changed entity's type.
+     *
+     * @param change the change
+     * @return the {@link ChangedEntity} ordinal, or {@link #UNKNOWN_CODE}
+     */
+    static byte entityCode(EntityChange<Entity> change) {
+        Entity entity = change.getEntityToChange();
+        if (entity instanceof Ticket) {
+            return (byte) ChangedEntity.TICKET.ordinal();
+        }
+        if (entity instanceof Agent) {
+            return (byte) ChangedEntity.AGENT.ordinal();
+        }
+        return UNKNOWN_CODE;
+    }
+
+    /**
+     * Returns the index code of the changed field.
+     *
+     * @param fieldName the field name
+     * @return the {@link ChangedFieldName} ordinal, or {@link #UNKNOWN_CODE}
+     */
+    static byte fieldCode(String fieldName) {
+        if (fieldName != null) {
+            for (ChangedFieldName changedFieldName : ChangedFieldName.values()) {
+                if (changedFieldName.name().equalsIgnoreCase(fieldName)) {
+                    return (byte) changedFieldName.ordinal();
+                }
+            }
+        }
+        return UNKNOWN_CODE;
+    }
+
+    /**
+     * Encodes a change.
+     *
+     * @param change the change
+     * @return the encoded record payload
+     * @throws IOException if the entity cannot be serialized
+     */
+    static byte[] encode(EntityChange<Entity> change) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(FORMAT_VERSION);
+        writeAgent(out, change.getAgent());
+        Entity entity = change.getEntityToChange();
+        if (entity instanceof Ticket ticket) {
+            out.writeByte(ChangedEntity.TICKET.ordinal());
+            writeTicket(out, ticket);
+        } else if (entity instanceof Agent agent) {
+            out.writeByte(ChangedEntity.AGENT.ordinal());
+            writeAgent(out, agent);
+        } else {
+            out.writeByte(SERIALIZED_ENTITY);
+            ByteArrayOutputStream serialized = new ByteArrayOutputStream();
+            try (ObjectOutputStream oos = new ObjectOutputStream(serialized)) {
+                oos.writeObject(entity);
+            }
+            out.writeInt(serialized.size());
+            serialized.writeTo(out);
+        }
+        writeString(out, change.getFieldName());
+        writeString(out, change.getOldValue());
+        writeString(out, change.getNewValue());
+        writeTime(out, change.getTime());
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a change.
+     *
+     * @param payload the record payload written by {@link #encode(EntityChange)}
+     * @return the change
+     * @throws IOException if the payload is malformed
+     */
+    static EntityChange<Entity> decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        byte version = in.readByte();
+        if (version != FORMAT_VERSION) {
+            throw new IOException("Unsupported change record version " + version);
+        }
+        Agent agent = readAgent(in);
+        byte entityType = in.readByte();
+        Entity entity;
+        if (entityType == ChangedEntity.TICKET.ordinal()) {
+            entity = readTicket(in);
+        } else if (entityType == ChangedEntity.AGENT.ordinal()) {
+            entity = readAgent(in);
+        } else {
+            byte[] serialized = new byte[in.readInt()];
+            in.readFully(serialized);
+            try (ObjectInputStream ois = new ObjectInputStream(new ByteArrayInputStream(serialized))) {
+                entity = (Entity) ois.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown entity class in change record", e);
+            }
+        }
+        String fieldName = readString(in);
+        String oldValue = readString(in);
+        String newValue = readString(in);
+        EntityChange<Entity> change = new EntityChange<>(agent, entity, fieldName, oldValue, newValue);
+        change.setTime(readTime(in));
+        return change;
+    }
+
+    private static void writeTicket(DataOutputStream out, Ticket ticket) throws IOException {
+        out.writeLong(ticket.getId());
+        writeString(out, ticket.getSummary());
+        writeString(out, ticket.getDescription());
+        writeOrdinal(out, ticket.getTicketStatus());
+        writeOrdinal(out, ticket.getTicketPriority());
+        writeNullableLong(out, ticket.getAssignedAgentID());
+        writeNullableLong(out, ticket.getCustomerID());
+        writeTime(out, ticket.getDateCreated());
+        writeTime(out, ticket.getDateResolved());
+    }
+
+    private static Ticket readTicket(DataInputStream in) throws IOException {
+        long id = in.readLong();
+        String summary = readString(in);
+        String description = readString(in);
+        TicketStatus status = readOrdinal(in, TicketStatus.values());
+        TicketPriority priority = readOrdinal(in, TicketPriority.values());
+        Long agentID = readNullableLong(in);
+        Long customerID = readNullableLong(in);
+        LocalDateTime created = readTime(in);
+        LocalDateTime resolved = readTime(in);
+        return new Ticket(id, summary, description, status, priority, agentID, customerID, created, resolved);
+    }
+
+    private static void writeAgent(DataOutputStream out, Agent agent) throws IOException {
+        out.writeBoolean(agent != null);
+        if (agent == null) {
+            return;
+        }
+        out.writeLong(agent.getId());
+        writeString(out, agent.getFirstName());
+        writeString(out, agent.getLastName());
+        writeString(out, agent.getEmail());
+        writeOrdinal(out, agent.getAgentStatus());
+        writeOrdinal(out, agent.getAgentType());
+    }
+
+    private static Agent readAgent(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long id = in.readLong();
+        String firstName = readString(in);
+        String lastName = readString(in);
+        String email = readString(in);
+        AgentStatus status = readOrdinal(in, AgentStatus.values());
+        AgentType type = readOrdinal(in, AgentType.values());
+        return new Agent(id, firstName, lastName, email, status, type);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeNullableLong(DataOutputStream out, Long value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeLong(value);
+        }
+    }
+
+    private static Long readNullableLong(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readLong() : null;
+    }
+
+    private static void writeOrdinal(DataOutputStream out, Enum<?> value) throws IOException {
+        out.writeByte(value == null ? -1 : value.ordinal());
+    }
+
+    private static <E extends Enum<E>> E readOrdinal(DataInputStream in, E[] values) throws IOException {
+        byte ordinal = in.readByte();
+        if (ordinal < 0) {
+            return null;
+        }
+        if (ordinal >= values.length) {
+            throw new IOException("Invalid enum ordinal " + ordinal);
+        }
+        return values[ordinal];
+    }
+
+    private static void writeTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeBoolean(time != null);
+        if (time != null) {
+            out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+            out.writeInt(time.getNano());
+        }
+    }
+
+    private static LocalDateTime readTime(DataInputStream in) throws IOException {
+        if (!in.readBoolean()) {
+            return null;
+        }
+        long epochSecond = in.readLong();
+        int nano = in.readInt();
+        return LocalDateTime.ofEpochSecond(epochSecond, nano, ZoneOffset.UTC);
+    }
+}
@@ -0,0 +1,357 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.entity.Entity;
+import hr.java.entity.EntityChange;
+import hr.java.enums.ChangedEntity;
+import hr.java.enums.ChangedFieldName;
+import hr.java.enums.JournalSyncPolicy;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * An append-only journal of {@link EntityChange} records.
+ *
+ * Records are appended to numbered segment files, each record prefixed with its length and a CRC32
+ * so a record torn by a crash is detected and cut off when the journal is opened. When a segment would
+ * grow past the size limit a new one is started. Every record also gets a fixed-width entry in a side
+ * index holding its position, entity type and field name, so filtered reads only touch the index and
+ * the matching records. The index can always be rebuilt from the segments.
+ */
+final class EntityChangeJournal implements Closeable {
+
+    private static final int RECORD_HEADER_BYTES = 10;
+    private static final int INDEX_ENTRY_BYTES = 14;
+    private static final int INDEX_READ_ENTRIES = 1024;
+    private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".log";
+    private static final String INDEX_FILE = "index.bin";
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final JournalSyncPolicy syncPolicy;
+    private final FileChannel index;
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentSize;
+
+    /**
+     * Opens the journal in a directory, recovering from a torn last record and a stale index.
+     *
+     * @param directory       the journal directory, created if missing
+     * @param maxSegmentBytes the size after which a new segment is started
+     * @param syncPolicy      when appended records are forced to disk
+     * @throws IOException if the journal cannot be opened
+     */
+    EntityChangeJournal(Path directory, long maxSegmentBytes, JournalSyncPolicy syncPolicy) throws IOException {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.syncPolicy = syncPolicy;
+        Files.createDirectories(directory);
+
+        List<Integer> segments = listSegments();
+        segmentNumber = segments.isEmpty() ? 1 : segments.getLast();
+        segment = FileChannel.open(segmentPath(segmentNumber), CREATE, READ, WRITE);
+        segmentSize = scanRecords(segment, 0, null);
+        if (segmentSize < segment.size()) {
+            logger.warn("Cutting off {} bytes of a torn change record in segment {}", segment.size() - segmentSize, segmentNumber);
+            segment.truncate(segmentSize);
+        }
+        if (segments.isEmpty()) {
+            segments = List.of(segmentNumber);
+        }
+        index = FileChannel.open(directory.resolve(INDEX_FILE), CREATE, READ, WRITE);
+        repairIndex(segments);
+    }
+
+    /**
+     * Appends a change to the active segment and the index.
+     *
+     * @param change the change to record
+     * @throws IOException if the change cannot be written
+     */
+    synchronized void append(EntityChange<Entity> change) throws IOException {
+        byte[] payload = EntityChangeCodec.encode(change);
+        byte entityCode = EntityChangeCodec.entityCode(change);
+        byte fieldCode = EntityChangeCodec.fieldCode(change.getFieldName());
+        int recordBytes = RECORD_HEADER_BYTES + payload.length;
+        if (segmentSize > 0 && segmentSize + recordBytes > maxSegmentBytes) {
+            rollSegment();
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(recordBytes);
+        record.putInt(payload.length).putInt(checksum(entityCode, fieldCode, payload))
+                .put(entityCode).put(fieldCode).put(payload).flip();
+        writeFully(segment, record, segmentSize);
+        writeIndexEntry(segmentNumber, segmentSize, entityCode, fieldCode);
+        segmentSize += recordBytes;
+
+        if (syncPolicy == JournalSyncPolicy.EVERY_RECORD) {
+            segment.force(false);
+            index.force(false);
+        }
+    }
+
+    /**
+     * Reads the latest changes matching the filters that were recorded before a position,
+     * using the index to skip everything else.
+     *
+     * @param entity    the entity type to match, or null for all
+     * @param fieldName the field name to match, or null for all
+     * @param limit     the maximum number of changes to return
+     * @param olderThan {@link ChangePage#NEWEST}, or the position returned with the previous page
+     * @return the matching changes and the position of the next older page
+     * @throws IOException if the journal cannot be read
+     */
+    synchronized ChangePage read(ChangedEntity entity, ChangedFieldName fieldName, int limit, long olderThan) throws IOException {
+        List<long[]> positions = new ArrayList<>();
+        long entries = Math.min(olderThan, index.size() / INDEX_ENTRY_BYTES);
+        long oldestMatch = 0;
+        ByteBuffer buffer = ByteBuffer.allocate(INDEX_READ_ENTRIES * INDEX_ENTRY_BYTES);
+        for (long end = entries; end > 0 && positions.size() < limit; end -= INDEX_READ_ENTRIES) {
+            long start = Math.max(0, end - INDEX_READ_ENTRIES);
+            buffer.clear().limit((int) (end - start) * INDEX_ENTRY_BYTES);
+            readFully(index, buffer, start * INDEX_ENTRY_BYTES);
+            for (int i = (int) (end - start) - 1; i >= 0 && positions.size() < limit; i--) {
+                int entry = i * INDEX_ENTRY_BYTES;
+                if (matches(buffer.get(entry + 12), entity) && matches(buffer.get(entry + 13), fieldName)) {
+                    positions.add(new long[]{buffer.getInt(entry), buffer.getLong(entry + 4)});
+                    oldestMatch = start + i;
+                }
+            }
+        }
+        Collections.reverse(positions);
+
+        List<EntityChange<Entity>> changes = new ArrayList<>(positions.size());
+        Map<Integer, FileChannel> readers = new HashMap<>();
+        try {
+            for (long[] position : positions) {
+                int number = (int) position[0];
+                FileChannel reader = number == segmentNumber ? segment : readers.get(number);
+                if (reader == null) {
+                    reader = FileChannel.open(segmentPath(number), READ);
+                    readers.put(number, reader);
+                }
+                changes.add(EntityChangeCodec.decode(readPayload(reader, position[1])));
+            }
+        } finally {
+            for (FileChannel reader : readers.values()) {
+                reader.close();
+            }
+        }
+        return new ChangePage(changes, positions.size() < limit ? 0 : oldestMatch);
+    }
+
+    /**
+     * Checks whether the journal holds no records.
+     *
+     * @return true if nothing has been appended yet
+     * @throws IOException if the index cannot be read
+     */
+    synchronized boolean isEmpty() throws IOException {
+        return index.size() == 0;
+    }
+
+    /**
+     * Forces and closes the journal files.
+     *
+     * @throws IOException if the files cannot be closed
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (syncPolicy != JournalSyncPolicy.NEVER) {
+            segment.force(false);
+            index.force(false);
+        }
+        segment.close();
+        index.close();
+    }
+
+    /**
+     * Seals the active segment and starts the next one.
+     *
+     * @throws IOException if the new segment cannot be created
+     */
+    private void rollSegment() throws IOException {
+        if (syncPolicy != JournalSyncPolicy.NEVER) {
+            segment.force(false);
+            index.force(false);
+        }
+        segment.close();
+        segmentNumber++;
+        segment = FileChannel.open(segmentPath(segmentNumber), CREATE, READ, WRITE);
+        segmentSize = 0;
+    }
+
+    /**
+     * Drops a partially written index entry and the entries of records that were cut off or never reached the disk,
+     * then adds the entries of records appended after the last indexed one.
+     *
+     * @param segments the existing segment numbers in ascending order
+     * @throws IOException if the index cannot be repaired
+     */
+    private void repairIndex(List<Integer> segments) throws IOException {
+        long entries = index.size() / INDEX_ENTRY_BYTES;
+        ByteBuffer last = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        long validEntries = entries;
+        while (validEntries > 0) {
+            last.clear();
+            readFully(index, last, (validEntries - 1) * INDEX_ENTRY_BYTES);
+            int number = last.getInt(0);
+            boolean recorded = number == segmentNumber ? last.getLong(4) < segmentSize
+                    : number < segmentNumber && segments.contains(number);
+            if (recorded) {
+                break;
+            }
+            validEntries--;
+        }
+        if (validEntries < entries) {
+            logger.warn("Dropping {} change journal index entries of records that are not in the segments", entries - validEntries);
+        }
+        index.truncate(validEntries * INDEX_ENTRY_BYTES);
+
+        int resumeSegment = segments.getFirst();
+        long resumeOffset = 0;
+        if (validEntries > 0) {
+            resumeSegment = last.getInt(0);
+            try (FileChannel reader = FileChannel.open(segmentPath(resumeSegment), READ)) {
+                long offset = last.getLong(4);
+                resumeOffset = offset + RECORD_HEADER_BYTES + readPayload(reader, offset).length;
+            }
+        }
+        long sizeBefore = index.size();
+        for (int number : segments) {
+            if (number < resumeSegment) {
+                continue;
+            }
+            long from = number == resumeSegment ? resumeOffset : 0;
+            FileChannel reader = number == segmentNumber ? segment : FileChannel.open(segmentPath(number), READ);
+            try {
+                scanRecords(reader, from, number);
+            } finally {
+                if (reader != segment) {
+                    reader.close();
+                }
+            }
+        }
+        long added = (index.size() - sizeBefore) / INDEX_ENTRY_BYTES;
+        if (added > 0) {
+            logger.info("Rebuilt {} change journal index entries", added);
+        }
+    }
+
+    /**
+     * Walks the valid records of a segment.
+     *
+     * @param channel       the segment
+     * @param from          the offset of the first record
+     * @param indexSegment  the segment number to index the records under, or null to only validate them
+     * @return the offset just after the last valid record
+     * @throws IOException if the segment cannot be read
+     */
+    private long scanRecords(FileChannel channel, long from, Integer indexSegment) throws IOException {
+        long offset = from;
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        while (offset + RECORD_HEADER_BYTES <= size) {
+            header.clear();
+            readFully(channel, header, offset);
+            int length = header.getInt(0);
+            if (length < 0 || length > MAX_RECORD_BYTES || offset + RECORD_HEADER_BYTES + length > size) {
+                break;
+            }
+            ByteBuffer payload = ByteBuffer.allocate(length);
+            readFully(channel, payload, offset + RECORD_HEADER_BYTES);
+            byte entityCode = header.get(8);
+            byte fieldCode = header.get(9);
+            if (checksum(entityCode, fieldCode, payload.array()) != header.getInt(4)) {
+                break;
+            }
+            if (indexSegment != null) {
+                writeIndexEntry(indexSegment, offset, entityCode, fieldCode);
+            }
+            offset += RECORD_HEADER_BYTES + length;
+        }
+        return offset;
+    }
+
+    private void writeIndexEntry(int number, long offset, byte entityCode, byte fieldCode) throws IOException {
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_BYTES);
+        entry.putInt(number).putLong(offset).put(entityCode).put(fieldCode).flip();
+        writeFully(index, entry, index.size());
+    }
+
+    private static byte[] readPayload(FileChannel channel, long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_BYTES);
+        readFully(channel, header, offset);
+        int length = header.getInt(0);
+        if (length < 0 || length > MAX_RECORD_BYTES) {
+            throw new IOException("Corrupt change record at offset " + offset);
+        }
+        ByteBuffer payload = ByteBuffer.allocate(length);
+        readFully(channel, payload, offset + RECORD_HEADER_BYTES);
+        if (checksum(header.get(8), header.get(9), payload.array()) != header.getInt(4)) {
+            throw new IOException("Checksum mismatch in change record at offset " + offset);
+        }
+        return payload.array();
+    }
+
+    private static boolean matches(byte code, Enum<?> filter) {
+        return filter == null || code == filter.ordinal();
+    }
+
+    private static int checksum(byte entityCode, byte fieldCode, byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(entityCode);
+        crc.update(fieldCode);
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                throw new IOException("Unexpected end of change journal file");
+            }
+            position += read;
+        }
+    }
+
+    private Path segmentPath(int number) {
+        return directory.resolve(String.format("%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    private List<Integer> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> Integer.parseInt(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length())))
+                    .sorted()
+                    .toList();
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.exception.FileException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import static java.nio.file.StandardOpenOption.READ;
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Follows a growing text file.
+ *
+ * Every {@link #poll()} reads only the bytes appended since the previous poll, starting from the
+ * remembered offset. The first poll of a large file starts close to its end instead of reading it all.
+ * A line that is still being written is held back until its line break arrives. If the file shrinks,
+ * it is treated as replaced and followed again from the start, and the poll reports the reset.
+ */
+public class LogTailer
+{
+    private static final int READ_BUFFER_BYTES = 64 * 1024;
+    private static final int INITIAL_BYTES_PER_LINE = 256;
+
+    private final Path file;
+    private final int capacity;
+    private final ByteArrayOutputStream partialLine = new ByteArrayOutputStream();
+    private long offset;
+
+    /**
+     * New lines read by one poll.
+     *
+     * @param lines the complete lines appended since the last poll, oldest first
+     * @param reset true if the file was replaced and earlier lines no longer apply
+     */
+    public record Update(List<String> lines, boolean reset)
+    {
+    }
+
+    /**
+     * Creates a tailer for a file.
+     *
+     * @param file     the file to follow
+     * @param capacity the maximum number of lines returned by one poll
+     */
+    public LogTailer(Path file, int capacity)
+    {
+        this(file, capacity, false);
+    }
+
+    /**
+     * Creates a tailer for a file.
+     *
+     * @param file      the file to follow
+     * @param capacity  the maximum number of lines returned by one poll
+     * @param fromStart true to read the file from its first line, false to start close to its end
+     */
+    public LogTailer(Path file, int capacity, boolean fromStart)
+    {
+        this.file = file;
+        this.capacity = capacity;
+        this.offset = fromStart ? 0 : -1;
+    }
+
+    /**
+     * Reads the lines appended since the last poll.
+     *
+     * @return the new lines, at most the tailer capacity
+     * @throws FileException if the file cannot be read
+     */
+    public synchronized Update poll()
+    {
+        try (FileChannel channel = FileChannel.open(file, READ))
+        {
+            long size = channel.size();
+            boolean reset = false;
+            if (offset < 0)
+            {
+                offset = initialOffset(channel, size);
+            }
+            else if (size < offset)
+            {
+                offset = 0;
+                partialLine.reset();
+                reset = true;
+            }
+            if (size == offset)
+            {
+                return new Update(List.of(), reset);
+            }
+            List<String> lines = readLines(channel, size);
+            return new Update(lines, reset);
+        } catch (NoSuchFileException e)
+        {
+            return new Update(List.of(), false);
+        } catch (IOException e)
+        {
+            logger.error("Error tailing file {} {}", file, e.getMessage());
+            throw new FileException("Error tailing file " + file);
+        }
+    }
+
+    /**
+     * Reads from the remembered offset to the current end of the file.
+     *
+     * @param channel the open file
+     * @param size    the file size
+     * @return the complete lines read, at most the tailer capacity
+     * @throws IOException if the file cannot be read
+     */
+    private List<String> readLines(FileChannel channel, long size) throws IOException
+    {
+        Deque<String> lines = new ArrayDeque<>();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        while (offset < size)
+        {
+            buffer.clear();
+            int read = channel.read(buffer, offset);
+            if (read <= 0)
+            {
+                break;
+            }
+            offset += read;
+            byte[] bytes = buffer.array();
+            int lineStart = 0;
+            for (int i = 0; i < read; i++)
+            {
+                if (bytes[i] == '\n')
+                {
+                    partialLine.write(bytes, lineStart, i - lineStart);
+                    addLine(lines, partialLine.toString(StandardCharsets.UTF_8));
+                    partialLine.reset();
+                    lineStart = i + 1;
+                }
+            }
+            partialLine.write(bytes, lineStart, read - lineStart);
+        }
+        return new ArrayList<>(lines);
+    }
+
+    private void addLine(Deque<String> lines, String line)
+    {
+        if (line.endsWith("\r"))
+        {
+            line = line.substring(0, line.length() - 1);
+        }
+        lines.addLast(line);
+        if (lines.size() > capacity)
+        {
+            lines.removeFirst();
+        }
+    }
+
+    /**
+     * Finds where to start reading a file for the first time, skipping everything but roughly the last
+     * {@code capacity} lines and starting at a line boundary.
+     *
+     * @param channel the open file
+     * @param size    the file size
+     * @return the first offset to read
+     * @throws IOException if the file cannot be read
+     */
+    private long initialOffset(FileChannel channel, long size) throws IOException
+    {
+        long start = size - (long) capacity * INITIAL_BYTES_PER_LINE;
+        if (start <= 0)
+        {
+            return 0;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER_BYTES);
+        long position = start - 1;
+        while (position < size)
+        {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read <= 0)
+            {
+                break;
+            }
+            for (int i = 0; i < read; i++)
+            {
+                if (buffer.get(i) == '\n')
+                {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+}
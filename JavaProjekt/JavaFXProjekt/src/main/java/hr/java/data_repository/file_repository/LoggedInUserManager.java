@@ -1,67 +1,95 @@
 package hr.java.data_repository.file_repository;
 
+import hr.java.data_repository.database_repository.CredentialDatabase;
 import hr.java.entity.LoggedInUser;
 import hr.java.enums.AgentType;
+import hr.java.exception.DatabaseException;
 import hr.java.interfaces.PasswordHasher;
 
 import java.security.NoSuchAlgorithmException;
-import java.util.ArrayList;
-import java.util.List;
+
+import static org.example.javafxprojekt.main.Main.logger;
 
 /**
- * The LoggedInUserManager class manages a list of logged-in users and
- * provides methods to check user existence based on credentials.
+ * The LoggedInUserManager class provides methods to check user credentials.
+ * Users are looked up by email in the {@link CredentialDatabase}, passwords are compared
+ * in constant time, and a legacy unsalted hash is replaced with a salted one after a successful login.
  */
 public final class LoggedInUserManager implements PasswordHasher {
 
-    private List<LoggedInUser> users;
+    private String unknownUserHash;
 
     /**
-     * Instantiates a new LoggedInUserManager and loads users from the text file.
+     * Checks the credentials of a user.
+     *
+     * @param firstName the first name of the user
+     * @param lastName  the last name of the user
+     * @param email     the email of the user
+     * @param password  the password of the user (hashed before comparison)
+     * @return the matching {@link LoggedInUser}, or null if the credentials are wrong
+     * @throws NoSuchAlgorithmException if an error occurs while hashing the password
+     * @throws DatabaseException        if the credentials cannot be read
      */
-    public LoggedInUserManager() {
-        List<LoggedInUser> readingFromFileLoggedInUserList = LoggedInUserDataRepository.readFromTextFile();
-        this.users = new ArrayList<>();
-        this.users.addAll(readingFromFileLoggedInUserList);
+    public LoggedInUser authenticate(String firstName, String lastName, String email, String password) throws NoSuchAlgorithmException {
+        LoggedInUser user = CredentialDatabase.getCredential(email);
+        if (user == null) {
+            verifyPassword(password, getUnknownUserHash());
+            return null;
+        }
+        boolean passwordMatches = verifyPassword(password, user.getPassword());
+        if (!passwordMatches || !user.getName().equals(firstName) || !user.getLastName().equals(lastName)) {
+            return null;
+        }
+        if (isLegacyHash(user.getPassword())) {
+            upgradeHash(user, password);
+        }
+        return user;
     }
 
     /**
-     * Gets the list of logged-in users.
+     * Checks if a user with the given credentials exists and returns their {@link AgentType}.
      *
-     * @return the list of {@link LoggedInUser} objects
+     * @param firstName the first name of the user
+     * @param lastName  the last name of the user
+     * @param email     the email of the user
+     * @param password  the password of the user (hashed before comparison)
+     * @return the {@link AgentType} of the user if found, otherwise null
+     * @throws NoSuchAlgorithmException if an error occurs while hashing the password
      */
-    public List<LoggedInUser> getUsers() {
-        return users;
+    public AgentType exists(String firstName, String lastName, String email, String password) throws NoSuchAlgorithmException {
+        LoggedInUser user = authenticate(firstName, lastName, email, password);
+        return user == null ? null : user.getType();
     }
 
     /**
-     * Sets the list of logged-in users.
+     * Replaces the legacy hash of a user with a salted one.
+     * A failure is only logged, the user stays logged in and is upgraded on a later login.
      *
-     * @param users the list of {@link LoggedInUser} objects to set
+     * @param user     the user who just logged in
+     * @param password the verified password
+     * @throws NoSuchAlgorithmException if an error occurs while hashing the password
      */
-    public void setUsers(List<LoggedInUser> users) {
-        this.users = users;
+    private void upgradeHash(LoggedInUser user, String password) throws NoSuchAlgorithmException {
+        String upgradedHash = hashPassword(password);
+        try {
+            CredentialDatabase.updatePasswordHash(user.getEmail(), upgradedHash);
+            user.setPassword(upgradedHash);
+        } catch (DatabaseException e) {
+            logger.error("Could not upgrade the password hash of {}! {}", user.getEmail(), e.getMessage());
+        }
     }
 
     /**
-     * Checks if a user with the given credentials exists and returns their {@link AgentType}.
+     * Returns a hash that is checked when the email is unknown, so that a missing user
+     * takes as long to reject as a wrong password.
      *
-     * @param firstName the first name of the user
-     * @param lastName  the last name of the user
-     * @param email     the email of the user
-     * @param password  the password of the user (hashed before comparison)
-     * @return the {@link AgentType} of the user if found, otherwise null
+     * @return the hash of an empty password
      * @throws NoSuchAlgorithmException if an error occurs while hashing the password
      */
-    public AgentType exists(String firstName, String lastName, String email, String password) throws NoSuchAlgorithmException {
-        for (LoggedInUser user : users) {
-            if (user.getName().equals(firstName) &&
-                    user.getLastName().equals(lastName) &&
-                    user.getEmail().equals(email) &&
-                    user.getPassword().equals(encryptString(password))) {
-                return user.getType();
-            }
+    private synchronized String getUnknownUserHash() throws NoSuchAlgorithmException {
+        if (unknownUserHash == null) {
+            unknownUserHash = hashPassword("");
         }
-        return null;
+        return unknownUserHash;
     }
 }
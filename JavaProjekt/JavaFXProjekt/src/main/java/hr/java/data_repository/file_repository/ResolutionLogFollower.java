@@ -0,0 +1,114 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.entity.ResolutionEvent;
+import hr.java.exception.FileException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Follows the resolution log as it is written, across segment rotations.
+ *
+ * The newest segment is followed with a {@link LogTailer}, starting close to its end. When the writer
+ * starts a new segment, the rest of the current one is read and the new one is followed from its start.
+ * If the followed segment is replaced, it is read again from its start and the poll reports a reset.
+ */
+public class ResolutionLogFollower
+{
+    private final Path directory;
+    private final int capacity;
+    private LogTailer tailer;
+    private int segmentNumber;
+
+    /**
+     * New events read by one poll.
+     *
+     * @param events the events written since the last poll, oldest first
+     * @param reset  true if the followed segment was replaced and the events of earlier polls no longer apply
+     */
+    public record Update(List<ResolutionEvent> events, boolean reset)
+    {
+    }
+
+    /**
+     * Creates a follower for a log directory.
+     *
+     * @param directory the log directory
+     * @param capacity  the maximum number of events returned by one poll
+     */
+    ResolutionLogFollower(Path directory, int capacity)
+    {
+        this.directory = directory;
+        this.capacity = capacity;
+    }
+
+    /**
+     * Reads the events written since the last poll.
+     *
+     * @return the new events, oldest first, at most the follower capacity
+     * @throws FileException if the log cannot be read
+     */
+    public synchronized Update poll()
+    {
+        List<ResolutionEvent> events = new ArrayList<>();
+        boolean reset = false;
+        if (tailer == null)
+        {
+            List<Integer> segments;
+            try
+            {
+                segments = ResolutionLogFormat.listSegments(directory);
+            } catch (IOException e)
+            {
+                logger.error("Could not list the resolution log segments! {}", e.getMessage());
+                throw new FileException("Error reading the resolution log");
+            }
+            if (segments.isEmpty())
+            {
+                return new Update(events, false);
+            }
+            segmentNumber = segments.getLast();
+            tailer = new LogTailer(ResolutionLogFormat.segmentPath(directory, segmentNumber), capacity);
+        }
+        while (true)
+        {
+            Path next = ResolutionLogFormat.segmentPath(directory, segmentNumber + 1);
+            boolean rotated = Files.exists(next);
+            LogTailer.Update update = tailer.poll();
+            if (update.reset())
+            {
+                events.clear();
+                reset = true;
+            }
+            addEvents(events, update.lines());
+            if (!rotated)
+            {
+                break;
+            }
+            segmentNumber++;
+            tailer = new LogTailer(next, capacity, true);
+        }
+        if (events.size() > capacity)
+        {
+            events = new ArrayList<>(events.subList(events.size() - capacity, events.size()));
+        }
+        return new Update(events, reset);
+    }
+
+    private static void addEvents(List<ResolutionEvent> events, List<String> lines)
+    {
+        for (String line : lines)
+        {
+            ResolutionEvent event = ResolutionLogFormat.decode(line);
+            if (event != null)
+            {
+                events.add(event);
+            }
+        }
+    }
+}
@@ -0,0 +1,204 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.entity.ResolutionEvent;
+import hr.java.enums.ResolutionEventType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * The layout of the resolution log segment files.
+ *
+ * Every segment is a JSON-lines file. Its first line is a fixed-width header with the smallest and largest
+ * event time and ticket ID in the segment, padded with spaces so it can be rewritten in place as events are
+ * appended. Every following line is one {@link ResolutionEvent} with its fields always in the same order.
+ */
+final class ResolutionLogFormat
+{
+    private static final String SEGMENT_PREFIX = "segment-";
+    private static final String SEGMENT_SUFFIX = ".jsonl";
+    private static final String HEADER_FORMAT = "{\"minTime\":%20d,\"maxTime\":%20d,\"minTicketId\":%20d,\"maxTicketId\":%20d}\n";
+    private static final Pattern HEADER_PATTERN = Pattern.compile(
+            "\\{\"minTime\":\\s*(-?\\d+),\"maxTime\":\\s*(-?\\d+),\"minTicketId\":\\s*(-?\\d+),\"maxTicketId\":\\s*(-?\\d+)}");
+    private static final Pattern EVENT_PATTERN = Pattern.compile(
+            "\\{\"type\":\"([A-Z]+)\",\"ticketId\":(-?\\d+),\"agentId\":(-?\\d+|null),\"time\":(-?\\d+)}");
+
+    static final int HEADER_BYTES = encodeHeader(SegmentHeader.EMPTY).length;
+
+    private ResolutionLogFormat() {}
+
+    /**
+     * The time and ticket ID range of the events in one segment.
+     *
+     * @param minTime     the earliest event time in epoch milliseconds
+     * @param maxTime     the latest event time in epoch milliseconds
+     * @param minTicketID the smallest ticket ID
+     * @param maxTicketID the largest ticket ID
+     */
+    record SegmentHeader(long minTime, long maxTime, long minTicketID, long maxTicketID)
+    {
+        static final SegmentHeader EMPTY = new SegmentHeader(Long.MAX_VALUE, Long.MIN_VALUE, Long.MAX_VALUE, Long.MIN_VALUE);
+
+        boolean isEmpty()
+        {
+            return minTime > maxTime;
+        }
+
+        /**
+         * Returns the range widened to include an event.
+         *
+         * @param event the event
+         * @return the widened range
+         */
+        SegmentHeader include(ResolutionEvent event)
+        {
+            return new SegmentHeader(Math.min(minTime, event.epochMillis()), Math.max(maxTime, event.epochMillis()),
+                    Math.min(minTicketID, event.ticketID()), Math.max(maxTicketID, event.ticketID()));
+        }
+
+        /**
+         * Checks whether the segment can contain events in a time window.
+         *
+         * @param from the start of the window in epoch milliseconds, inclusive
+         * @param to   the end of the window in epoch milliseconds, exclusive
+         * @return false if no event of the segment falls in the window
+         */
+        boolean overlaps(long from, long to)
+        {
+            return !isEmpty() && minTime < to && maxTime >= from;
+        }
+
+        /**
+         * Checks whether the segment can contain events of a ticket.
+         *
+         * @param ticketID the ticket ID
+         * @return false if the segment has no events of the ticket
+         */
+        boolean mayContainTicket(long ticketID)
+        {
+            return !isEmpty() && minTicketID <= ticketID && ticketID <= maxTicketID;
+        }
+    }
+
+    /**
+     * Returns the path of a segment.
+     *
+     * @param directory the log directory
+     * @param number    the segment number
+     * @return the segment path
+     */
+    static Path segmentPath(Path directory, int number)
+    {
+        return directory.resolve(String.format(Locale.ROOT, "%s%08d%s", SEGMENT_PREFIX, number, SEGMENT_SUFFIX));
+    }
+
+    /**
+     * Lists the segment numbers in a log directory.
+     *
+     * @param directory the log directory
+     * @return the segment numbers in ascending order, empty if the directory does not exist
+     * @throws IOException if the directory cannot be listed
+     */
+    static List<Integer> listSegments(Path directory) throws IOException
+    {
+        if (!Files.isDirectory(directory))
+        {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(directory))
+        {
+            return files.map(file -> file.getFileName().toString())
+                    .filter(name -> name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX))
+                    .map(name -> name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()))
+                    .filter(number -> number.chars().allMatch(Character::isDigit) && !number.isEmpty())
+                    .map(Integer::parseInt)
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    /**
+     * Encodes a segment header line.
+     *
+     * @param header the header
+     * @return the header line bytes, always {@link #HEADER_BYTES} long
+     */
+    static byte[] encodeHeader(SegmentHeader header)
+    {
+        return String.format(Locale.ROOT, HEADER_FORMAT, header.minTime(), header.maxTime(), header.minTicketID(), header.maxTicketID())
+                .getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the header of a segment.
+     *
+     * @param channel the open segment
+     * @return the header, or null if the segment has no valid header
+     * @throws IOException if the segment cannot be read
+     */
+    static SegmentHeader readHeader(FileChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, buffer.position()) <= 0)
+            {
+                return null;
+            }
+        }
+        Matcher matcher = HEADER_PATTERN.matcher(new String(buffer.array(), StandardCharsets.UTF_8).trim());
+        if (!matcher.matches())
+        {
+            return null;
+        }
+        return new SegmentHeader(Long.parseLong(matcher.group(1)), Long.parseLong(matcher.group(2)),
+                Long.parseLong(matcher.group(3)), Long.parseLong(matcher.group(4)));
+    }
+
+    /**
+     * Encodes an event as a JSON line.
+     *
+     * @param event the event
+     * @return the line, without a line separator
+     */
+    static String encode(ResolutionEvent event)
+    {
+        return "{\"type\":\"" + event.type() + "\",\"ticketId\":" + event.ticketID() + ",\"agentId\":" + event.agentID()
+                + ",\"time\":" + event.epochMillis() + "}";
+    }
+
+    /**
+     * Decodes a JSON line written by {@link #encode(ResolutionEvent)}.
+     *
+     * @param line the line
+     * @return the event, or null if the line is not an event
+     */
+    static ResolutionEvent decode(String line)
+    {
+        Matcher matcher = EVENT_PATTERN.matcher(line.trim());
+        if (!matcher.matches())
+        {
+            return null;
+        }
+        ResolutionEventType type;
+        try
+        {
+            type = ResolutionEventType.valueOf(matcher.group(1));
+        } catch (IllegalArgumentException e)
+        {
+            return null;
+        }
+        String agentID = matcher.group(3);
+        return new ResolutionEvent(type, Long.parseLong(matcher.group(2)),
+                "null".equals(agentID) ? null : Long.parseLong(agentID), Long.parseLong(matcher.group(4)));
+    }
+}
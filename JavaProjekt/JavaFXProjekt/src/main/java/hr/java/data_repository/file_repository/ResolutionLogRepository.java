@@ -1,68 +1,312 @@
 package hr.java.data_repository.file_repository;
 
+import hr.java.data_repository.file_repository.ResolutionLogFormat.SegmentHeader;
 import hr.java.entity.Agent;
+import hr.java.entity.ResolutionEvent;
+import hr.java.enums.LogDurability;
+import hr.java.enums.ResolutionEventType;
 import hr.java.file_paths.FilePath;
 import hr.java.entity.ResolutionLogEntry;
 import hr.java.entity.Ticket;
 import hr.java.exception.FileException;
 
-import java.io.BufferedWriter;
-import java.io.FileWriter;
+import java.io.BufferedReader;
 import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 
+import static java.nio.file.StandardOpenOption.READ;
 import static org.example.javafxprojekt.main.Main.logger;
 
 /**
  * The class ResolutionLogRepository used for writing assigned and resolved
- * log entries into a txt file
+ * log entries into the resolution log and querying them. Entries are queued and
+ * written in batches by a background {@link ResolutionLogWriter} as JSON lines into
+ * rotated segment files, so callers never wait for the disk. Every segment starts with
+ * the time and ticket ID range of its entries, so queries skip the segments that cannot match.
+ * A log written by older versions as a single txt file is moved into the segments on first use.
  */
 public class ResolutionLogRepository
 {
     private ResolutionLogRepository() {}
     private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss");
+    private static final Pattern LEGACY_ENTRY = Pattern.compile(
+            "Ticket \\(ID: (\\d+)\\) has been (ASSIGNED|RESOLVED) (?:to|by) agent \\(ID: (\\d+|null)\\) at (.+)");
+
+    private static final int QUEUE_CAPACITY = 10_000;
+    private static final Duration FLUSH_INTERVAL = Duration.ofMillis(500);
+    private static final LogDurability DURABILITY = LogDurability.OPERATING_SYSTEM;
+    private static final long MAX_SEGMENT_BYTES = 1024L * 1024;
+    private static final Duration MAX_SEGMENT_AGE = Duration.ofDays(1);
+    private static final int MIGRATION_BATCH_SIZE = 10_000;
+
+    private static ResolutionLogWriter writer;
 
     /**
-     * Appends the resolution log to a txt file
+     * Queues the resolution log of an assigned ticket for writing
      *
      * @param resolutionLogEntry the resolution log entry
-     * @throws FileException if there is an error writing to the file
+     * @throws FileException if the resolution log cannot be opened
      */
     public static void assignTicketResolutionLog(ResolutionLogEntry<Ticket, Agent> resolutionLogEntry)
     {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FilePath.RESOLUTION_LOG.getPath(), true)))
+        getWriter().offer(toEvent(ResolutionEventType.ASSIGNED, resolutionLogEntry));
+    }
+
+    /**
+     * Queues the resolution log of a resolved ticket for writing
+     *
+     * @param resolutionLogEntry the resolution log entry
+     * @throws FileException if the resolution log cannot be opened
+     */
+    public static void resolveTicketResolutionLog(ResolutionLogEntry<Ticket, Agent> resolutionLogEntry)
+    {
+        getWriter().offer(toEvent(ResolutionEventType.RESOLVED, resolutionLogEntry));
+    }
+
+    /**
+     * Finds all logged events of a ticket. Events still waiting in the write queue are not included.
+     *
+     * @param ticketID the ticket ID
+     * @return the events of the ticket, oldest first
+     * @throws FileException if the resolution log cannot be read
+     */
+    public static List<ResolutionEvent> findEventsForTicket(long ticketID)
+    {
+        return findEvents(header -> header.mayContainTicket(ticketID), event -> event.ticketID() == ticketID);
+    }
+
+    /**
+     * Finds all logged events in a time window. Events still waiting in the write queue are not included.
+     *
+     * @param from the start of the window, inclusive
+     * @param to   the end of the window, exclusive
+     * @return the events in the window, oldest first
+     * @throws FileException if the resolution log cannot be read
+     */
+    public static List<ResolutionEvent> findEventsBetween(LocalDateTime from, LocalDateTime to)
+    {
+        long fromMillis = toEpochMillis(from);
+        long toMillis = toEpochMillis(to);
+        return findEvents(header -> header.overlaps(fromMillis, toMillis),
+                event -> event.epochMillis() >= fromMillis && event.epochMillis() < toMillis);
+    }
+
+    /**
+     * Creates a follower that returns the events as they are written, starting with the newest ones.
+     *
+     * @param capacity the maximum number of events returned by one poll
+     * @return the {@link ResolutionLogFollower}
+     * @throws FileException if the resolution log cannot be opened
+     */
+    public static ResolutionLogFollower followEvents(int capacity)
+    {
+        getWriter();
+        return new ResolutionLogFollower(Path.of(FilePath.RESOLUTION_LOG_SEGMENTS.getPath()), capacity);
+    }
+
+    /**
+     * Writes the queued entries and closes the resolution log.
+     */
+    public static synchronized void close()
+    {
+        if (writer != null)
         {
-            String formattedDateTime = resolutionLogEntry.getDateTime().format(formatter);
+            try
+            {
+                writer.close();
+            } catch (IOException e)
+            {
+                logger.error("Could not close the resolution log! {}", e.getMessage());
+            }
+            writer = null;
+        }
+    }
+
+    private static ResolutionEvent toEvent(ResolutionEventType type, ResolutionLogEntry<Ticket, Agent> resolutionLogEntry)
+    {
+        Agent agent = resolutionLogEntry.getSecondEntity();
+        return new ResolutionEvent(type, resolutionLogEntry.getFirstEntity().getId(), agent == null ? null : agent.getId(),
+                toEpochMillis(resolutionLogEntry.getDateTime()));
+    }
 
-            bw.write("Ticket (ID: " + resolutionLogEntry.getFirstEntity().getId() + ") has been ASSIGNED to agent (ID: "
-                    + resolutionLogEntry.getSecondEntity().getId() + ") at " + formattedDateTime);
-            bw.newLine();
+    private static long toEpochMillis(LocalDateTime dateTime)
+    {
+        return dateTime.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    /**
+     * Reads the matching events from every segment whose header does not rule them out.
+     *
+     * @param segmentFilter decides from the header whether a segment can hold matching events
+     * @param eventFilter   decides whether an event matches
+     * @return the matching events, oldest first
+     * @throws FileException if the resolution log cannot be read
+     */
+    private static List<ResolutionEvent> findEvents(Predicate<SegmentHeader> segmentFilter, Predicate<ResolutionEvent> eventFilter)
+    {
+        getWriter();
+        Path directory = Path.of(FilePath.RESOLUTION_LOG_SEGMENTS.getPath());
+        List<ResolutionEvent> events = new ArrayList<>();
+        try
+        {
+            for (int number : ResolutionLogFormat.listSegments(directory))
+            {
+                try (FileChannel channel = FileChannel.open(ResolutionLogFormat.segmentPath(directory, number), READ))
+                {
+                    SegmentHeader header = ResolutionLogFormat.readHeader(channel);
+                    if (header == null || !segmentFilter.test(header))
+                    {
+                        continue;
+                    }
+                    BufferedReader reader = new BufferedReader(
+                            Channels.newReader(channel.position(ResolutionLogFormat.HEADER_BYTES), StandardCharsets.UTF_8));
+                    String line;
+                    while ((line = reader.readLine()) != null)
+                    {
+                        ResolutionEvent event = ResolutionLogFormat.decode(line);
+                        if (event != null && eventFilter.test(event))
+                        {
+                            events.add(event);
+                        }
+                    }
+                }
+            }
         } catch (IOException e)
         {
-            logger.error("Could not write resolution log to file!");
-            throw new FileException("Error writing resolution log to file");
+            logger.error("Could not read the resolution log! {}", e.getMessage());
+            throw new FileException("Error reading the resolution log");
         }
+        return events;
     }
 
     /**
-     * Appends the resolution log to a txt file
+     * Returns the log writer, opening the resolution log and migrating the legacy file on first use.
      *
-     * @param resolutionLogEntry the resolution log entry
-     * @throws FileException if there is an error writing to the file
+     * @return the {@link ResolutionLogWriter}
+     * @throws FileException if the resolution log cannot be opened
      */
-    public static void resolveTicketResolutionLog(ResolutionLogEntry<Ticket, Agent> resolutionLogEntry)
+    private static synchronized ResolutionLogWriter getWriter()
     {
-        try (BufferedWriter bw = new BufferedWriter(new FileWriter(FilePath.RESOLUTION_LOG.getPath(), true)))
+        if (writer == null)
         {
-            String formattedDateTime = resolutionLogEntry.getDateTime().format(formatter);
+            ResolutionLogWriter opened = null;
+            try
+            {
+                opened = new ResolutionLogWriter(Path.of(FilePath.RESOLUTION_LOG_SEGMENTS.getPath()), MAX_SEGMENT_BYTES,
+                        MAX_SEGMENT_AGE, QUEUE_CAPACITY, FLUSH_INTERVAL, DURABILITY);
+                migrateLegacyFile(opened);
+            } catch (IOException e)
+            {
+                logger.error("Could not open the resolution log! {}", e.getMessage());
+                if (opened != null)
+                {
+                    try
+                    {
+                        opened.close();
+                    } catch (IOException closeException)
+                    {
+                        e.addSuppressed(closeException);
+                    }
+                }
+                throw new FileException("Error opening the resolution log");
+            }
+            writer = opened;
+        }
+        return writer;
+    }
 
-            bw.write("Ticket (ID: " + resolutionLogEntry.getFirstEntity().getId() + ") has been RESOLVED by agent (ID: "
-                    + resolutionLogEntry.getSecondEntity().getId() + ") at " + formattedDateTime);
-            bw.newLine();
-        } catch (IOException e)
+    /**
+     * Appends the entries of the legacy txt log to empty segments and renames the legacy file.
+     *
+     * @param target the writer to migrate into
+     * @throws IOException if the legacy file cannot be read or moved
+     */
+    private static void migrateLegacyFile(ResolutionLogWriter target) throws IOException
+    {
+        Path legacy = Path.of(FilePath.RESOLUTION_LOG.getPath());
+        if (!Files.exists(legacy))
+        {
+            return;
+        }
+        if (target.isEmpty())
+        {
+            appendLegacyEntries(legacy, target);
+        }
+        Files.move(legacy, legacy.resolveSibling(legacy.getFileName() + ".migrated"), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /**
+     * Appends the entries of the legacy txt log to the segments.
+     * Lines that cannot be parsed are skipped and counted.
+     *
+     * @param legacy the legacy txt log
+     * @param target the writer to migrate into
+     * @throws IOException if the legacy file cannot be read
+     */
+    private static void appendLegacyEntries(Path legacy, ResolutionLogWriter target) throws IOException
+    {
+        List<ResolutionEvent> batch = new ArrayList<>();
+        int migrated = 0;
+        int skipped = 0;
+        try (BufferedReader reader = Files.newBufferedReader(legacy))
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                ResolutionEvent event = parseLegacyEntry(line);
+                if (event == null)
+                {
+                    skipped++;
+                    continue;
+                }
+                batch.add(event);
+                migrated++;
+                if (batch.size() == MIGRATION_BATCH_SIZE)
+                {
+                    target.append(batch);
+                    batch.clear();
+                }
+            }
+        }
+        target.append(batch);
+        if (skipped > 0)
+        {
+            logger.warn("Skipped {} unreadable lines while migrating the resolution log", skipped);
+        }
+        logger.info("Migrated {} entries from {} to the resolution log", migrated, legacy);
+    }
+
+    private static ResolutionEvent parseLegacyEntry(String line)
+    {
+        Matcher matcher = LEGACY_ENTRY.matcher(line.trim());
+        if (!matcher.matches())
+        {
+            return null;
+        }
+        try
+        {
+            LocalDateTime dateTime = LocalDateTime.parse(matcher.group(4), formatter);
+            String agentID = matcher.group(3);
+            return new ResolutionEvent(ResolutionEventType.valueOf(matcher.group(2)), Long.parseLong(matcher.group(1)),
+                    "null".equals(agentID) ? null : Long.parseLong(agentID), toEpochMillis(dateTime));
+        } catch (DateTimeParseException e)
         {
-            logger.error("Could not write resolve ticket resolution log to file!");
-            throw new FileException("Error writing resolution log to file");
+            return null;
         }
     }
 }
@@ -0,0 +1,320 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.data_repository.file_repository.ResolutionLogFormat.SegmentHeader;
+import hr.java.entity.ResolutionEvent;
+import hr.java.enums.LogDurability;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+import static java.nio.file.StandardOpenOption.CREATE;
+import static java.nio.file.StandardOpenOption.READ;
+import static java.nio.file.StandardOpenOption.TRUNCATE_EXISTING;
+import static java.nio.file.StandardOpenOption.WRITE;
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Appends {@link ResolutionEvent} records to the resolution log segments on a background thread.
+ *
+ * Callers only add events to a bounded lock-free queue and never wait for the disk. A single writer thread
+ * wakes up every flush interval, or earlier once a quarter of the queue is filled, and appends everything
+ * queued as one batch to the current segment through a file channel that stays open. The segment header is
+ * widened before the batch is written, so it never claims less than the segment holds. A new segment is
+ * started once the current one reaches its size limit or its oldest event reaches the age limit.
+ * When the queue is full new events are dropped and the number of dropped events is logged.
+ */
+final class ResolutionLogWriter implements Closeable
+{
+    private static final int BUFFER_BYTES = 64 * 1024;
+
+    private final Path directory;
+    private final long maxSegmentBytes;
+    private final long maxSegmentAgeMillis;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_BYTES);
+    private final Queue<ResolutionEvent> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicLong dropped = new AtomicLong();
+    private final int capacity;
+    private final int wakeUpThreshold;
+    private final long flushIntervalNanos;
+    private final LogDurability durability;
+    private final Thread writerThread;
+    private volatile boolean closed;
+
+    private FileChannel segment;
+    private int segmentNumber;
+    private long segmentSize;
+    private SegmentHeader header;
+
+    /**
+     * Opens the newest segment for appending, cutting off a torn last line, and starts the writer thread.
+     *
+     * @param directory       the log directory, created if missing
+     * @param maxSegmentBytes the size after which a new segment is started
+     * @param maxSegmentAge   the age of the oldest event after which a new segment is started
+     * @param capacity        the maximum number of queued events
+     * @param flushInterval   the longest time a queued event waits before it is written
+     * @param durability      how far each batch is written before the writer continues
+     * @throws IOException if the log cannot be opened
+     */
+    ResolutionLogWriter(Path directory, long maxSegmentBytes, Duration maxSegmentAge, int capacity, Duration flushInterval,
+                        LogDurability durability) throws IOException
+    {
+        this.directory = directory;
+        this.maxSegmentBytes = maxSegmentBytes;
+        this.maxSegmentAgeMillis = maxSegmentAge.toMillis();
+        this.capacity = capacity;
+        this.wakeUpThreshold = Math.max(1, capacity / 4);
+        this.flushIntervalNanos = flushInterval.toNanos();
+        this.durability = durability;
+        Files.createDirectories(directory);
+
+        List<Integer> segments = ResolutionLogFormat.listSegments(directory);
+        segmentNumber = segments.isEmpty() ? 1 : segments.getLast();
+        segment = FileChannel.open(ResolutionLogFormat.segmentPath(directory, segmentNumber), CREATE, READ, WRITE);
+        recoverSegment();
+        this.writerThread = Thread.ofPlatform().name("resolution-log-writer").daemon().start(this::run);
+    }
+
+    /**
+     * Queues an event for writing without blocking.
+     *
+     * @param event the event
+     * @return false if the event was dropped because the queue is full or the writer is closed
+     */
+    boolean offer(ResolutionEvent event)
+    {
+        if (closed)
+        {
+            return false;
+        }
+        int size = queued.incrementAndGet();
+        if (size > capacity)
+        {
+            queued.decrementAndGet();
+            dropped.incrementAndGet();
+            return false;
+        }
+        queue.offer(event);
+        if (size == wakeUpThreshold)
+        {
+            LockSupport.unpark(writerThread);
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether the log holds no events yet.
+     *
+     * @return true if nothing was ever written to the log
+     */
+    synchronized boolean isEmpty()
+    {
+        return segmentNumber == 1 && header.isEmpty();
+    }
+
+    /**
+     * Appends events to the log right away, bypassing the queue.
+     *
+     * @param events the events, oldest first
+     * @throws IOException if the events cannot be written
+     */
+    synchronized void append(List<ResolutionEvent> events) throws IOException
+    {
+        if (events.isEmpty())
+        {
+            return;
+        }
+        if (shouldStartNewSegment())
+        {
+            startNewSegment();
+        }
+        SegmentHeader widened = header;
+        for (ResolutionEvent event : events)
+        {
+            widened = widened.include(event);
+        }
+        if (!widened.equals(header))
+        {
+            writeFully(ByteBuffer.wrap(ResolutionLogFormat.encodeHeader(widened)), 0);
+            header = widened;
+        }
+        for (ResolutionEvent event : events)
+        {
+            byte[] bytes = (ResolutionLogFormat.encode(event) + "\n").getBytes(StandardCharsets.UTF_8);
+            if (bytes.length > buffer.remaining())
+            {
+                writeBuffer();
+            }
+            buffer.put(bytes);
+        }
+        writeBuffer();
+        if (durability == LogDurability.DISK)
+        {
+            segment.force(false);
+        }
+    }
+
+    /**
+     * Stops the writer thread, writes the remaining events, forces them to disk and closes the log.
+     *
+     * @throws IOException if the log cannot be closed
+     */
+    @Override
+    public void close() throws IOException
+    {
+        if (closed)
+        {
+            return;
+        }
+        closed = true;
+        LockSupport.unpark(writerThread);
+        try
+        {
+            writerThread.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+        writeQueued();
+        synchronized (this)
+        {
+            try
+            {
+                segment.force(false);
+            } finally
+            {
+                segment.close();
+            }
+        }
+    }
+
+    private void run()
+    {
+        while (!closed)
+        {
+            if (queued.get() < wakeUpThreshold)
+            {
+                LockSupport.parkNanos(this, flushIntervalNanos);
+            }
+            writeQueued();
+        }
+    }
+
+    /**
+     * Writes all queued events as one batch. Errors are logged so that the writer thread keeps running.
+     */
+    private void writeQueued()
+    {
+        List<ResolutionEvent> batch = new ArrayList<>();
+        ResolutionEvent event;
+        while ((event = queue.poll()) != null)
+        {
+            queued.decrementAndGet();
+            batch.add(event);
+        }
+        try
+        {
+            append(batch);
+        } catch (IOException e)
+        {
+            buffer.clear();
+            logger.error("Could not write resolution log to file! {}", e.getMessage());
+        }
+        long droppedEvents = dropped.getAndSet(0);
+        if (droppedEvents > 0)
+        {
+            logger.warn("{} resolution log entries were dropped because the log queue was full", droppedEvents);
+        }
+    }
+
+    private boolean shouldStartNewSegment()
+    {
+        return !header.isEmpty()
+                && (segmentSize >= maxSegmentBytes || System.currentTimeMillis() - header.minTime() >= maxSegmentAgeMillis);
+    }
+
+    private void startNewSegment() throws IOException
+    {
+        segment.force(false);
+        segment.close();
+        segmentNumber++;
+        segment = FileChannel.open(ResolutionLogFormat.segmentPath(directory, segmentNumber), CREATE, READ, WRITE, TRUNCATE_EXISTING);
+        header = SegmentHeader.EMPTY;
+        writeFully(ByteBuffer.wrap(ResolutionLogFormat.encodeHeader(header)), 0);
+        segmentSize = ResolutionLogFormat.HEADER_BYTES;
+    }
+
+    /**
+     * Rebuilds the header of the opened segment from its events and cuts off a line torn by a crash.
+     *
+     * @throws IOException if the segment cannot be read or written
+     */
+    private void recoverSegment() throws IOException
+    {
+        long size = segment.size();
+        header = SegmentHeader.EMPTY;
+        segmentSize = ResolutionLogFormat.HEADER_BYTES;
+        if (size > ResolutionLogFormat.HEADER_BYTES)
+        {
+            ByteBuffer events = ByteBuffer.allocate(Math.toIntExact(size - ResolutionLogFormat.HEADER_BYTES));
+            while (events.hasRemaining())
+            {
+                if (segment.read(events, ResolutionLogFormat.HEADER_BYTES + events.position()) <= 0)
+                {
+                    break;
+                }
+            }
+            int end = events.position();
+            while (end > 0 && events.get(end - 1) != '\n')
+            {
+                end--;
+            }
+            for (String line : new String(events.array(), 0, end, StandardCharsets.UTF_8).split("\n"))
+            {
+                ResolutionEvent event = ResolutionLogFormat.decode(line);
+                if (event != null)
+                {
+                    header = header.include(event);
+                }
+            }
+            segmentSize += end;
+        }
+        if (segmentSize < size)
+        {
+            logger.warn("Cutting off {} bytes of a torn resolution log entry in segment {}", size - segmentSize, segmentNumber);
+        }
+        segment.truncate(segmentSize);
+        writeFully(ByteBuffer.wrap(ResolutionLogFormat.encodeHeader(header)), 0);
+    }
+
+    private void writeBuffer() throws IOException
+    {
+        buffer.flip();
+        segmentSize += writeFully(buffer, segmentSize);
+        buffer.clear();
+    }
+
+    private int writeFully(ByteBuffer source, long position) throws IOException
+    {
+        int written = 0;
+        while (source.hasRemaining())
+        {
+            written += segment.write(source, position + written);
+        }
+        return written;
+    }
+}
@@ -0,0 +1,272 @@
+package hr.java.data_repository.file_repository;
+
+import hr.java.exception.FileException;
+import hr.java.file_paths.FilePath;
+import javafx.scene.image.Image;
+import javafx.scene.image.PixelFormat;
+import javafx.scene.image.WritableImage;
+
+import javax.imageio.ImageIO;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Stores the images attached to tickets together with a small thumbnail of each.
+ *
+ * Pixels are copied between JavaFX and AWT images in one bulk call per image instead of one call per pixel.
+ * Saving encodes both PNG files and is meant to run on a background thread, see
+ * {@link hr.java.thread_managmenet.DataLoadService}. The thumbnails of recently viewed tickets are kept in a
+ * bounded least-recently-used cache, so reopening a ticket does not read or decode any file; full-size images
+ * are only decoded when asked for. Images saved before thumbnails existed get their thumbnail on first view.
+ */
+public final class TicketImageRepository
+{
+    private static final int THUMBNAIL_WIDTH = 320;
+    private static final int THUMBNAIL_HEIGHT = 240;
+    private static final int THUMBNAIL_CACHE_SIZE = 100;
+
+    private static final Map<Long, Image> thumbnails = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Image> eldest)
+        {
+            return size() > THUMBNAIL_CACHE_SIZE;
+        }
+    };
+
+    private TicketImageRepository() {}
+
+    /**
+     * Saves the image of a ticket and its thumbnail as PNG files. Both files are written to a temporary
+     * file first and then moved into place, so a reader never sees a half-written image.
+     *
+     * @param ticketID the ticket ID
+     * @param image    the loaded image
+     * @throws FileException if the image cannot be written
+     */
+    public static void saveImage(long ticketID, Image image)
+    {
+        int width = (int) image.getWidth();
+        int height = (int) image.getHeight();
+        int[] pixels = new int[width * height];
+        image.getPixelReader().getPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        BufferedImage fullSize = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        fullSize.getRaster().setDataElements(0, 0, width, height, pixels);
+        BufferedImage thumbnail = scaleToThumbnail(fullSize);
+        try
+        {
+            write(fullSize, imagePath(ticketID));
+            write(thumbnail, thumbnailPath(ticketID));
+        } catch (IOException e)
+        {
+            logger.error("Could not save the image of ticket {}! {}", ticketID, e.getMessage());
+            throw new FileException("Failed to save the image, " + e.getMessage(), e);
+        }
+        cacheThumbnail(ticketID, toImage(thumbnail));
+    }
+
+    /**
+     * Returns the thumbnail of a ticket image, from the cache if it was viewed recently.
+     * Blocks while the thumbnail is read, so it must not be called on the JavaFX thread.
+     *
+     * @param ticketID the ticket ID
+     * @return the thumbnail, or null if the ticket has no image
+     * @throws FileException if the thumbnail cannot be read or created
+     */
+    public static Image getThumbnail(long ticketID)
+    {
+        synchronized (thumbnails)
+        {
+            Image cached = thumbnails.get(ticketID);
+            if (cached != null)
+            {
+                return cached;
+            }
+        }
+        Path thumbnailPath = thumbnailPath(ticketID);
+        Path imagePath = imagePath(ticketID);
+        Image thumbnail;
+        try
+        {
+            if (Files.exists(thumbnailPath))
+            {
+                thumbnail = toImage(read(thumbnailPath));
+            }
+            else if (Files.exists(imagePath))
+            {
+                BufferedImage scaled = scaleToThumbnail(read(imagePath));
+                write(scaled, thumbnailPath);
+                thumbnail = toImage(scaled);
+            }
+            else
+            {
+                return null;
+            }
+        } catch (IOException e)
+        {
+            logger.error("Could not read the thumbnail of ticket {}! {}", ticketID, e.getMessage());
+            throw new FileException("Failed to read the image of ticket " + ticketID + "!", e);
+        }
+        cacheThumbnail(ticketID, thumbnail);
+        return thumbnail;
+    }
+
+    /**
+     * Decodes the full-size image of a ticket. Full-size images are not cached.
+     * Blocks while the image is read, so it must not be called on the JavaFX thread.
+     *
+     * @param ticketID the ticket ID
+     * @return the image, or null if the ticket has no image
+     * @throws FileException if the image cannot be read
+     */
+    public static Image loadImage(long ticketID)
+    {
+        Path imagePath = imagePath(ticketID);
+        if (!Files.exists(imagePath))
+        {
+            return null;
+        }
+        Image image = new Image(imagePath.toUri().toString());
+        if (image.isError())
+        {
+            logger.error("Could not read the image of ticket {}! {}", ticketID, image.getException().getMessage());
+            throw new FileException("Failed to read the image of ticket " + ticketID + "!", image.getException());
+        }
+        return image;
+    }
+
+    /**
+     * Deletes the image and thumbnail of a ticket.
+     *
+     * @param ticketID the ticket ID
+     * @throws FileException if a file cannot be deleted
+     */
+    public static void deleteImage(long ticketID)
+    {
+        synchronized (thumbnails)
+        {
+            thumbnails.remove(ticketID);
+        }
+        try
+        {
+            Files.deleteIfExists(imagePath(ticketID));
+            Files.deleteIfExists(thumbnailPath(ticketID));
+        } catch (IOException e)
+        {
+            throw new FileException("Error deleting file" + e);
+        }
+    }
+
+    private static Path imagePath(long ticketID)
+    {
+        return Path.of(FilePath.TICKET_IMAGES.getPath(), ticketID + ".png");
+    }
+
+    private static Path thumbnailPath(long ticketID)
+    {
+        return Path.of(FilePath.TICKET_THUMBNAILS.getPath(), ticketID + ".png");
+    }
+
+    private static void cacheThumbnail(long ticketID, Image thumbnail)
+    {
+        synchronized (thumbnails)
+        {
+            thumbnails.put(ticketID, thumbnail);
+        }
+    }
+
+    private static BufferedImage read(Path source) throws IOException
+    {
+        BufferedImage image = ImageIO.read(source.toFile());
+        if (image == null)
+        {
+            throw new IOException(source + " is not a readable image");
+        }
+        return image;
+    }
+
+    private static void write(BufferedImage image, Path target) throws IOException
+    {
+        Files.createDirectories(target.getParent());
+        Path part = target.resolveSibling(target.getFileName() + ".part");
+        if (!ImageIO.write(image, "png", part.toFile()))
+        {
+            throw new IOException("No PNG writer available");
+        }
+        Files.move(part, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Scales an image down to fit the thumbnail size, keeping its aspect ratio. Large images are halved
+     * repeatedly before the last step, which keeps bilinear scaling from skipping pixels.
+     *
+     * @param image the full-size image
+     * @return the thumbnail, the image itself if it already fits
+     */
+    private static BufferedImage scaleToThumbnail(BufferedImage image)
+    {
+        double scale = Math.min((double) THUMBNAIL_WIDTH / image.getWidth(), (double) THUMBNAIL_HEIGHT / image.getHeight());
+        if (scale >= 1)
+        {
+            return toArgb(image);
+        }
+        int targetWidth = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int targetHeight = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        BufferedImage scaled = image;
+        int width = image.getWidth();
+        int height = image.getHeight();
+        do
+        {
+            width = Math.max(targetWidth, width / 2);
+            height = Math.max(targetHeight, height / 2);
+            scaled = resize(scaled, width, height);
+        } while (width != targetWidth || height != targetHeight);
+        return scaled;
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height)
+    {
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        Graphics2D graphics = resized.createGraphics();
+        try
+        {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.drawImage(image, 0, 0, width, height, null);
+        } finally
+        {
+            graphics.dispose();
+        }
+        return resized;
+    }
+
+    private static BufferedImage toArgb(BufferedImage image)
+    {
+        return image.getType() == BufferedImage.TYPE_INT_ARGB ? image : resize(image, image.getWidth(), image.getHeight());
+    }
+
+    /**
+     * Copies an AWT image into a JavaFX image in one bulk call.
+     *
+     * @param image the AWT image
+     * @return the JavaFX image
+     */
+    private static Image toImage(BufferedImage image)
+    {
+        BufferedImage argb = toArgb(image);
+        int width = argb.getWidth();
+        int height = argb.getHeight();
+        int[] pixels = (int[]) argb.getRaster().getDataElements(0, 0, width, height, null);
+        WritableImage converted = new WritableImage(width, height);
+        converted.getPixelWriter().setPixels(0, 0, width, height, PixelFormat.getIntArgbInstance(), pixels, 0, width);
+        return converted;
+    }
+}
@@ -0,0 +1,33 @@
+package hr.java.data_transfer;
+
+/**
+ * The progress of a ticket import, reported after every stored batch and returned once the import finishes.
+ *
+ * @param source        the imported file
+ * @param skipped       the records skipped because an earlier run already handled them
+ * @param imported      the tickets stored by this run
+ * @param rejected      the records rejected by this run because they are invalid
+ * @param elapsedMillis the time since this run started
+ */
+public record ImportProgress(String source, long skipped, long imported, long rejected, long elapsedMillis)
+{
+    /**
+     * Returns the number of records this run handled, stored or rejected.
+     *
+     * @return the handled records
+     */
+    public long handled()
+    {
+        return imported + rejected;
+    }
+
+    /**
+     * Returns how many records this run handled per second.
+     *
+     * @return the records per second
+     */
+    public double recordsPerSecond()
+    {
+        return elapsedMillis == 0 ? 0 : handled() * 1000.0 / elapsedMillis;
+    }
+}
@@ -0,0 +1,103 @@
+package hr.java.data_transfer;
+
+import hr.java.data_repository.database_repository.TicketDatabase;
+import hr.java.entity.Ticket;
+import hr.java.enums.TransferFormat;
+import hr.java.exception.DatabaseException;
+import hr.java.exception.FileException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Exports all tickets to a CSV or JSON-lines file.
+ *
+ * Tickets are streamed from {@link TicketDatabase#streamTickets(int)} straight into a buffered file writer, so
+ * memory use stays the same for any number of tickets. The export is written to a ".part" file next to the
+ * target, which replaces the target only once every ticket has been written, so a failed export never leaves
+ * a truncated file behind.
+ */
+public final class TicketExporter
+{
+    public static final int DEFAULT_FETCH_SIZE = 1000;
+
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final int fetchSize;
+
+    /**
+     * Creates an exporter.
+     *
+     * @param fetchSize the number of tickets fetched from the database at once
+     */
+    public TicketExporter(int fetchSize)
+    {
+        if (fetchSize < 1)
+        {
+            throw new IllegalArgumentException("The fetch size must be positive");
+        }
+        this.fetchSize = fetchSize;
+    }
+
+    /**
+     * Exports all tickets in ticket ID order. The format is picked from the file extension,
+     * see {@link TransferFormat#of(Path)}.
+     *
+     * @param file the CSV or JSON-lines file, replaced if it exists
+     * @return the number of exported tickets
+     * @throws FileException     if the file cannot be written
+     * @throws DatabaseException if the tickets cannot be read
+     */
+    public long exportFile(Path file)
+    {
+        long started = System.nanoTime();
+        Path part = file.resolveSibling(file.getFileName() + ".part");
+        long exported = 0;
+        try
+        {
+            try (TicketRecordWriter writer = new TicketRecordWriter(new BufferedWriter(
+                    new OutputStreamWriter(Files.newOutputStream(part), StandardCharsets.UTF_8), BUFFER_CHARS), TransferFormat.of(file));
+                 Stream<Ticket> tickets = TicketDatabase.streamTickets(fetchSize))
+            {
+                Iterator<Ticket> iterator = tickets.iterator();
+                while (iterator.hasNext())
+                {
+                    writer.write(iterator.next());
+                    exported++;
+                }
+            }
+            Files.move(part, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e)
+        {
+            deletePart(part);
+            logger.error("Could not export tickets to {}! {}", file, e.getMessage());
+            throw new FileException("Could not export tickets to " + file + "!", e);
+        } catch (RuntimeException e)
+        {
+            deletePart(part);
+            throw e;
+        }
+        logger.info("Exported {} tickets to {} in {} ms", exported, file, (System.nanoTime() - started) / 1_000_000);
+        return exported;
+    }
+
+    private static void deletePart(Path part)
+    {
+        try
+        {
+            Files.deleteIfExists(part);
+        } catch (IOException e)
+        {
+            logger.error("Could not delete the unfinished export {}! {}", part, e.getMessage());
+        }
+    }
+}
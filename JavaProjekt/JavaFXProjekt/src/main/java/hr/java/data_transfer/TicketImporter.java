@@ -0,0 +1,233 @@
+package hr.java.data_transfer;
+
+import hr.java.data_repository.database_repository.ImportDatabase;
+import hr.java.data_repository.database_repository.ImportedTicket;
+import hr.java.enums.TransferFormat;
+import hr.java.exception.DatabaseException;
+import hr.java.exception.FileException;
+import hr.java.exception.InvalidUserInputException;
+import hr.java.exception.UserInputLengthException;
+import hr.java.thread_managmenet.BackgroundExecutor;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Imports historical tickets from CSV or JSON files in batches.
+ *
+ * A reader task splits the file into batches of raw records and hands each batch to its own parsing task, so
+ * several batches are parsed and validated at once. The calling thread stores the parsed batches in file order,
+ * each in one transaction together with the import checkpoint, see {@link ImportDatabase}. At most
+ * {@code parallelism} batches are read ahead of the one being stored, which bounds the memory used for any file
+ * size. An import that is interrupted or fails resumes after the last stored batch when the same file is imported
+ * again, and importing a finished file again stores nothing. Invalid records are counted and logged, but do not
+ * stop the import.
+ */
+public final class TicketImporter
+{
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public static final int DEFAULT_PARALLELISM = Runtime.getRuntime().availableProcessors();
+
+    private static final int LOGGED_REJECTIONS = 100;
+    private static final Duration PRODUCER_CHECK_INTERVAL = Duration.ofSeconds(1);
+    private static final Future<ParsedBatch> END = CompletableFuture.completedFuture(null);
+
+    private final int batchSize;
+    private final int parallelism;
+    private final Consumer<ImportProgress> progressListener;
+
+    /**
+     * A parsed batch of records.
+     *
+     * @param checkpoint the number of records of the file handled once the batch is stored
+     * @param tickets    the valid tickets
+     * @param rejections the reasons the invalid records were rejected
+     */
+    private record ParsedBatch(long checkpoint, List<ImportedTicket> tickets, List<String> rejections)
+    {
+    }
+
+    /**
+     * Creates an importer.
+     *
+     * @param batchSize        the number of records stored in one transaction
+     * @param parallelism      the number of batches parsed at once
+     * @param progressListener called on the importing thread after every stored batch
+     */
+    public TicketImporter(int batchSize, int parallelism, Consumer<ImportProgress> progressListener)
+    {
+        if (batchSize < 1 || parallelism < 1)
+        {
+            throw new IllegalArgumentException("The batch size and parallelism must be positive");
+        }
+        this.batchSize = batchSize;
+        this.parallelism = parallelism;
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Imports the tickets of a file, resuming after the records an earlier run already handled.
+     * The format is picked from the file extension, see {@link TransferFormat#of(Path)}.
+     *
+     * @param file the CSV or JSON file
+     * @return the progress of the finished import
+     * @throws FileException     if the file cannot be read or the import is interrupted
+     * @throws DatabaseException if a batch cannot be stored, the batches stored before it stay imported
+     */
+    public ImportProgress importFile(Path file)
+    {
+        String source = file.toAbsolutePath().normalize().toString();
+        long checkpoint = ImportDatabase.getCheckpoint(source);
+        long started = System.nanoTime();
+        long imported = 0;
+        long rejected = 0;
+        BlockingQueue<Future<ParsedBatch>> batches = new ArrayBlockingQueue<>(parallelism);
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8))
+        {
+            TicketRecordReader records = new TicketRecordReader(reader, TransferFormat.of(file));
+            long skipped = records.skip(checkpoint);
+            Future<Void> producer = BackgroundExecutor.submit("ticket-import/reader",
+                    () -> readBatches(records, new TicketRecordParser(TransferFormat.of(file), records.header()), skipped, batches));
+            try
+            {
+                Future<ParsedBatch> next;
+                while ((next = nextBatch(batches, producer)) != END)
+                {
+                    ParsedBatch batch = next.get();
+                    ImportDatabase.importTickets(source, batch.checkpoint(), batch.tickets());
+                    logRejections(source, rejected, batch.rejections());
+                    imported += batch.tickets().size();
+                    rejected += batch.rejections().size();
+                    progressListener.accept(new ImportProgress(source, skipped, imported, rejected, elapsedMillis(started)));
+                }
+                producer.get();
+                ImportProgress progress = new ImportProgress(source, skipped, imported, rejected, elapsedMillis(started));
+                logger.info("Imported {} tickets from {} in {} ms, {} records rejected, {} skipped", imported, source,
+                        progress.elapsedMillis(), rejected, skipped);
+                return progress;
+            } finally
+            {
+                producer.cancel(true);
+                batches.forEach(batch -> batch.cancel(true));
+            }
+        } catch (IOException e)
+        {
+            logger.error("Could not read the import file {}! {}", source, e.getMessage());
+            throw new FileException("Could not read the import file " + source + "!", e);
+        } catch (ExecutionException e)
+        {
+            logger.error("Could not read the import file {}! {}", source, e.getCause().getMessage());
+            throw new FileException("Could not read the import file " + source + "!", e.getCause());
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new FileException("The import of " + source + " was interrupted after " + imported + " tickets!", e);
+        }
+    }
+
+    /**
+     * Waits for the next batch. If the reader stopped without queueing the end of the file, for example because it
+     * was interrupted while the queue was full, its outcome is returned as the last batch instead of waiting forever.
+     */
+    private static Future<ParsedBatch> nextBatch(BlockingQueue<Future<ParsedBatch>> batches, Future<Void> producer)
+            throws InterruptedException
+    {
+        while (true)
+        {
+            Future<ParsedBatch> next = batches.poll(PRODUCER_CHECK_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+            if (next != null)
+            {
+                return next;
+            }
+            if (producer.isDone())
+            {
+                next = batches.poll();
+                if (next != null)
+                {
+                    return next;
+                }
+                if (producer.state() == Future.State.FAILED)
+                {
+                    return CompletableFuture.failedFuture(producer.exceptionNow());
+                }
+                return CompletableFuture.failedFuture(new IOException("The reader stopped before the end of the file"));
+            }
+        }
+    }
+
+    /**
+     * Splits the rest of the file into batches and starts parsing each of them, in file order.
+     * The end of the file is marked with {@link #END}, any failure of the reader with a failed batch.
+     */
+    private Void readBatches(TicketRecordReader records, TicketRecordParser parser, long position,
+                             BlockingQueue<Future<ParsedBatch>> batches) throws IOException, InterruptedException
+    {
+        try
+        {
+            List<String> raw;
+            while (!(raw = records.next(batchSize)).isEmpty())
+            {
+                long first = position + 1;
+                position += raw.size();
+                long checkpoint = position;
+                List<String> batch = raw;
+                batches.put(BackgroundExecutor.submit("ticket-import/parser", () -> parse(parser, batch, first, checkpoint)));
+            }
+        } catch (Throwable e)
+        {
+            batches.put(CompletableFuture.failedFuture(e));
+            throw e;
+        }
+        batches.put(END);
+        return null;
+    }
+
+    private static ParsedBatch parse(TicketRecordParser parser, List<String> records, long firstRecord, long checkpoint)
+    {
+        List<ImportedTicket> tickets = new ArrayList<>(records.size());
+        List<String> rejections = new ArrayList<>();
+        for (int i = 0; i < records.size(); i++)
+        {
+            try
+            {
+                tickets.add(parser.parse(records.get(i)));
+            } catch (InvalidUserInputException | UserInputLengthException e)
+            {
+                rejections.add("record " + (firstRecord + i) + ": " + e.getMessage());
+            }
+        }
+        return new ParsedBatch(checkpoint, tickets, rejections);
+    }
+
+    private static void logRejections(String source, long alreadyRejected, List<String> rejections)
+    {
+        for (int i = 0; i < rejections.size() && alreadyRejected + i < LOGGED_REJECTIONS; i++)
+        {
+            logger.warn("Rejected {} of {}", rejections.get(i), source);
+        }
+        if (alreadyRejected < LOGGED_REJECTIONS && alreadyRejected + rejections.size() >= LOGGED_REJECTIONS)
+        {
+            logger.warn("Further rejected records of {} are only counted", source);
+        }
+    }
+
+    private static long elapsedMillis(long started)
+    {
+        return (System.nanoTime() - started) / 1_000_000;
+    }
+}
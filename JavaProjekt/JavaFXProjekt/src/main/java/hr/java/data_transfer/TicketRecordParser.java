@@ -0,0 +1,325 @@
+package hr.java.data_transfer;
+
+import hr.java.data_repository.database_repository.ImportedTicket;
+import hr.java.entity.Customer;
+import hr.java.entity.Person;
+import hr.java.entity.Ticket;
+import hr.java.enums.TicketPriority;
+import hr.java.enums.TicketStatus;
+import hr.java.enums.TransferFormat;
+import hr.java.exception.InvalidUserInputException;
+import hr.java.exception.UserInputLengthException;
+import hr.java.utils.InputValidator;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Parses and validates the records split off by a {@link TicketRecordReader}.
+ *
+ * Fields are matched by name, ignoring case, see {@link #COLUMNS}. Names, email, summary and description are
+ * checked with the same {@link InputValidator} rules as a ticket submitted in the application. A missing status
+ * is OPEN, a missing priority NORMAL and a missing creation time the time of the import. In-progress tickets are
+ * rejected, because the assigned agent is not part of the record. A parser holds no mutable state, so one
+ * instance is shared by all parsing threads.
+ */
+final class TicketRecordParser
+{
+    /**
+     * The field names of a ticket record.
+     */
+    static final List<String> COLUMNS = List.of("firstName", "lastName", "email", "summary", "description", "status",
+            "priority", "createdAt", "resolvedAt");
+
+    private static final int NAME_MAX_LENGTH = 30;
+    private static final int EMAIL_MAX_LENGTH = 50;
+    private static final int SUMMARY_MAX_LENGTH = 50;
+    private static final int DESCRIPTION_MAX_LENGTH = 300;
+
+    private final TransferFormat format;
+    private final Map<String, Integer> csvColumns = new HashMap<>();
+
+    /**
+     * Creates a parser.
+     *
+     * @param format the file format
+     * @param header the CSV column names, ignored for JSON
+     */
+    TicketRecordParser(TransferFormat format, List<String> header)
+    {
+        this.format = format;
+        for (int i = 0; i < header.size(); i++)
+        {
+            csvColumns.putIfAbsent(header.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+    }
+
+    /**
+     * Parses and validates one record.
+     *
+     * @param record the raw record text
+     * @return the ticket and its customer
+     * @throws InvalidUserInputException if the record is malformed or a field has an invalid value
+     * @throws UserInputLengthException  if a field is empty or too long
+     */
+    ImportedTicket parse(String record) throws InvalidUserInputException, UserInputLengthException
+    {
+        Map<String, String> fields = format == TransferFormat.CSV ? csvFields(record) : jsonFields(record);
+        String firstName = field(fields, "firstName");
+        String lastName = field(fields, "lastName");
+        String email = field(fields, "email");
+        String summary = field(fields, "summary");
+        String description = field(fields, "description");
+        InputValidator.lengthValidator("Import - First name field", firstName, NAME_MAX_LENGTH);
+        InputValidator.lengthValidator("Import - Last name field", lastName, NAME_MAX_LENGTH);
+        InputValidator.lengthValidator("Import - E-mail field", email, EMAIL_MAX_LENGTH);
+        InputValidator.emailValidator(email);
+        InputValidator.lengthValidator("Import - Summary field", summary, SUMMARY_MAX_LENGTH);
+        InputValidator.onlyLengthValidation("Import - Description field", description, DESCRIPTION_MAX_LENGTH);
+
+        TicketStatus status = parseEnum(TicketStatus.class, "status", field(fields, "status"), TicketStatus.OPEN);
+        if (status == TicketStatus.IN_PROGRESS)
+        {
+            throw new InvalidUserInputException("In-progress tickets cannot be imported without their agent!");
+        }
+        TicketPriority priority = parseEnum(TicketPriority.class, "priority", field(fields, "priority"), TicketPriority.NORMAL);
+        LocalDateTime createdAt = parseDateTime("createdAt", field(fields, "createdAt"));
+        LocalDateTime resolvedAt = parseDateTime("resolvedAt", field(fields, "resolvedAt"));
+        Ticket ticket = new Ticket(null, summary, description, status, priority, null, null,
+                createdAt == null ? LocalDateTime.now() : createdAt, resolvedAt);
+        return new ImportedTicket(new Customer(new Person(0L, firstName, lastName), email), ticket);
+    }
+
+    /**
+     * Splits a CSV record into its fields. Fields may be quoted, with quotes inside written twice.
+     *
+     * @param record the record
+     * @return the unquoted fields
+     */
+    static List<String> splitCsv(String record)
+    {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < record.length(); i++)
+        {
+            char c = record.charAt(i);
+            if (quoted)
+            {
+                if (c != '"')
+                {
+                    field.append(c);
+                }
+                else if (i + 1 < record.length() && record.charAt(i + 1) == '"')
+                {
+                    field.append('"');
+                    i++;
+                }
+                else
+                {
+                    quoted = false;
+                }
+            }
+            else if (c == '"')
+            {
+                quoted = true;
+            }
+            else if (c == ',')
+            {
+                fields.add(field.toString());
+                field.setLength(0);
+            }
+            else
+            {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    private Map<String, String> csvFields(String record)
+    {
+        List<String> values = splitCsv(record);
+        Map<String, String> fields = new HashMap<>();
+        for (Map.Entry<String, Integer> column : csvColumns.entrySet())
+        {
+            if (column.getValue() < values.size())
+            {
+                fields.put(column.getKey(), values.get(column.getValue()));
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * Parses a flat JSON object whose values are strings, numbers, booleans or null.
+     *
+     * @param record the object text
+     * @return the values keyed by lower case field name, numbers and booleans as their text, null values left out
+     * @throws InvalidUserInputException if the text is not a flat JSON object
+     */
+    private static Map<String, String> jsonFields(String record) throws InvalidUserInputException
+    {
+        Map<String, String> fields = new HashMap<>();
+        int[] position = {skipWhitespace(record, 0)};
+        expect(record, position, '{');
+        if (peek(record, position) == '}')
+        {
+            return fields;
+        }
+        while (true)
+        {
+            String key = readString(record, position);
+            expect(record, position, ':');
+            String value = peek(record, position) == '"' ? readString(record, position) : readLiteral(record, position);
+            if (value != null)
+            {
+                fields.put(key.toLowerCase(Locale.ROOT), value);
+            }
+            char next = peek(record, position);
+            position[0]++;
+            if (next == '}')
+            {
+                return fields;
+            }
+            if (next != ',')
+            {
+                throw new InvalidUserInputException("Malformed JSON record!");
+            }
+        }
+    }
+
+    private static String readString(String record, int[] position) throws InvalidUserInputException
+    {
+        expect(record, position, '"');
+        StringBuilder value = new StringBuilder();
+        for (int i = position[0]; i < record.length(); i++)
+        {
+            char c = record.charAt(i);
+            if (c == '"')
+            {
+                position[0] = i + 1;
+                return value.toString();
+            }
+            if (c != '\\')
+            {
+                value.append(c);
+                continue;
+            }
+            if (++i == record.length())
+            {
+                break;
+            }
+            char escaped = record.charAt(i);
+            switch (escaped)
+            {
+                case 'b' -> value.append('\b');
+                case 'f' -> value.append('\f');
+                case 'n' -> value.append('\n');
+                case 'r' -> value.append('\r');
+                case 't' -> value.append('\t');
+                case 'u' ->
+                {
+                    if (i + 4 >= record.length())
+                    {
+                        throw new InvalidUserInputException("Malformed JSON escape!");
+                    }
+                    try
+                    {
+                        value.append((char) Integer.parseInt(record.substring(i + 1, i + 5), 16));
+                    } catch (NumberFormatException e)
+                    {
+                        throw new InvalidUserInputException("Malformed JSON escape!");
+                    }
+                    i += 4;
+                }
+                default -> value.append(escaped);
+            }
+        }
+        throw new InvalidUserInputException("Unterminated JSON string!");
+    }
+
+    private static String readLiteral(String record, int[] position) throws InvalidUserInputException
+    {
+        int start = position[0];
+        int end = start;
+        while (end < record.length() && ",} \t\r\n".indexOf(record.charAt(end)) < 0)
+        {
+            end++;
+        }
+        String literal = record.substring(start, end);
+        if (literal.isEmpty() || literal.startsWith("{") || literal.startsWith("["))
+        {
+            throw new InvalidUserInputException("Only text, numbers, booleans and null are allowed as JSON values!");
+        }
+        position[0] = end;
+        return literal.equals("null") ? null : literal;
+    }
+
+    private static void expect(String record, int[] position, char expected) throws InvalidUserInputException
+    {
+        if (peek(record, position) != expected)
+        {
+            throw new InvalidUserInputException("Malformed JSON record, expected '" + expected + "'!");
+        }
+        position[0]++;
+    }
+
+    private static char peek(String record, int[] position)
+    {
+        position[0] = skipWhitespace(record, position[0]);
+        return position[0] < record.length() ? record.charAt(position[0]) : 0;
+    }
+
+    private static int skipWhitespace(String record, int position)
+    {
+        while (position < record.length() && Character.isWhitespace(record.charAt(position)))
+        {
+            position++;
+        }
+        return position;
+    }
+
+    private static String field(Map<String, String> fields, String name)
+    {
+        String value = fields.get(name.toLowerCase(Locale.ROOT));
+        return value == null ? "" : value.trim();
+    }
+
+    private static <E extends Enum<E>> E parseEnum(Class<E> type, String name, String value, E defaultValue)
+            throws InvalidUserInputException
+    {
+        if (value.isEmpty())
+        {
+            return defaultValue;
+        }
+        try
+        {
+            return Enum.valueOf(type, value.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e)
+        {
+            throw new InvalidUserInputException("Invalid " + name + ": " + value + "!");
+        }
+    }
+
+    private static LocalDateTime parseDateTime(String name, String value) throws InvalidUserInputException
+    {
+        if (value.isEmpty())
+        {
+            return null;
+        }
+        try
+        {
+            return LocalDateTime.parse(value.replace(' ', 'T'));
+        } catch (DateTimeParseException e)
+        {
+            throw new InvalidUserInputException("Invalid " + name + ": " + value + "!");
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package hr.java.data_transfer;
+
+import hr.java.enums.TransferFormat;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Splits an import file into the raw text of its records without interpreting their fields.
+ *
+ * A CSV record ends at a line break outside of quotes, so quoted fields may span lines, and blank lines are
+ * skipped. The header line is read when the reader is created. A JSON record is a top level object; the
+ * brackets and commas of an enclosing array and the whitespace between objects are skipped, so both JSON lines
+ * and a single array are read the same way. Splitting is cheap compared to parsing, which is left to
+ * {@link TicketRecordParser} so that it can run on several threads.
+ */
+final class TicketRecordReader
+{
+    private static final int BUFFER_CHARS = 64 * 1024;
+
+    private final Reader reader;
+    private final TransferFormat format;
+    private final char[] buffer = new char[BUFFER_CHARS];
+    private final List<String> header;
+    private int position;
+    private int limit;
+
+    /**
+     * Creates a reader and reads the CSV header.
+     *
+     * @param reader the file contents
+     * @param format the file format
+     * @throws IOException if the file cannot be read or a CSV file has no header
+     */
+    TicketRecordReader(Reader reader, TransferFormat format) throws IOException
+    {
+        this.reader = reader;
+        this.format = format;
+        if (format == TransferFormat.CSV)
+        {
+            String headerLine = next();
+            if (headerLine == null)
+            {
+                throw new IOException("The CSV file has no header line");
+            }
+            header = TicketRecordParser.splitCsv(headerLine);
+        }
+        else
+        {
+            header = List.of();
+        }
+    }
+
+    /**
+     * Returns the column names of a CSV file.
+     *
+     * @return the column names in file order, empty for JSON files
+     */
+    List<String> header()
+    {
+        return header;
+    }
+
+    /**
+     * Reads the raw text of the next record.
+     *
+     * @return the record, or null at the end of the file
+     * @throws IOException if the file cannot be read or ends inside a record
+     */
+    String next() throws IOException
+    {
+        return format == TransferFormat.CSV ? nextCsvRecord() : nextJsonRecord();
+    }
+
+    /**
+     * Skips records without returning them.
+     *
+     * @param count the number of records to skip
+     * @return the number of records skipped, less than the count if the file ended first
+     * @throws IOException if the file cannot be read
+     */
+    long skip(long count) throws IOException
+    {
+        long skipped = 0;
+        while (skipped < count && next() != null)
+        {
+            skipped++;
+        }
+        return skipped;
+    }
+
+    /**
+     * Reads up to a number of records.
+     *
+     * @param count the maximum number of records
+     * @return the records, empty at the end of the file
+     * @throws IOException if the file cannot be read
+     */
+    List<String> next(int count) throws IOException
+    {
+        List<String> records = new ArrayList<>(count);
+        String record;
+        while (records.size() < count && (record = next()) != null)
+        {
+            records.add(record);
+        }
+        return records;
+    }
+
+    private String nextCsvRecord() throws IOException
+    {
+        StringBuilder record = new StringBuilder();
+        boolean quoted = false;
+        int c;
+        while ((c = read()) != -1)
+        {
+            if (c == '"')
+            {
+                quoted = !quoted;
+            }
+            else if ((c == '\n' || c == '\r') && !quoted)
+            {
+                if (c == '\r' && peek() == '\n')
+                {
+                    read();
+                }
+                if (record.isEmpty())
+                {
+                    continue;
+                }
+                return record.toString();
+            }
+            record.append((char) c);
+        }
+        if (quoted)
+        {
+            throw new IOException("The CSV file ends inside a quoted field");
+        }
+        return record.isEmpty() ? null : record.toString();
+    }
+
+    private String nextJsonRecord() throws IOException
+    {
+        int c;
+        do
+        {
+            c = read();
+        } while (c != -1 && c != '{');
+        if (c == -1)
+        {
+            return null;
+        }
+        StringBuilder record = new StringBuilder().append('{');
+        int depth = 1;
+        boolean inString = false;
+        while (depth > 0 && (c = read()) != -1)
+        {
+            record.append((char) c);
+            if (inString)
+            {
+                if (c == '\\')
+                {
+                    int escaped = read();
+                    if (escaped != -1)
+                    {
+                        record.append((char) escaped);
+                    }
+                }
+                else if (c == '"')
+                {
+                    inString = false;
+                }
+            }
+            else if (c == '"')
+            {
+                inString = true;
+            }
+            else if (c == '{')
+            {
+                depth++;
+            }
+            else if (c == '}')
+            {
+                depth--;
+            }
+        }
+        if (depth > 0)
+        {
+            throw new IOException("The JSON file ends inside an object");
+        }
+        return record.toString();
+    }
+
+    private int read() throws IOException
+    {
+        if (position == limit && !fill())
+        {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peek() throws IOException
+    {
+        if (position == limit && !fill())
+        {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException
+    {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit <= 0)
+        {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,172 @@
+package hr.java.data_transfer;
+
+import hr.java.entity.Ticket;
+import hr.java.enums.TransferFormat;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Writes tickets as CSV or JSON lines, one record at a time.
+ *
+ * A CSV file starts with a header line, and fields holding a comma, quote or line break are quoted with quotes
+ * inside written twice. A JSON file holds one object per line with its fields always in the order of
+ * {@link #COLUMNS}. Times are written in ISO format, which {@link TicketRecordParser} reads back.
+ */
+final class TicketRecordWriter implements Closeable
+{
+    /**
+     * The field names of an exported ticket.
+     */
+    static final List<String> COLUMNS = List.of("ticketId", "customerId", "agentId", "summary", "description",
+            "status", "priority", "createdAt", "resolvedAt");
+
+    private final Writer writer;
+    private final TransferFormat format;
+    private final StringBuilder record = new StringBuilder(512);
+
+    /**
+     * Creates a writer and writes the CSV header.
+     *
+     * @param writer the file to write to
+     * @param format the file format
+     * @throws IOException if the header cannot be written
+     */
+    TicketRecordWriter(Writer writer, TransferFormat format) throws IOException
+    {
+        this.writer = writer;
+        this.format = format;
+        if (format == TransferFormat.CSV)
+        {
+            writer.write(String.join(",", COLUMNS));
+            writer.write('\n');
+        }
+    }
+
+    /**
+     * Writes one ticket.
+     *
+     * @param ticket the ticket
+     * @throws IOException if the ticket cannot be written
+     */
+    void write(Ticket ticket) throws IOException
+    {
+        List<Object> values = Arrays.asList(ticket.getId(), ticket.getCustomerID(), ticket.getAssignedAgentID(),
+                ticket.getSummary(), ticket.getDescription(), ticket.getTicketStatus(), ticket.getTicketPriority(),
+                ticket.getDateCreated(), ticket.getDateResolved());
+        record.setLength(0);
+        if (format == TransferFormat.CSV)
+        {
+            appendCsv(values);
+        }
+        else
+        {
+            appendJson(values);
+        }
+        record.append('\n');
+        writer.append(record);
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        writer.close();
+    }
+
+    private void appendCsv(List<Object> values)
+    {
+        for (int i = 0; i < values.size(); i++)
+        {
+            if (i > 0)
+            {
+                record.append(',');
+            }
+            String value = text(values.get(i));
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0)
+            {
+                record.append(value);
+                continue;
+            }
+            record.append('"');
+            for (int j = 0; j < value.length(); j++)
+            {
+                char c = value.charAt(j);
+                if (c == '"')
+                {
+                    record.append('"');
+                }
+                record.append(c);
+            }
+            record.append('"');
+        }
+    }
+
+    private void appendJson(List<Object> values)
+    {
+        record.append('{');
+        for (int i = 0; i < values.size(); i++)
+        {
+            if (i > 0)
+            {
+                record.append(',');
+            }
+            record.append('"').append(COLUMNS.get(i)).append("\":");
+            Object value = values.get(i);
+            if (value == null)
+            {
+                record.append("null");
+            }
+            else if (value instanceof Number)
+            {
+                record.append(value);
+            }
+            else
+            {
+                appendJsonString(text(value));
+            }
+        }
+        record.append('}');
+    }
+
+    private void appendJsonString(String value)
+    {
+        record.append('"');
+        for (int i = 0; i < value.length(); i++)
+        {
+            char c = value.charAt(i);
+            switch (c)
+            {
+                case '"' -> record.append("\\\"");
+                case '\\' -> record.append("\\\\");
+                case '\n' -> record.append("\\n");
+                case '\r' -> record.append("\\r");
+                case '\t' -> record.append("\\t");
+                default ->
+                {
+                    if (c < 0x20)
+                    {
+                        record.append(String.format("\\u%04x", (int) c));
+                    }
+                    else
+                    {
+                        record.append(c);
+                    }
+                }
+            }
+        }
+        record.append('"');
+    }
+
+    private static String text(Object value)
+    {
+        if (value == null)
+        {
+            return "";
+        }
+        return value instanceof LocalDateTime dateTime ? dateTime.toString() : String.valueOf(value);
+    }
+}
@@ -0,0 +1,29 @@
+package hr.java.entity;
+
+import hr.java.enums.ResolutionEventType;
+
+import java.io.Serializable;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+
+/**
+ * The {@code ResolutionEvent} record represents one entry of the resolution log:
+ * a ticket that was assigned to or resolved by an agent at a point in time.
+ *
+ * @param type        whether the ticket was assigned or resolved
+ * @param ticketID    the ID of the ticket
+ * @param agentID     the ID of the agent, or null if the agent is unknown
+ * @param epochMillis the time of the event in milliseconds since the epoch
+ */
+public record ResolutionEvent(ResolutionEventType type, long ticketID, Long agentID, long epochMillis) implements Serializable {
+
+    /**
+     * Gets the time of the event in the system time zone.
+     *
+     * @return the local date and time of the event
+     */
+    public LocalDateTime getDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMillis), ZoneId.systemDefault());
+    }
+}
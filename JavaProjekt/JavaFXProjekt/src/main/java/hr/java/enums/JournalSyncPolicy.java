@@ -0,0 +1,13 @@
+package hr.java.enums;
+
+/**
+ * The enum Journal sync policy decides when appended journal records are forced to disk.
+ * EVERY_RECORD survives a crash at the cost of one fsync per record, ON_SEGMENT_ROLLOVER only
+ * forces full segments and NEVER leaves flushing to the operating system.
+ */
+public enum JournalSyncPolicy
+{
+    EVERY_RECORD,
+    ON_SEGMENT_ROLLOVER,
+    NEVER
+}
@@ -0,0 +1,12 @@
+package hr.java.enums;
+
+/**
+ * The enum Log durability decides how far a written log batch gets before the writer moves on.
+ * OPERATING_SYSTEM hands each batch to the operating system, which survives an application crash,
+ * DISK also forces it to the storage device, which survives a power loss at the cost of one fsync per batch.
+ */
+public enum LogDurability
+{
+    OPERATING_SYSTEM,
+    DISK
+}
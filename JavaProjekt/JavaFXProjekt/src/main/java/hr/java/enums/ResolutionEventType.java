@@ -0,0 +1,10 @@
+package hr.java.enums;
+
+/**
+ * The kinds of events recorded in the resolution log.
+ */
+public enum ResolutionEventType
+{
+    ASSIGNED,
+    RESOLVED
+}
@@ -0,0 +1,10 @@
+package hr.java.enums;
+
+/**
+ * The columns a ticket page can be sorted by. Ties are always broken by ticket ID.
+ */
+public enum TicketSortKey
+{
+    TICKET_ID,
+    CREATED_AT
+}
@@ -0,0 +1,27 @@
+package hr.java.enums;
+
+import java.nio.file.Path;
+import java.util.Locale;
+
+/**
+ * The file formats tickets are imported from and exported to.
+ * CSV files start with a header line naming the columns, JSON files hold one flat object per ticket,
+ * either as JSON lines or as the elements of one array.
+ */
+public enum TransferFormat
+{
+    CSV,
+    JSON;
+
+    /**
+     * Picks the format from the file extension, .json and .jsonl files are JSON and everything else is CSV.
+     *
+     * @param file the file
+     * @return the format of the file
+     */
+    public static TransferFormat of(Path file)
+    {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        return name.endsWith(".json") || name.endsWith(".jsonl") ? JSON : CSV;
+    }
+}
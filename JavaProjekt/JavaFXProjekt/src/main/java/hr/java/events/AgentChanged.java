@@ -0,0 +1,9 @@
+package hr.java.events;
+
+/**
+ * Published on the {@link EventBus} after an agent has been updated or deleted in the database.
+ *
+ * @param agentID the ID of the agent
+ */
+public record AgentChanged(Long agentID) {
+}
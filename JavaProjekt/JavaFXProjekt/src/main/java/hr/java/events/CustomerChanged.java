@@ -0,0 +1,9 @@
+package hr.java.events;
+
+/**
+ * Published on the {@link EventBus} after a customer has been updated or deleted in the database.
+ *
+ * @param customerID the ID of the customer
+ */
+public record CustomerChanged(Long customerID) {
+}
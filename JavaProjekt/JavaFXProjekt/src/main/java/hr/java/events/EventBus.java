@@ -0,0 +1,66 @@
+package hr.java.events;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Delivers events inside the application from the code that causes them to the services that react to them.
+ *
+ * Handlers subscribe to one event type and are called on the publishing thread, in the order they subscribed,
+ * right after {@link #publish(Object)} is called. A handler should only hand the work to its own thread,
+ * for example by waking up a service. A handler that throws is logged and does not stop the other handlers.
+ */
+public final class EventBus {
+
+    private static final Map<Class<?>, List<Consumer<Object>>> handlers = new ConcurrentHashMap<>();
+
+    private EventBus() {
+    }
+
+    /**
+     * Subscribes a handler to an event type.
+     *
+     * @param type    the event type
+     * @param handler called with every published event of the type
+     * @param <E>     the event type
+     * @return the subscription, closing it unsubscribes the handler
+     */
+    public static <E> Subscription subscribe(Class<E> type, Consumer<? super E> handler) {
+        Consumer<Object> typedHandler = event -> handler.accept(type.cast(event));
+        List<Consumer<Object>> typeHandlers = handlers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>());
+        typeHandlers.add(typedHandler);
+        return () -> typeHandlers.remove(typedHandler);
+    }
+
+    /**
+     * Passes an event to the handlers subscribed to its type.
+     *
+     * @param event the event
+     */
+    public static void publish(Object event) {
+        for (Consumer<Object> handler : handlers.getOrDefault(event.getClass(), List.of())) {
+            try {
+                handler.accept(event);
+            } catch (RuntimeException e) {
+                logger.error("Handler of {} failed! {}", event.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * A handler subscribed to an event type.
+     */
+    public interface Subscription extends AutoCloseable {
+
+        /**
+         * Unsubscribes the handler. Closing it again does nothing.
+         */
+        @Override
+        void close();
+    }
+}
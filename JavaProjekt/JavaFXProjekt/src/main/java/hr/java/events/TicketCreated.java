@@ -0,0 +1,16 @@
+package hr.java.events;
+
+import hr.java.enums.TicketPriority;
+
+import java.time.LocalDateTime;
+
+/**
+ * Published on the {@link EventBus} after a new ticket has been committed to the database.
+ *
+ * @param ticketID   the ID of the new ticket
+ * @param customerID the ID of the customer who opened the ticket
+ * @param priority   the priority of the ticket
+ * @param createdAt  when the ticket was created
+ */
+public record TicketCreated(Long ticketID, Long customerID, TicketPriority priority, LocalDateTime createdAt) {
+}
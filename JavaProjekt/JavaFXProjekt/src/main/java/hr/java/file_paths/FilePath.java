@@ -8,6 +8,11 @@ public enum FilePath {
     CUSTOMERS("data/customers.txt"),
     LOGGED_IN_USERS("data/loggedInUsers.txt"),
     RESOLUTION_LOG("data/resolution_log.txt"),
+    RESOLUTION_LOG_SEGMENTS("data/resolution_log"),
+    CHANGED_DATA("data/changedData.bin"),
+    CHANGE_JOURNAL("data/change_journal"),
+    TICKET_IMAGES("data/ticket_images"),
+    TICKET_THUMBNAILS("data/ticket_images/thumbnails"),
     SUPER_AGENT_FXML_PATH("/org/example/javafxprojekt/MainScene.fxml"),
     NORMAL_AGENT_FXML_PATH("/org/example/javafxprojekt/NormalAgentMainScene.fxml"),
     IMAGE_NOT_FOUND("data/image_not_provided/image_not_found.png");
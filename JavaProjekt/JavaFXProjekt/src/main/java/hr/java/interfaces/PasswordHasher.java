@@ -3,18 +3,32 @@ package hr.java.interfaces;
 import hr.java.data_repository.file_repository.LoggedInUserManager;
 import org.example.javafxprojekt.controllers.add_controllers.AddAgentController;
 
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.security.spec.InvalidKeySpecException;
+import java.util.Base64;
 
 /**
- * The PasswordHasher interface provides a method for hashing passwords using SHA-256.
+ * The PasswordHasher interface provides methods for hashing and verifying passwords.
+ * New passwords are hashed with salted PBKDF2, stored as {@code pbkdf2-sha256$iterations$salt$hash}.
+ * Unsalted SHA-256 hex strings written by older versions are still accepted when verifying.
  * It is a sealed interface that permits {@link AddAgentController} {@link LoggedInUserManager} classes
  */
 public sealed interface PasswordHasher permits AddAgentController, LoggedInUserManager {
 
+    String HASH_PREFIX = "pbkdf2-sha256";
+    int HASH_ITERATIONS = 310_000;
+    int SALT_BYTES = 16;
+    int HASH_BITS = 256;
+
     /**
      * Encrypts a given string using the SHA-256 hashing algorithm.
+     * This is the legacy unsalted format, use {@link #hashPassword(String)} for new passwords.
      *
      * @param string the input string to be encrypted
      * @return the hashed string in hexadecimal format
@@ -26,4 +40,67 @@ public sealed interface PasswordHasher permits AddAgentController, LoggedInUserM
         BigInteger no = new BigInteger(1, messageDigest);
         return no.toString(16);
     }
+
+    /**
+     * Hashes a password with PBKDF2 and a random salt.
+     *
+     * @param password the password
+     * @return the encoded hash, including the iteration count and salt
+     * @throws NoSuchAlgorithmException if PBKDF2 is not available
+     */
+    public default String hashPassword(String password) throws NoSuchAlgorithmException {
+        byte[] salt = new byte[SALT_BYTES];
+        new SecureRandom().nextBytes(salt);
+        byte[] hash = pbkdf2(password, salt, HASH_ITERATIONS);
+        Base64.Encoder encoder = Base64.getEncoder();
+        return HASH_PREFIX + "$" + HASH_ITERATIONS + "$" + encoder.encodeToString(salt) + "$" + encoder.encodeToString(hash);
+    }
+
+    /**
+     * Checks a password against a stored hash in constant time.
+     *
+     * @param password   the password to check
+     * @param storedHash the hash written by {@link #hashPassword(String)} or {@link #encryptString(String)}
+     * @return true if the password matches
+     * @throws NoSuchAlgorithmException if the hash algorithm is not available
+     */
+    public default boolean verifyPassword(String password, String storedHash) throws NoSuchAlgorithmException {
+        if (isLegacyHash(storedHash)) {
+            return MessageDigest.isEqual(encryptString(password).getBytes(StandardCharsets.UTF_8),
+                    storedHash.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = storedHash.split("\\$");
+        if (parts.length != 4) {
+            return false;
+        }
+        try {
+            Base64.Decoder decoder = Base64.getDecoder();
+            byte[] expected = decoder.decode(parts[3]);
+            byte[] actual = pbkdf2(password, decoder.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(actual, expected);
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks whether a stored hash uses the legacy unsalted SHA-256 format and should be replaced.
+     *
+     * @param storedHash the stored hash
+     * @return true if the hash was written by {@link #encryptString(String)}
+     */
+    public default boolean isLegacyHash(String storedHash) {
+        return !storedHash.startsWith(HASH_PREFIX + "$");
+    }
+
+    private byte[] pbkdf2(String password, byte[] salt, int iterations) throws NoSuchAlgorithmException {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+        } catch (InvalidKeySpecException e) {
+            throw new IllegalArgumentException("Invalid password hash parameters", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
 }
@@ -0,0 +1,114 @@
+package hr.java.thread_managmenet;
+
+import hr.java.entity.Agent;
+import hr.java.entity.Ticket;
+import hr.java.enums.AgentType;
+import hr.java.enums.TicketPriority;
+
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Chooses the least loaded agent for each ticket.
+ *
+ * Agents are kept in one ordered set per {@link AgentType}, sorted by their number of
+ * in-progress tickets, so picking and updating an agent costs O(log n). High priority
+ * tickets go to super agents first, all other tickets to regular agents first; the other
+ * agent type is only used when no agent of the preferred type exists.
+ */
+final class AssignmentEngine {
+
+    private static final Comparator<AgentLoad> LEAST_LOADED_FIRST = Comparator
+            .comparingInt(AgentLoad::workload)
+            .thenComparingLong(load -> load.agent().getId());
+
+    private final Map<AgentType, TreeSet<AgentLoad>> agentsByType = new EnumMap<>(AgentType.class);
+    private final Map<Long, AgentLoad> loadsByAgentID = new HashMap<>();
+
+    /**
+     * Creates an engine seeded with the current workload of every agent.
+     *
+     * @param agents    the agents tickets can be assigned to
+     * @param workloads the number of in-progress tickets keyed by agent ID; agents without an entry have none
+     */
+    AssignmentEngine(List<Agent> agents, Map<Long, Integer> workloads) {
+        for (AgentType agentType : AgentType.values()) {
+            agentsByType.put(agentType, new TreeSet<>(LEAST_LOADED_FIRST));
+        }
+        for (Agent agent : agents) {
+            AgentLoad load = new AgentLoad(agent, workloads.getOrDefault(agent.getId(), 0));
+            agentsByType.get(agent.getAgentType()).add(load);
+            loadsByAgentID.put(agent.getId(), load);
+        }
+    }
+
+    /**
+     * Picks the least loaded agent of the preferred type for the ticket and counts the ticket towards its workload.
+     *
+     * @param ticket the ticket to assign
+     * @return the chosen agent, or null if there are no agents
+     */
+    synchronized Agent assign(Ticket ticket) {
+        for (AgentType agentType : preferredTypes(ticket.getTicketPriority())) {
+            TreeSet<AgentLoad> candidates = agentsByType.get(agentType);
+            if (!candidates.isEmpty()) {
+                AgentLoad leastLoaded = candidates.pollFirst();
+                AgentLoad updated = new AgentLoad(leastLoaded.agent(), leastLoaded.workload() + 1);
+                candidates.add(updated);
+                loadsByAgentID.put(updated.agent().getId(), updated);
+                return updated.agent();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Removes one ticket from an agent's workload, after it was resolved or its assignment failed.
+     *
+     * @param agentID the agent ID
+     */
+    synchronized void release(Long agentID) {
+        AgentLoad current = loadsByAgentID.get(agentID);
+        if (current == null || current.workload() == 0) {
+            return;
+        }
+        TreeSet<AgentLoad> candidates = agentsByType.get(current.agent().getAgentType());
+        candidates.remove(current);
+        AgentLoad updated = new AgentLoad(current.agent(), current.workload() - 1);
+        candidates.add(updated);
+        loadsByAgentID.put(agentID, updated);
+    }
+
+    /**
+     * Returns the agent with the given ID.
+     *
+     * @param agentID the agent ID
+     * @return the agent, or null if the engine does not know it
+     */
+    synchronized Agent getAgent(Long agentID) {
+        AgentLoad load = loadsByAgentID.get(agentID);
+        return load == null ? null : load.agent();
+    }
+
+    /**
+     * Returns the agent types to try for a ticket priority, most preferred first.
+     *
+     * @param priority the ticket priority
+     * @return the agent types in order of preference
+     */
+    private static List<AgentType> preferredTypes(TicketPriority priority) {
+        return priority == TicketPriority.HIGH
+                ? List.of(AgentType.SUPERAGENT, AgentType.AGENT)
+                : List.of(AgentType.AGENT, AgentType.SUPERAGENT);
+    }
+
+    /**
+     * An agent and its number of in-progress tickets.
+     */
+    private record AgentLoad(Agent agent, int workload) {
+    }
+}
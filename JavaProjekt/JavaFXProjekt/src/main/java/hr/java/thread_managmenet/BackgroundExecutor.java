@@ -0,0 +1,113 @@
+package hr.java.thread_managmenet;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Runs every background job of the application on virtual threads.
+ *
+ * Each task gets its own virtual thread, named after the task, so blocking JDBC and file calls
+ * only park the virtual thread and do not hold a platform thread. The connection pool still bounds
+ * how many tasks talk to the database at once. Related tasks can be forked and joined together
+ * in a {@link TaskScope}.
+ */
+public final class BackgroundExecutor {
+
+    private static final Duration SHUTDOWN_TIMEOUT = Duration.ofSeconds(2);
+    private static final ExecutorService executor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("background-", 0).factory());
+    private static final AtomicInteger runningTasks = new AtomicInteger();
+
+    private BackgroundExecutor() {
+    }
+
+    /**
+     * Runs a task on a new virtual thread. An exception thrown by the task is logged.
+     *
+     * @param name the task name, used as the thread name
+     * @param task the task
+     */
+    public static void execute(String name, Runnable task) {
+        executor.execute(() -> {
+            try {
+                runNamed(name, () -> {
+                    task.run();
+                    return null;
+                });
+            } catch (Exception e) {
+                logger.error("Background task {} failed! {}", name, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * Runs a task on a new virtual thread and returns its result as a future.
+     *
+     * @param name the task name, used as the thread name
+     * @param task the task
+     * @param <T>  the result type
+     * @return the future result of the task
+     */
+    public static <T> Future<T> submit(String name, Callable<T> task) {
+        return executor.submit(() -> runNamed(name, task));
+    }
+
+    /**
+     * Opens a scope for tasks that are forked and joined together.
+     *
+     * @param name the scope name, used as the prefix of the task names
+     * @return the new {@link TaskScope}
+     */
+    public static TaskScope openScope(String name) {
+        return new TaskScope(name);
+    }
+
+    /**
+     * Returns the number of tasks running right now.
+     *
+     * @return the number of running tasks
+     */
+    public static int getRunningTaskCount() {
+        return runningTasks.get();
+    }
+
+    /**
+     * Interrupts the running tasks and waits briefly for them to finish. No new tasks are accepted afterwards.
+     */
+    public static void shutdown() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(SHUTDOWN_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("{} background tasks were still running at shutdown", runningTasks.get());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Runs a task under its name and counts it while it runs.
+     *
+     * @param name the task name
+     * @param task the task
+     * @param <T>  the result type
+     * @return the result of the task
+     * @throws Exception the exception thrown by the task
+     */
+    private static <T> T runNamed(String name, Callable<T> task) throws Exception {
+        Thread.currentThread().setName(name);
+        runningTasks.incrementAndGet();
+        try {
+            return task.call();
+        } finally {
+            runningTasks.decrementAndGet();
+        }
+    }
+}
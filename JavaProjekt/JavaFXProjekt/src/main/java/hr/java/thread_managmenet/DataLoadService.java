@@ -0,0 +1,274 @@
+package hr.java.thread_managmenet;
+
+import javafx.application.Platform;
+import javafx.concurrent.Task;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * Runs repository calls for a view in the background and hands the results to the JavaFX thread.
+ *
+ * Every load has a key, and at most one load per key runs at a time. A request made while its key is
+ * loading waits until the running load finishes; a newer request replaces a waiting one, so refreshes that
+ * pile up collapse into one. Only the result of the newest request is published, results of superseded or
+ * cancelled requests are dropped. Loads run on the virtual threads of the {@link BackgroundExecutor} and
+ * all services share one set of latency counters, see {@link #getStatistics()}.
+ *
+ * The methods of a service must be called on the JavaFX thread; calls from other threads are moved there.
+ */
+public final class DataLoadService {
+
+    private static final long SLOW_LOAD_NANOS = 500_000_000L;
+    private static final Map<String, LoadCounters> counters = new ConcurrentHashMap<>();
+
+    private final String name;
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    /**
+     * Creates a load service for one view.
+     *
+     * @param name the name used in the statistics and the log
+     */
+    public DataLoadService(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Loads data in the background and passes it to the consumer on the JavaFX thread.
+     * A failure is logged.
+     *
+     * @param key       the load key, requests with the same key replace each other
+     * @param call      the repository call, run on a background thread
+     * @param onSuccess receives the result on the JavaFX thread, unless a newer request was made meanwhile
+     * @param <T>       the result type
+     */
+    public <T> void load(String key, Callable<T> call, Consumer<? super T> onSuccess) {
+        load(key, call, onSuccess, null);
+    }
+
+    /**
+     * Loads data in the background and passes it, or the failure, to the consumers on the JavaFX thread.
+     *
+     * @param key       the load key, requests with the same key replace each other
+     * @param call      the repository call, run on a background thread
+     * @param onSuccess receives the result on the JavaFX thread, unless a newer request was made meanwhile
+     * @param onFailure receives the exception on the JavaFX thread, or null to only log it
+     * @param <T>       the result type
+     */
+    public <T> void load(String key, Callable<T> call, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> load(key, call, onSuccess, onFailure));
+            return;
+        }
+        Slot slot = slots.computeIfAbsent(key, k -> new Slot());
+        Request<T> request = new Request<>(call, onSuccess, onFailure, ++slot.generation);
+        if (slot.running != null) {
+            if (slot.pending != null) {
+                countersFor(key).coalesced();
+            }
+            slot.pending = request;
+            return;
+        }
+        start(key, slot, request);
+    }
+
+    /**
+     * Checks whether a load with the key is running or waiting. A cancelled load counts as running
+     * until its repository call has returned.
+     *
+     * @param key the load key
+     * @return true if the key is loading
+     */
+    public boolean isLoading(String key) {
+        Slot slot = slots.get(key);
+        return slot != null && slot.running != null;
+    }
+
+    /**
+     * Cancels the running and waiting loads of a key. A load that has not started yet does not run,
+     * a load that already started finishes in the background and its result is dropped. The key stays
+     * busy until that load has returned, so a new request waits for it instead of running beside it.
+     *
+     * @param key the load key
+     */
+    public void cancel(String key) {
+        if (!Platform.isFxApplicationThread()) {
+            Platform.runLater(() -> cancel(key));
+            return;
+        }
+        Slot slot = slots.get(key);
+        if (slot == null) {
+            return;
+        }
+        slot.generation++;
+        slot.pending = null;
+        if (slot.running != null) {
+            slot.running.cancel(false);
+        }
+    }
+
+    /**
+     * Cancels the loads of every key of this service.
+     */
+    public void cancelAll() {
+        for (String key : List.copyOf(slots.keySet())) {
+            cancel(key);
+        }
+    }
+
+    /**
+     * Returns the counters of every kind of load made so far.
+     *
+     * @return one {@link LoadStatistics} per service name and key
+     */
+    public static List<LoadStatistics> getStatistics() {
+        List<LoadStatistics> statistics = new ArrayList<>();
+        counters.forEach((loadName, loadCounters) -> statistics.add(loadCounters.snapshot(loadName)));
+        return statistics;
+    }
+
+    private <T> void start(String key, Slot slot, Request<T> request) {
+        LoadCounters loadCounters = countersFor(key);
+        Task<T> task = new Task<>() {
+            @Override
+            protected T call() throws Exception {
+                long start = System.nanoTime();
+                try {
+                    return request.call().call();
+                } finally {
+                    long elapsed = System.nanoTime() - start;
+                    loadCounters.loaded(elapsed);
+                    if (elapsed > SLOW_LOAD_NANOS) {
+                        logger.warn("Slow load {}/{} took {} ms", name, key, elapsed / 1_000_000);
+                    }
+                }
+            }
+        };
+        task.setOnSucceeded(event -> publish(key, slot, request, () -> request.onSuccess().accept(task.getValue())));
+        task.setOnFailed(event -> {
+            loadCounters.failed();
+            publish(key, slot, request, () -> {
+                logger.error("Could not load {}/{}! {}", name, key, task.getException().getMessage());
+                if (request.onFailure() != null) {
+                    request.onFailure().accept(task.getException());
+                }
+            });
+        });
+        task.setOnCancelled(event -> countersFor(key).discarded());
+        slot.running = task;
+        BackgroundExecutor.execute("data-loader/" + name + "/" + key, () -> {
+            try {
+                task.run();
+            } finally {
+                Platform.runLater(() -> release(key, slot, task));
+            }
+        });
+    }
+
+    /**
+     * Publishes the outcome of a finished load if no newer request was made.
+     *
+     * @param key     the load key
+     * @param slot    the state of the key
+     * @param request the finished request
+     * @param publish hands the outcome to the caller
+     */
+    private void publish(String key, Slot slot, Request<?> request, Runnable publish) {
+        if (request.generation() == slot.generation) {
+            publish.run();
+        } else {
+            countersFor(key).discarded();
+        }
+    }
+
+    /**
+     * Frees the key once the repository call of its load has returned, then starts the waiting request.
+     * Runs after the outcome was published, because the task posts its outcome before it returns.
+     *
+     * @param key  the load key
+     * @param slot the state of the key
+     * @param task the returned load
+     */
+    private void release(String key, Slot slot, Task<?> task) {
+        if (slot.running != task) {
+            return;
+        }
+        slot.running = null;
+        Request<?> next = slot.pending;
+        slot.pending = null;
+        if (next != null) {
+            start(key, slot, next);
+        }
+    }
+
+    private LoadCounters countersFor(String key) {
+        return counters.computeIfAbsent(name + "/" + key, loadName -> new LoadCounters());
+    }
+
+    /**
+     * A requested load.
+     *
+     * @param call       the repository call
+     * @param onSuccess  receives the result
+     * @param onFailure  receives the exception, or null
+     * @param generation the request number within its key, newer requests have higher numbers
+     * @param <T>        the result type
+     */
+    private record Request<T>(Callable<T> call, Consumer<? super T> onSuccess, Consumer<Throwable> onFailure, long generation) {
+    }
+
+    /**
+     * The running load, the waiting request and the newest request number of one key.
+     */
+    private static final class Slot {
+        private Task<?> running;
+        private Request<?> pending;
+        private long generation;
+    }
+
+    /**
+     * Counters shared by all services for one load name.
+     */
+    private static final class LoadCounters {
+        private long loads;
+        private long failures;
+        private long coalesced;
+        private long discarded;
+        private long totalNanos;
+        private long maxNanos;
+        private long lastNanos;
+
+        synchronized void loaded(long nanos) {
+            loads++;
+            totalNanos += nanos;
+            maxNanos = Math.max(maxNanos, nanos);
+            lastNanos = nanos;
+        }
+
+        synchronized void failed() {
+            failures++;
+        }
+
+        synchronized void coalesced() {
+            coalesced++;
+        }
+
+        synchronized void discarded() {
+            discarded++;
+        }
+
+        synchronized LoadStatistics snapshot(String loadName) {
+            double average = loads == 0 ? 0 : totalNanos / 1_000_000.0 / loads;
+            return new LoadStatistics(loadName, loads, failures, coalesced, discarded, average,
+                    maxNanos / 1_000_000.0, lastNanos / 1_000_000.0);
+        }
+    }
+}
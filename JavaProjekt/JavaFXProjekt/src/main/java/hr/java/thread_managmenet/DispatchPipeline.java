@@ -0,0 +1,219 @@
+package hr.java.thread_managmenet;
+
+import hr.java.entity.Ticket;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.example.javafxprojekt.main.Main.logger;
+
+/**
+ * A queue of tickets dispatched in rate-limited batches.
+ *
+ * Every {@link #tick()} takes as many tickets as the {@link TokenBucket} allows and hands
+ * them to the dispatcher in one batch. When a batch is slower than the slow-dispatch threshold
+ * or fails, the pipeline halves its batch size and backs off before the next batch; fast batches
+ * grow the batch size again up to the maximum. After too many failed batches in a row the pipeline gives up on the
+ * rest of its queue, which drains it without completing it.
+ */
+final class DispatchPipeline {
+
+    private static final int MAX_CONSECUTIVE_FAILURES = 5;
+    private static final long MIN_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long MAX_BACKOFF_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final String name;
+    private final TokenBucket tokenBucket;
+    private final Consumer<List<Ticket>> dispatcher;
+    private final int maxBatchSize;
+    private final long slowDispatchNanos;
+    private final Deque<Ticket> queue = new ArrayDeque<>();
+
+    private int batchSize;
+    private long backoffNanos;
+    private long resumeAt;
+    private int consecutiveFailures;
+    private volatile boolean drained;
+    private volatile boolean gaveUp;
+    private volatile boolean stopped;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+    private final AtomicLong failedBatches = new AtomicLong();
+    private final AtomicLong throttledTicks = new AtomicLong();
+    private final AtomicLong backpressureEvents = new AtomicLong();
+    private final AtomicLong totalLatencyNanos = new AtomicLong();
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+    private volatile long lastLatencyNanos;
+
+    /**
+     * Creates a dispatch pipeline.
+     *
+     * @param name              the pipeline name used in logs and statistics
+     * @param tokenBucket       the rate limiter, one token per ticket
+     * @param maxBatchSize      the largest batch handed to the dispatcher
+     * @param slowDispatchNanos batches slower than this trigger backpressure
+     * @param dispatcher        processes one batch of tickets
+     */
+    DispatchPipeline(String name, TokenBucket tokenBucket, int maxBatchSize, long slowDispatchNanos,
+                     Consumer<List<Ticket>> dispatcher) {
+        this.name = name;
+        this.tokenBucket = tokenBucket;
+        this.maxBatchSize = maxBatchSize;
+        this.batchSize = maxBatchSize;
+        this.slowDispatchNanos = slowDispatchNanos;
+        this.dispatcher = dispatcher;
+    }
+
+    /**
+     * Adds tickets to the end of the queue.
+     *
+     * @param tickets the tickets to dispatch
+     */
+    void enqueue(Collection<Ticket> tickets) {
+        synchronized (queue) {
+            queue.addAll(tickets);
+        }
+    }
+
+    /**
+     * Dispatches the next rate-limited batch. Called periodically until the queue is drained.
+     */
+    void tick() {
+        if (System.nanoTime() < resumeAt) {
+            return;
+        }
+        List<Ticket> batch = takeBatch();
+        if (batch == null) {
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            dispatcher.accept(batch);
+            consecutiveFailures = 0;
+            dispatched.addAndGet(batch.size());
+        } catch (RuntimeException e) {
+            failedBatches.incrementAndGet();
+            logger.error("{} pipeline could not dispatch {} tickets! {}", name, batch.size(), e.getMessage());
+            if (++consecutiveFailures >= MAX_CONSECUTIVE_FAILURES) {
+                logger.error("{} pipeline giving up after {} failed batches", name, consecutiveFailures);
+                gaveUp = true;
+                synchronized (queue) {
+                    queue.clear();
+                }
+            } else {
+                synchronized (queue) {
+                    for (int i = batch.size() - 1; i >= 0; i--) {
+                        queue.addFirst(batch.get(i));
+                    }
+                }
+            }
+        }
+        recordLatency(System.nanoTime() - start);
+    }
+
+    /**
+     * Asks the pipeline to stop dispatching. The batch that is running finishes first.
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Checks whether the pipeline was asked to stop.
+     *
+     * @return true after {@link #stop()}
+     */
+    boolean isStopped() {
+        return stopped;
+    }
+
+    /**
+     * Checks whether the queue has been drained.
+     *
+     * @return true once a tick found the queue empty
+     */
+    boolean isDrained() {
+        return drained;
+    }
+
+    /**
+     * Checks whether every queued ticket was handed to the dispatcher successfully.
+     *
+     * @return true once the queue has been drained without giving up on any tickets
+     */
+    boolean isComplete() {
+        return isDrained() && !gaveUp;
+    }
+
+    /**
+     * Returns a snapshot of the pipeline counters.
+     *
+     * @return the current {@link DispatchStatistics}
+     */
+    DispatchStatistics getStatistics() {
+        int queueDepth;
+        synchronized (queue) {
+            queueDepth = queue.size();
+        }
+        long batchCount = batches.get();
+        double averageLatencyMillis = batchCount == 0 ? 0 : totalLatencyNanos.get() / 1_000_000.0 / batchCount;
+        return new DispatchStatistics(name, queueDepth, dispatched.get(), batchCount, failedBatches.get(),
+                batchSize, averageLatencyMillis, maxLatencyNanos.get() / 1_000_000.0, lastLatencyNanos / 1_000_000.0,
+                throttledTicks.get(), backpressureEvents.get());
+    }
+
+    /**
+     * Takes the next batch allowed by the token bucket.
+     *
+     * @return the batch, or null if the queue is empty or no tokens are available
+     */
+    private List<Ticket> takeBatch() {
+        synchronized (queue) {
+            if (queue.isEmpty()) {
+                drained = true;
+                return null;
+            }
+            int permits = tokenBucket.tryAcquire(Math.min(batchSize, queue.size()));
+            if (permits == 0) {
+                throttledTicks.incrementAndGet();
+                return null;
+            }
+            List<Ticket> batch = new ArrayList<>(permits);
+            for (int i = 0; i < permits; i++) {
+                batch.add(queue.pollFirst());
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Records the batch latency and adjusts batch size and backoff.
+     *
+     * @param latencyNanos the time the dispatcher took
+     */
+    private void recordLatency(long latencyNanos) {
+        batches.incrementAndGet();
+        lastLatencyNanos = latencyNanos;
+        totalLatencyNanos.addAndGet(latencyNanos);
+        maxLatencyNanos.accumulateAndGet(latencyNanos, Math::max);
+
+        if (latencyNanos > slowDispatchNanos || consecutiveFailures > 0) {
+            backpressureEvents.incrementAndGet();
+            batchSize = Math.max(1, batchSize / 2);
+            backoffNanos = backoffNanos == 0
+                    ? Math.max(MIN_BACKOFF_NANOS, latencyNanos)
+                    : Math.min(MAX_BACKOFF_NANOS, backoffNanos * 2);
+            resumeAt = System.nanoTime() + backoffNanos;
+        } else {
+            batchSize = Math.min(maxBatchSize, batchSize + Math.max(1, maxBatchSize / 10));
+            backoffNanos = 0;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package hr.java.thread_managmenet;
+
+/**
+ * A point-in-time snapshot of a dispatch pipeline's counters.
+ *
+ * @param pipeline             the pipeline name
+ * @param queueDepth           the number of tickets waiting to be dispatched
+ * @param dispatched           the number of tickets dispatched
+ * @param batches              the number of batches dispatched
+ * @param failedBatches        the number of batches that failed
+ * @param currentBatchSize     the current batch size limit after backpressure
+ * @param averageLatencyMillis the average batch dispatch latency
+ * @param maxLatencyMillis     the slowest batch dispatch latency
+ * @param lastLatencyMillis    the latency of the last batch
+ * @param throttledTicks       the number of ticks skipped because the rate limit was reached
+ * @param backpressureEvents   the number of times the pipeline slowed down because of a slow or failed batch
+ */
+public record DispatchStatistics(String pipeline, int queueDepth, long dispatched, long batches, long failedBatches,
+                                 int currentBatchSize, double averageLatencyMillis, double maxLatencyMillis,
+                                 double lastLatencyMillis, long throttledTicks, long backpressureEvents) {
+}
@@ -0,0 +1,17 @@
+package hr.java.thread_managmenet;
+
+/**
+ * A point-in-time snapshot of the counters of one kind of background load.
+ *
+ * @param name                 the load name, made of the service name and the load key
+ * @param loads                the number of loads that ran
+ * @param failures             the number of loads that failed
+ * @param coalesced            the number of requests replaced by a newer one before they started
+ * @param discarded            the number of results dropped because a newer request or a cancel made them stale
+ * @param averageLatencyMillis the average time a load took
+ * @param maxLatencyMillis     the slowest load
+ * @param lastLatencyMillis    the time the last load took
+ */
+public record LoadStatistics(String name, long loads, long failures, long coalesced, long discarded,
+                             double averageLatencyMillis, double maxLatencyMillis, double lastLatencyMillis) {
+}
@@ -0,0 +1,134 @@
+package hr.java.thread_managmenet;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.function.Supplier;
+
+/**
+ * A group of tasks that run on their own virtual threads and are joined together.
+ *
+ * Tasks are forked with {@link #fork(Callable)} and {@link #join()} waits for all of them. The first task that fails
+ * cancels the others and its exception is thrown from {@link #join()}. Closing the scope cancels the tasks that are
+ * still running and waits until every forked task has returned, so no task outlives the block that opened the scope.
+ * Running tasks are never interrupted, because an interrupted virtual thread blocked in socket I/O closes the pooled
+ * connection it holds; cancelling only keeps unstarted tasks from running and runs the actions registered with
+ * {@link #onCancel(Runnable)}, which ask the running tasks to stop. A scope is used by the thread that opened it.
+ */
+public final class TaskScope implements AutoCloseable {
+
+    private final String name;
+    private final List<FutureTask<?>> forked = new ArrayList<>();
+    private final BlockingQueue<FutureTask<?>> completed = new LinkedBlockingQueue<>();
+    private final List<Runnable> cancelActions = new ArrayList<>();
+    private final Semaphore returned = new Semaphore(0);
+    private int joined;
+    private boolean cancelled;
+    private boolean closed;
+
+    /**
+     * Creates a scope, see {@link BackgroundExecutor#openScope(String)}.
+     *
+     * @param name the scope name
+     */
+    TaskScope(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Starts a task in the scope.
+     *
+     * @param task the task
+     * @param <T>  the result type
+     * @return supplies the result of the task once the scope has been joined
+     */
+    public <T> Supplier<T> fork(Callable<T> task) {
+        FutureTask<T> subtask = new FutureTask<>(task) {
+            @Override
+            protected void done() {
+                completed.add(this);
+            }
+        };
+        forked.add(subtask);
+        try {
+            BackgroundExecutor.execute(name + "/" + forked.size(), () -> {
+                try {
+                    subtask.run();
+                } finally {
+                    returned.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            forked.remove(subtask);
+            throw e;
+        }
+        return subtask::resultNow;
+    }
+
+    /**
+     * Registers an action that asks the running tasks to stop, for example by setting a flag they check.
+     * It runs once when the scope is cancelled.
+     *
+     * @param action the action
+     */
+    public void onCancel(Runnable action) {
+        cancelActions.add(action);
+    }
+
+    /**
+     * Waits until every forked task has finished.
+     *
+     * @throws ExecutionException   if a task failed, the other tasks are cancelled
+     * @throws InterruptedException if interrupted while waiting, the tasks are cancelled
+     */
+    public void join() throws ExecutionException, InterruptedException {
+        try {
+            while (joined < forked.size()) {
+                FutureTask<?> subtask = completed.take();
+                joined++;
+                if (subtask.state() == Future.State.FAILED) {
+                    cancelRunning();
+                    throw new ExecutionException(name + " task failed", subtask.exceptionNow());
+                }
+            }
+        } catch (InterruptedException e) {
+            cancelRunning();
+            throw e;
+        }
+    }
+
+    /**
+     * Cancels the tasks that are still running and waits until every forked task has returned.
+     * An interrupt while waiting is kept for the caller and does not end the wait.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (joined < forked.size()) {
+            cancelRunning();
+        }
+        returned.acquireUninterruptibly(forked.size());
+    }
+
+    private void cancelRunning() {
+        if (cancelled) {
+            return;
+        }
+        cancelled = true;
+        for (FutureTask<?> subtask : forked) {
+            subtask.cancel(false);
+        }
+        for (Runnable action : cancelActions) {
+            action.run();
+        }
+    }
+}
@@ -1,124 +1,416 @@
 package hr.java.thread_managmenet;
 
+import hr.java.data_repository.database_repository.ChangeCursor;
+import hr.java.data_repository.database_repository.Database;
+import hr.java.data_repository.database_repository.LeaseDatabase;
 import hr.java.entity.Agent;
 import hr.java.data_repository.database_repository.AgentDatabase;
+import hr.java.data_repository.database_repository.AgentWorkloadSnapshot;
 import hr.java.data_repository.database_repository.TicketDatabase;
 import hr.java.data_repository.file_repository.ResolutionLogRepository;
 import hr.java.entity.ResolutionLogEntry;
 import hr.java.entity.Ticket;
+import hr.java.events.EventBus;
+import hr.java.events.TicketCreated;
+import hr.java.exception.DatabaseException;
 import hr.java.exception.TicketManagerException;
 
+import java.time.Duration;
 import java.time.LocalDateTime;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
 /**
- * The TicketManager class is responsible for managing the assignment and resolution of tickets.
- * It runs two tasks in parallel:
+ * The TicketManager service is responsible for managing the assignment and resolution of tickets.
+ * There is one instance per application, started from Main with {@link #start()} and stopped with {@link #stop()}.
+ * {@link #start(double, int)} starts it with a different dispatch rate than the default.
+ * Every application instance sharing the database runs the service, but only the one holding the dispatch
+ * lease in the {@link LeaseDatabase} dispatches; the others stand by and take over once the lease expires.
+ * While it holds the lease the service dispatches as soon as a {@link TicketCreated} event arrives on the
+ * {@link EventBus} or {@link #requestDispatch()} is called. Tickets created by other instances do not publish
+ * events here, so a heartbeat every few seconds also follows the change version of the database with a
+ * {@link ChangeCursor}, a single-row read, and dispatches until every change has settled; the heartbeat renews
+ * the lease too. A cycle that did not dispatch its whole backlog is retried on the next heartbeat.
+ * A cycle runs two independent dispatch pipelines concurrently on virtual threads:
  * - Assigning unassigned tickets to agents.
  * - Resolving in-progress tickets and logging the resolutions.
- * This class implements the Runnable interface and performs the tasks in separate threads.
+ * Each pipeline dispatches its backlog in batches at a rate limited by its own token bucket
+ * and slows down when the database is slow. Tickets are dispatched highest priority and oldest first,
+ * and each one goes to the least loaded agent chosen by the {@link AssignmentEngine}. Every batch claims its
+ * tickets with row locks that skip tickets locked elsewhere, so a ticket is never dispatched twice.
  */
-public class TicketManager implements Runnable {
-    private boolean running = false;
+public final class TicketManager {
+    private static final double DEFAULT_TICKETS_PER_SECOND = 50;
+    private static final int DEFAULT_BURST = 100;
+    private static final int MAX_BATCH_SIZE = 500;
+    private static final long TICK_MILLIS = 100;
+    private static final long SLOW_DISPATCH_MILLIS = 1000;
+    private static final String LEASE_NAME = "ticket-dispatcher";
+    private static final Duration LEASE_DURATION = Duration.ofSeconds(30);
+    private static final Duration LEASE_RENEW_INTERVAL = Duration.ofSeconds(10);
+    private static final Duration HEARTBEAT_INTERVAL = Duration.ofSeconds(5);
+    private static final Duration STOP_TIMEOUT = Duration.ofSeconds(5);
+    private static final Comparator<Ticket> DISPATCH_ORDER = Comparator
+            .comparing(Ticket::getTicketPriority)
+            .thenComparing(Ticket::getDateCreated, Comparator.nullsLast(Comparator.naturalOrder()))
+            .thenComparingLong(Ticket::getId);
+
+    private static final TicketManager instance = new TicketManager();
+
+    private final String owner = "ticket-manager-" + UUID.randomUUID();
+    private final Semaphore wakeUp = new Semaphore(0);
+
+    private volatile double ticketsPerSecond;
+    private volatile int burst;
+    private volatile boolean running;
+    private volatile boolean leader;
+    private volatile TicketManagerState state = TicketManagerState.STOPPED;
+    private volatile CountDownLatch loopFinished = new CountDownLatch(0);
+    private EventBus.Subscription ticketCreatedSubscription;
+    private volatile long cycles;
+    private volatile LocalDateTime lastCycleStarted;
+    private volatile LocalDateTime lastCycleFinished;
+    private volatile String lastError;
+    private volatile DispatchPipeline assignmentPipeline;
+    private volatile DispatchPipeline resolutionPipeline;
+    private final ChangeCursor dispatchCursor = new ChangeCursor(-1);
+    private volatile boolean dispatchRequested;
+    private AssignmentEngine assignmentEngine;
+
+    /**
+     * Private constructor, use {@link #getInstance()}.
+     */
+    private TicketManager() {
+    }
 
     /**
-     * Starts the ticket assignment and resolution tasks in separate threads.
-     * The method will start two threads to manage the ticket assignments and resolutions
+     * Returns the ticket manager of the application.
+     *
+     * @return the {@link TicketManager}
      */
-    @Override
-    public void run() {
-        Thread assignTicketThread = new Thread(this::assignTicketsTask);
-        Thread resolveTicketThread = new Thread(this::resolveTicketsTask);
+    public static TicketManager getInstance() {
+        return instance;
+    }
 
-        assignTicketThread.start();
-        resolveTicketThread.start();
+    /**
+     * Starts the service on a background task at the default dispatch rate. Does nothing if it is already running.
+     */
+    public void start() {
+        start(DEFAULT_TICKETS_PER_SECOND, DEFAULT_BURST);
+    }
 
+    /**
+     * Starts the service on a background task. Does nothing if it is already running.
+     *
+     * @param ticketsPerSecond the sustained number of tickets each pipeline dispatches per second
+     * @param burst            the number of tickets a pipeline may dispatch at once after being idle
+     * @throws IllegalArgumentException if the rate or the burst is not positive
+     */
+    public synchronized void start(double ticketsPerSecond, int burst) {
+        if (ticketsPerSecond <= 0 || burst <= 0) {
+            throw new IllegalArgumentException("Rate and burst must be positive!");
+        }
+        if (running) {
+            return;
+        }
+        if (loopFinished.getCount() > 0) {
+            logger.warn("Ticket manager cannot start before the previous run has stopped");
+            return;
+        }
+        this.ticketsPerSecond = ticketsPerSecond;
+        this.burst = burst;
+        running = true;
+        state = TicketManagerState.STANDBY;
+        loopFinished = new CountDownLatch(1);
+        ticketCreatedSubscription = EventBus.subscribe(TicketCreated.class, event -> requestDispatch());
+        BackgroundExecutor.execute("ticket-manager", this::runLoop);
+    }
+
+    /**
+     * Stops the service after the running batches and releases the dispatch lease. Does nothing if it is not running.
+     */
+    public synchronized void stop() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        ticketCreatedSubscription.close();
+        wakeUp.release();
         try {
-            assignTicketThread.join();
-            resolveTicketThread.join();
+            if (!loopFinished.await(STOP_TIMEOUT.toMillis(), TimeUnit.MILLISECONDS)) {
+                logger.warn("Ticket manager did not stop within {} seconds", STOP_TIMEOUT.toSeconds());
+            }
         } catch (InterruptedException e) {
             Thread.currentThread().interrupt();
-            logger.error("Error while waiting for threads to finish - ", e);
         }
     }
 
     /**
-     * The task for assigning unassigned tickets to available agents.
-     * This method assigns tickets based on priority and logs the assignment in the resolution log.
-     * It runs in a separate thread.
+     * Asks for a dispatch cycle without waiting for the heartbeat. Requests made while a cycle runs
+     * are merged into one cycle that starts after it.
      */
-    private synchronized void assignTicketsTask() {
-        while (running) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new TicketManagerException("Thread interrupted during ticket assignment", e);
+    public void requestDispatch() {
+        dispatchRequested = true;
+        if (wakeUp.availablePermits() == 0) {
+            wakeUp.release();
+        }
+    }
+
+    /**
+     * Returns what the service is doing and the counters of the last dispatch cycle.
+     *
+     * @return the current {@link TicketManagerStatus}
+     */
+    public TicketManagerStatus getStatus() {
+        DispatchPipeline assignment = assignmentPipeline;
+        DispatchPipeline resolution = resolutionPipeline;
+        List<DispatchStatistics> statistics = assignment == null || resolution == null
+                ? List.of()
+                : List.of(assignment.getStatistics(), resolution.getStatistics());
+        return new TicketManagerStatus(state, leader, owner, cycles, lastCycleStarted, lastCycleFinished, lastError, statistics);
+    }
+
+    /**
+     * Waits for a dispatch request or the heartbeat and runs a dispatch cycle whenever this instance holds the lease,
+     * until the service is stopped.
+     */
+    private void runLoop() {
+        try {
+            while (running) {
+                try {
+                    leader = LeaseDatabase.tryAcquire(LEASE_NAME, owner, LEASE_DURATION);
+                    state = leader ? TicketManagerState.IDLE : TicketManagerState.STANDBY;
+                    if (leader) {
+                        dispatchIfChanged();
+                    }
+                } catch (RuntimeException e) {
+                    lastError = e.getMessage();
+                    logger.error("Ticket dispatch cycle failed! {}", e.getMessage());
+                }
+                if (running) {
+                    wakeUp.tryAcquire(HEARTBEAT_INTERVAL.toMillis(), TimeUnit.MILLISECONDS);
+                }
             }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            releaseLease();
+            running = false;
+            state = TicketManagerState.STOPPED;
+            loopFinished.countDown();
         }
-        running = true;
-        List<Ticket> unassignedTickets = TicketDatabase.getUnassignedTickets();
-        unassignedTickets.sort(Comparator.comparing(Ticket::getTicketPriority));
-        List<Agent> agents = AgentDatabase.getAllAgents();
-
-        if (!unassignedTickets.isEmpty() && !agents.isEmpty()) {
-            try {
-                for (int i = 0; i < unassignedTickets.size(); i++) {
-                    Ticket ticket = unassignedTickets.get(i);
-                    Agent agent = agents.get(i % agents.size());
-                    AgentDatabase.assignTicketToAgent(ticket.getId(), agent.getId());
-                    ResolutionLogEntry<Ticket, Agent> resolutionLogEntry = new ResolutionLogEntry<>(ticket, agent, LocalDateTime.now());
-                    ResolutionLogRepository.assignTicketResolutionLog(resolutionLogEntry);
-                    wait(2000);
+    }
+
+    /**
+     * Runs a dispatch cycle if a dispatch was requested, the last cycle did not complete, or the change cursor
+     * has not yet seen every change. The cursor only advances after a cycle that dispatched both backlogs.
+     */
+    private void dispatchIfChanged() {
+        ChangeCursor.Read read = dispatchCursor.nextRead(Database.getCurrentVersion());
+        if (read == null && !dispatchRequested) {
+            return;
+        }
+        dispatchRequested = false;
+        state = TicketManagerState.DISPATCHING;
+        lastCycleStarted = LocalDateTime.now();
+        boolean complete = false;
+        try {
+            complete = dispatchCycle();
+            lastError = null;
+        } finally {
+            if (!complete) {
+                dispatchRequested = true;
+            } else if (read != null) {
+                dispatchCursor.advance(read);
+            }
+            cycles++;
+            lastCycleFinished = LocalDateTime.now();
+            state = leader ? TicketManagerState.IDLE : TicketManagerState.STANDBY;
+        }
+    }
+
+    /**
+     * Loads the current backlogs concurrently and dispatches both of them on their own virtual threads
+     * until both pipelines are drained, renewing the lease while they run.
+     *
+     * @return true if both backlogs were dispatched, false if the service was stopped first or a pipeline gave up
+     */
+    private boolean dispatchCycle() {
+        long slowDispatchNanos = TimeUnit.MILLISECONDS.toNanos(SLOW_DISPATCH_MILLIS);
+        DispatchPipeline assignment = new DispatchPipeline("Assignment", new TokenBucket(ticketsPerSecond, burst),
+                MAX_BATCH_SIZE, slowDispatchNanos, this::assignTickets);
+        DispatchPipeline resolution = new DispatchPipeline("Resolution", new TokenBucket(ticketsPerSecond, burst),
+                MAX_BATCH_SIZE, slowDispatchNanos, this::resolveTickets);
+        assignmentPipeline = assignment;
+        resolutionPipeline = resolution;
+
+        try (TaskScope scope = BackgroundExecutor.openScope("ticket-dispatcher")) {
+            Supplier<List<Agent>> agents = scope.fork(AgentDatabase::getAllAgents);
+            Supplier<AgentWorkloadSnapshot> workloads = scope.fork(TicketDatabase::getAgentWorkloadSnapshot);
+            Supplier<List<Ticket>> unassignedTickets = scope.fork(TicketDatabase::getUnassignedTickets);
+            Supplier<List<Ticket>> inProgressTickets = scope.fork(TicketDatabase::getInProgressTickets);
+            scope.join();
+            assignmentEngine = new AssignmentEngine(agents.get(), workloads.get().getInProgressTicketCounts());
+
+            if (!agents.get().isEmpty()) {
+                List<Ticket> assignmentBacklog = unassignedTickets.get();
+                assignmentBacklog.sort(DISPATCH_ORDER);
+                assignment.enqueue(assignmentBacklog);
+            }
+            List<Ticket> resolutionBacklog = inProgressTickets.get();
+            resolutionBacklog.sort(DISPATCH_ORDER);
+            resolution.enqueue(resolutionBacklog);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TicketManagerException("Thread interrupted while loading the ticket backlog", e);
+        } catch (ExecutionException e) {
+            throw new TicketManagerException("Could not load the ticket backlog", e.getCause());
+        }
+
+        try (TaskScope scope = BackgroundExecutor.openScope("ticket-dispatcher")) {
+            scope.onCancel(() -> {
+                assignment.stop();
+                resolution.stop();
+            });
+            scope.fork(() -> dispatchUntilDrained(assignment));
+            scope.fork(() -> dispatchUntilDrained(resolution));
+            scope.fork(() -> keepLease(assignment, resolution));
+            scope.join();
+            logger.info("Ticket dispatch finished: {}, {}", assignment.getStatistics(), resolution.getStatistics());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new TicketManagerException("Thread interrupted during ticket dispatch", e);
+        } catch (ExecutionException e) {
+            throw new TicketManagerException("Ticket dispatch failed", e.getCause());
+        }
+        return assignment.isComplete() && resolution.isComplete();
+    }
+
+    /**
+     * Ticks a pipeline every tick interval until its queue is drained, or the pipeline or the service is stopped.
+     *
+     * @param pipeline the pipeline
+     * @return null
+     * @throws InterruptedException if interrupted while waiting for the next tick
+     */
+    private Void dispatchUntilDrained(DispatchPipeline pipeline) throws InterruptedException {
+        while (running && !isFinished(pipeline)) {
+            pipeline.tick();
+            Thread.sleep(TICK_MILLIS);
+        }
+        return null;
+    }
+
+    /**
+     * Renews the dispatch lease while the pipelines run. Losing the lease fails the cycle,
+     * which stops the pipelines so that the new leader dispatches alone.
+     *
+     * @param assignment the assignment pipeline
+     * @param resolution the resolution pipeline
+     * @return null
+     * @throws InterruptedException if interrupted while waiting
+     * @throws TicketManagerException if another instance took over the lease
+     */
+    private Void keepLease(DispatchPipeline assignment, DispatchPipeline resolution) throws InterruptedException {
+        long renewAt = System.nanoTime() + LEASE_RENEW_INTERVAL.toNanos();
+        while (running && !(isFinished(assignment) && isFinished(resolution))) {
+            Thread.sleep(TICK_MILLIS);
+            if (System.nanoTime() >= renewAt) {
+                leader = LeaseDatabase.tryAcquire(LEASE_NAME, owner, LEASE_DURATION);
+                if (!leader) {
+                    throw new TicketManagerException("Lost the dispatch lease to another instance");
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new TicketManagerException("Thread interrupted during ticket assignment", e);
-            } finally {
-                running = false;
-                notifyAll();
+                renewAt = System.nanoTime() + LEASE_RENEW_INTERVAL.toNanos();
             }
         }
+        return null;
+    }
+
+    /**
+     * Checks whether a pipeline has nothing more to dispatch in this cycle.
+     *
+     * @param pipeline the pipeline
+     * @return true if its queue is drained or it was stopped
+     */
+    private static boolean isFinished(DispatchPipeline pipeline) {
+        return pipeline.isDrained() || pipeline.isStopped();
+    }
+
+    /**
+     * Gives up the dispatch lease so that another instance can take over right away.
+     */
+    private void releaseLease() {
+        if (!leader) {
+            return;
+        }
+        leader = false;
+        try {
+            LeaseDatabase.release(LEASE_NAME, owner);
+        } catch (DatabaseException e) {
+            logger.warn("Could not release the dispatch lease, it expires in {} seconds", LEASE_DURATION.toSeconds());
+        }
     }
 
     /**
-     * The task for resolving in-progress tickets and logging the resolution.
-     * This method processes tickets that are currently in progress and resolves them.
-     * It also records the resolution in the resolution log.
-     * It runs in a separate thread.
+     * Assigns one batch of tickets to the least loaded agents in a single transaction
+     * and logs the assignments in the resolution log.
+     *
+     * @param batch the tickets to assign
      */
-    private synchronized void resolveTicketsTask() {
-        while (running) {
-            try {
-                wait();
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new TicketManagerException("Thread interrupted during ticket resolution", e);
+    private void assignTickets(List<Ticket> batch) {
+        Map<Long, Agent> assignedAgents = new LinkedHashMap<>();
+        Map<Long, Long> assignments = new LinkedHashMap<>();
+        for (Ticket ticket : batch) {
+            Agent agent = assignmentEngine.assign(ticket);
+            assignedAgents.put(ticket.getId(), agent);
+            assignments.put(ticket.getId(), agent.getId());
+        }
+
+        Map<Long, Boolean> outcomes;
+        try {
+            outcomes = AgentDatabase.assignTickets(assignments);
+        } catch (RuntimeException e) {
+            assignments.values().forEach(assignmentEngine::release);
+            throw e;
+        }
+        for (Ticket ticket : batch) {
+            Agent agent = assignedAgents.get(ticket.getId());
+            if (Boolean.TRUE.equals(outcomes.get(ticket.getId()))) {
+                ResolutionLogEntry<Ticket, Agent> resolutionLogEntry = new ResolutionLogEntry<>(ticket, agent, LocalDateTime.now());
+                ResolutionLogRepository.assignTicketResolutionLog(resolutionLogEntry);
+            } else {
+                assignmentEngine.release(agent.getId());
             }
         }
-        running = true;
-        List<Ticket> inProgressTickets = TicketDatabase.getInProgressTickets();
-        inProgressTickets.sort(Comparator.comparing(Ticket::getTicketPriority));
-
-        if (!inProgressTickets.isEmpty()) {
-            try {
-                for (int i = 0; i < inProgressTickets.size(); i++) {
-                    Ticket ticket = inProgressTickets.get(i);
-                    TicketDatabase.resolveTicket(ticket);
-                    Agent agent = AgentDatabase.getAgentByTicketID(ticket.getId());
-                    ResolutionLogEntry<Ticket, Agent> resolutionLogEntry = new ResolutionLogEntry<>(ticket, agent, LocalDateTime.now());
-                    ResolutionLogRepository.resolveTicketResolutionLog(resolutionLogEntry);
-                    wait(2000);
+    }
+
+    /**
+     * Resolves one batch of in-progress tickets in a single transaction
+     * and logs the resolutions in the resolution log.
+     *
+     * @param batch the tickets to resolve
+     */
+    private void resolveTickets(List<Ticket> batch) {
+        Map<Long, Boolean> outcomes = TicketDatabase.resolveTickets(batch);
+        for (Ticket ticket : batch) {
+            if (Boolean.TRUE.equals(outcomes.get(ticket.getId()))) {
+                assignmentEngine.release(ticket.getAssignedAgentID());
+                Agent agent = assignmentEngine.getAgent(ticket.getAssignedAgentID());
+                if (agent == null) {
+                    agent = AgentDatabase.getAgentById(ticket.getAssignedAgentID());
                 }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                throw new TicketManagerException("Thread interrupted during ticket resolution", e);
-            } finally {
-                running = false;
-                notifyAll();
+                ResolutionLogEntry<Ticket, Agent> resolutionLogEntry = new ResolutionLogEntry<>(ticket, agent, LocalDateTime.now());
+                ResolutionLogRepository.resolveTicketResolutionLog(resolutionLogEntry);
             }
         }
     }
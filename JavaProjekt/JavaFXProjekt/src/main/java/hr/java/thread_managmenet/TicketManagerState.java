@@ -0,0 +1,13 @@
+package hr.java.thread_managmenet;
+
+/**
+ * The enum Ticket manager state describes what the ticket manager service is doing.
+ * STOPPED means the service is not running, STANDBY that another instance holds the dispatch lease,
+ * IDLE that this instance holds the lease and waits for the next cycle and DISPATCHING that it is dispatching tickets.
+ */
+public enum TicketManagerState {
+    STOPPED,
+    STANDBY,
+    IDLE,
+    DISPATCHING
+}
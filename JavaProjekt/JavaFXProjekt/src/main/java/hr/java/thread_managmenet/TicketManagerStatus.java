@@ -0,0 +1,22 @@
+package hr.java.thread_managmenet;
+
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * A point-in-time snapshot of the ticket manager service.
+ *
+ * @param state             what the service is doing
+ * @param leader            whether this instance holds the dispatch lease
+ * @param owner             the name this instance uses for the dispatch lease
+ * @param cycles            the number of dispatch cycles run since the application started
+ * @param lastCycleStarted  when the last dispatch cycle started, or null if none ran yet
+ * @param lastCycleFinished when the last dispatch cycle finished, or null if none finished yet
+ * @param lastError         the message of the last failed cycle, or null if the last cycle succeeded
+ * @param pipelines         the counters of the pipelines of the last cycle, empty if none ran yet
+ */
+public record TicketManagerStatus(TicketManagerState state, boolean leader, String owner, long cycles,
+                                  LocalDateTime lastCycleStarted, LocalDateTime lastCycleFinished, String lastError,
+                                  List<DispatchStatistics> pipelines) {
+}
@@ -0,0 +1,49 @@
+package hr.java.thread_managmenet;
+
+/**
+ * A token bucket rate limiter.
+ * Tokens are added continuously at the configured rate up to the bucket capacity,
+ * which allows short bursts while keeping the long-term rate bounded.
+ */
+final class TokenBucket {
+
+    private final double tokensPerNano;
+    private final double capacity;
+    private double tokens;
+    private long lastRefill;
+
+    /**
+     * Creates a full token bucket.
+     *
+     * @param tokensPerSecond the sustained rate
+     * @param capacity        the maximum burst size
+     */
+    TokenBucket(double tokensPerSecond, int capacity) {
+        if (tokensPerSecond <= 0 || capacity <= 0) {
+            throw new IllegalArgumentException("Rate and capacity must be positive!");
+        }
+        this.tokensPerNano = tokensPerSecond / 1_000_000_000.0;
+        this.capacity = capacity;
+        this.tokens = capacity;
+        this.lastRefill = System.nanoTime();
+    }
+
+    /**
+     * Takes up to the requested number of tokens without blocking.
+     *
+     * @param requested the number of tokens wanted
+     * @return the number of tokens taken, between 0 and {@code requested}
+     */
+    synchronized int tryAcquire(int requested) {
+        refill();
+        int granted = (int) Math.min(requested, Math.floor(tokens));
+        tokens -= granted;
+        return granted;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+    }
+}
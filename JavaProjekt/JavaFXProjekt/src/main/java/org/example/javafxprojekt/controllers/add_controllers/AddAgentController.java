@@ -1,7 +1,6 @@
 package org.example.javafxprojekt.controllers.add_controllers;
 
 import hr.java.data_repository.database_repository.AgentDatabase;
-import hr.java.data_repository.file_repository.LoggedInUserDataRepository;
 import hr.java.interfaces.PasswordHasher;
 import hr.java.entity.Agent;
 import hr.java.entity.LoggedInUser;
@@ -67,9 +66,8 @@ public final class AddAgentController implements PasswordHasher
                 alertMaker.displayAlert();
             } else
             {
-                AgentDatabase.addNewAgent(agent);
-                LoggedInUser loggedInUser = new LoggedInUser(firstName, lastName, eMail, encryptString(password), agentType);
-                LoggedInUserDataRepository.saveToTextFile(loggedInUser);
+                LoggedInUser loggedInUser = new LoggedInUser(firstName, lastName, eMail, hashPassword(password), agentType);
+                AgentDatabase.addNewAgent(agent, loggedInUser);
                 AlertMaker alertMaker = new AlertMaker("SUCCESS", null, "Agent added!", "INFORMATION");
                 alertMaker.displayAlert();
             }
@@ -1,7 +1,8 @@
 package org.example.javafxprojekt.controllers.add_controllers;
 
-import hr.java.data_repository.database_repository.CustomerDatabase;
+import hr.java.data_repository.database_repository.CreatedTicket;
 import hr.java.data_repository.database_repository.TicketDatabase;
+import hr.java.data_repository.file_repository.TicketImageRepository;
 import hr.java.entity.Customer;
 import hr.java.entity.Person;
 import hr.java.entity.Ticket;
@@ -10,6 +11,7 @@ import hr.java.enums.TicketStatus;
 import hr.java.exception.FileException;
 import hr.java.exception.InvalidUserInputException;
 import hr.java.exception.UserInputLengthException;
+import hr.java.thread_managmenet.DataLoadService;
 import hr.java.utils.AlertMaker;
 import hr.java.utils.InputValidator;
 import javafx.fxml.FXML;
@@ -20,12 +22,8 @@ import javafx.scene.input.DragEvent;
 import javafx.scene.input.Dragboard;
 import javafx.scene.input.TransferMode;
 
-import javax.imageio.ImageIO;
-import java.awt.image.BufferedImage;
-import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
-import java.io.IOException;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
@@ -51,6 +49,7 @@ public class AddTicketController
     @FXML private TextArea descriptionInput;
     @FXML private ComboBox<TicketPriority> ticketPriorityComboBox;
     @FXML private ImageView imageView;
+    private final DataLoadService loader = new DataLoadService("addTicket");
 
 
     /**
@@ -71,21 +70,11 @@ public class AddTicketController
 
         if (stringBuilder.isEmpty())
         {
-            Long customerID;
             Customer customer = new Customer(new Person( 0L, firstName, lastName), eMail);
-            if (!CustomerDatabase.doesCustomerExist(customer))
-            {
-                customerID = CustomerDatabase.addNewCustomer(customer);
-            } else
-            {
-                customerID = CustomerDatabase.idFromCustomerEmail(customer);
-            }
-
             Ticket ticket = new Ticket.Builder().setSummary(summary).setDescription(description)
-                    .setTicketStatus(TicketStatus.OPEN).setTicketPriority(ticketPriority)
-                    .setCustomerID(customerID).build();
-            Long ticketID = TicketDatabase.addTicket(ticket);
-            saveImage(ticketID);
+                    .setTicketStatus(TicketStatus.OPEN).setTicketPriority(ticketPriority).build();
+            CreatedTicket created = TicketDatabase.addTicketForCustomer(customer, ticket);
+            saveImage(created.ticketID());
             AlertMaker alertMaker = new AlertMaker("SUCCESS", null, "Ticket submitted", "INFORMATION");
             alertMaker.displayAlert();
         } else
@@ -190,41 +179,23 @@ public class AddTicketController
     }
 
     /**
-     * Converts a JavaFX Image to a BufferedImage.
-     */
-    private BufferedImage convertToBufferedImage(Image image)
-    {
-        int width = (int) image.getWidth();
-        int height = (int) image.getHeight();
-        BufferedImage bufferedImage = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        for (int x = 0; x < width; x++)
-        {
-            for (int y = 0; y < height; y++)
-            {
-                int argb = image.getPixelReader().getArgb(x, y);
-                bufferedImage.setRGB(x, y, argb);
-            }
-        }
-        return bufferedImage;
-    }
-
-    /**
-     * Saves the uploaded image associated with the ticket.
+     * Saves the uploaded image associated with the ticket on a background thread.
+     * A failure is shown once the save has finished.
      */
     private void saveImage(Long ticketID)
     {
-        if (imageView.getImage() != null)
+        Image image = imageView.getImage();
+        if (image != null)
         {
-            Image image = imageView.getImage();
-            File file = new File("data/ticket_images/" + ticketID + ".png");
-            try
+            loader.load("image-" + ticketID, () ->
             {
-                BufferedImage bufferedImage = convertToBufferedImage(image);
-                ImageIO.write(bufferedImage, "png", file);
-            } catch (IOException e)
+                TicketImageRepository.saveImage(ticketID, image);
+                return ticketID;
+            }, savedTicketID -> {}, e ->
             {
-                throw new FileException("Failed to save the image, " + e.getMessage());
-            }
+                AlertMaker alertMaker = new AlertMaker("Image not saved!", null, e.getMessage(), "ERROR");
+                alertMaker.displayAlert();
+            });
         }
     }
 
@@ -6,10 +6,13 @@ import hr.java.file_paths.FilePath;
 import hr.java.entity.LoggedInUser;
 import hr.java.enums.AgentType;
 import hr.java.interfaces.LoaderInterface;
+import hr.java.thread_managmenet.BackgroundExecutor;
 import hr.java.utils.AlertMaker;
+import javafx.application.Platform;
 import javafx.event.ActionEvent;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.control.PasswordField;
 import javafx.scene.control.TextField;
@@ -17,10 +20,12 @@ import javafx.scene.control.TextField;
 import java.io.IOException;
 import java.security.NoSuchAlgorithmException;
 
+import static org.example.javafxprojekt.main.Main.logger;
+
 
 /**
  * Controller for handling user login in the JavaFX application.
- * Validates login credentials and loads the appropriate user scene.
+ * Validates login credentials on a background thread and loads the appropriate user scene.
  */
 
 public class LoginSceneController implements LoaderInterface
@@ -34,35 +39,62 @@ public class LoginSceneController implements LoaderInterface
     @FXML
     private PasswordField passwordInput;
 
-    private final LoggedInUserManager loggedInUserManager = new LoggedInUserManager();
+    private static final LoggedInUserManager loggedInUserManager = new LoggedInUserManager();
 
     /**
      * Handles the login process by verifying user credentials.
-     * If valid, it loads the corresponding user scene.
+     * The credentials are checked on a background thread while the login button is disabled;
+     * if they are valid, the corresponding user scene is loaded on the JavaFX thread.
      *
      * @param event the action event triggered by the login button
-     * @throws IOException              if loading the scene fails
-     * @throws NoSuchAlgorithmException if password hashing fails
      */
-    public void login(ActionEvent event) throws IOException, NoSuchAlgorithmException
+    public void login(ActionEvent event)
     {
         String firstName = firstNameInput.getText();
         String lastName = lastNameInput.getText();
         String eMail = eMailInput.getText();
         String password = passwordInput.getText();
 
-        AgentType agentType = loggedInUserManager.exists(firstName, lastName, eMail, password);
+        Node loginButton = (Node) event.getSource();
+        loginButton.setDisable(true);
+        BackgroundExecutor.execute("login-verifier", () ->
+        {
+            try
+            {
+                LoggedInUser loggedInUser = loggedInUserManager.authenticate(firstName, lastName, eMail, password);
+                Platform.runLater(() -> showLoginResult(loggedInUser, loginButton, event));
+            } catch (NoSuchAlgorithmException | RuntimeException e)
+            {
+                logger.error("Could not verify login of {}! {}", eMail, e.getMessage());
+                Platform.runLater(() ->
+                {
+                    loginButton.setDisable(false);
+                    AlertMaker alertMaker = new AlertMaker("Error", null, "Login could not be verified", "ERROR");
+                    alertMaker.displayAlert();
+                });
+            }
+        });
+    }
 
-        if (agentType == null)
+    /**
+     * Shows the outcome of a login check: an error for wrong credentials, otherwise the user scene.
+     *
+     * @param loggedInUser the verified user, or null if the credentials were wrong
+     * @param loginButton  the login button to enable again
+     * @param event        the action event triggered by the login button
+     */
+    private void showLoginResult(LoggedInUser loggedInUser, Node loginButton, ActionEvent event)
+    {
+        loginButton.setDisable(false);
+        if (loggedInUser == null)
         {
             AlertMaker alertMaker = new AlertMaker("Error", null, "Incorrect information", "ERROR");
             alertMaker.displayAlert();
             return;
         }
-
-        LoggedInUser loggedInUser = new LoggedInUser(firstName, lastName, eMail, password, agentType);
         loadUserScene(loggedInUser, event);
     }
+
     /**
      * Handles the login process by verifying user credentials.
      * If valid, it loads the corresponding user scene.
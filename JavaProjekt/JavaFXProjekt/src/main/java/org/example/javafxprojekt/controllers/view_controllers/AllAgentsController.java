@@ -2,13 +2,16 @@ package org.example.javafxprojekt.controllers.view_controllers;
 
 import hr.java.entity.*;
 import hr.java.data_repository.database_repository.AgentDatabase;
+import hr.java.data_repository.database_repository.AgentWorkloadSnapshot;
+import hr.java.data_repository.database_repository.ChangeCursor;
+import hr.java.data_repository.database_repository.ChangeSet;
+import hr.java.data_repository.database_repository.Database;
 import hr.java.data_repository.database_repository.TicketDatabase;
 import hr.java.data_repository.file_repository.ChangedDataRepository;
-import hr.java.data_repository.file_repository.LoggedInUserDataRepository;
 import hr.java.enums.AgentStatus;
 import hr.java.enums.AgentType;
 import hr.java.enums.ChangedFieldName;
-import hr.java.enums.TicketStatus;
+import hr.java.thread_managmenet.DataLoadService;
 import hr.java.utils.AlertMaker;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
@@ -16,6 +19,7 @@ import javafx.animation.Timeline;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
+import javafx.collections.transformation.FilteredList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -24,6 +28,7 @@ import javafx.util.Duration;
 
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 import static org.example.javafxprojekt.controllers.view_controllers.TicketDetailsController.sharedConfirmationDialog;
 
@@ -61,6 +66,12 @@ public class AllAgentsController {
     @FXML
     private ComboBox<String> agentTypeComboBox;
     private Timeline timeline;
+    private final ObservableList<Agent> agents = FXCollections.observableArrayList();
+    private final FilteredList<Agent> filteredAgents = new FilteredList<>(agents);
+    private ChangeCursor cursor;
+    private String appliedFilter;
+    private AgentWorkloadSnapshot workloads = AgentWorkloadSnapshot.EMPTY;
+    private final DataLoadService loader = new DataLoadService("agents");
     /**
      * Initializes the controller, sets up the combo box, table, and auto-refresh.
      */
@@ -91,20 +102,20 @@ public class AllAgentsController {
         agentEmailColumn.setCellValueFactory(new PropertyValueFactory<>("email"));
         firstNameColumn.setCellValueFactory(new PropertyValueFactory<>("firstName"));
         lastNameColumn.setCellValueFactory(new PropertyValueFactory<>("lastName"));
-        statusColumn.setCellValueFactory(new PropertyValueFactory<>("agentStatus"));
-        assignedTicketsColumn.setCellValueFactory(param -> {
+        statusColumn.setCellValueFactory(param -> {
             Agent agent = param.getValue();
-            List<Ticket> assignedTickets = TicketDatabase.getTicketsByAgentId(agent.getId());
-            assignedTickets = assignedTickets.stream().filter(data -> data.getTicketStatus().equals(TicketStatus.IN_PROGRESS)).toList();
-            String ticketIds = assignedTickets.stream()
-                    .map(ticket -> String.valueOf(ticket.getId()))
-                    .reduce((id1, id2) -> id1 + ", " + id2)
-                    .orElse("");
+            AgentStatus status = workloads.getAgentStatus(agent.getId());
+            agent.setAgentStatus(status);
+            return new ReadOnlyObjectWrapper<>(status.toString());
+        });
+        assignedTicketsColumn.setCellValueFactory(param -> {
+            List<Long> assignedTicketIDs = workloads.getInProgressTicketIDs(param.getValue().getId());
+            String ticketIds = assignedTicketIDs.stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
             if (ticketIds.isEmpty()) {
                 ticketIds = "No tickets";
             }
-            AgentStatus status = assignedTickets.isEmpty() ? AgentStatus.AVAILABLE : AgentStatus.BUSY;
-            agent.setAgentStatus(status);
             return new ReadOnlyObjectWrapper<>(ticketIds);
         });
         firstNameColumn.setCellFactory(TextFieldTableCell.forTableColumn());
@@ -112,22 +123,75 @@ public class AllAgentsController {
         editMethods();
         deleteColumn.setCellValueFactory(param -> new ReadOnlyObjectWrapper<>(param.getValue()));
         deleteColumn.setCellFactory(param -> new DeleteButtonCell());
-        List<Agent> filteredList = AgentDatabase.getAllAgents();
+        loadAgentChanges();
         String firstName = firstNameField.getText();
         String lastName = lastNameField.getText();
         String agentTypeComboBoxValue = agentTypeComboBox.getValue();
-        if (!firstName.isEmpty()) {
-            filteredList = filteredList.stream().filter(agent -> agent.getFirstName().toLowerCase().contains(firstName.toLowerCase())).toList();
-        }
-        if (!lastName.isEmpty()) {
-            filteredList = filteredList.stream().filter(agent -> agent.getLastName().toLowerCase().contains(lastName.toLowerCase())).toList();
+        String filter = firstName + "|" + lastName + "|" + agentTypeComboBoxValue;
+        if (!filter.equals(appliedFilter)) {
+            appliedFilter = filter;
+            filteredAgents.setPredicate(agent ->
+                    (firstName.isEmpty() || agent.getFirstName().toLowerCase().contains(firstName.toLowerCase()))
+                    && (lastName.isEmpty() || agent.getLastName().toLowerCase().contains(lastName.toLowerCase()))
+                    && (agentTypeComboBoxValue == null || agentTypeComboBoxValue.isEmpty()
+                        || agent.getAgentType().toString().equalsIgnoreCase(agentTypeComboBoxValue)));
         }
-        if (agentTypeComboBoxValue != null && !agentTypeComboBoxValue.isEmpty()) {
-            filteredList = filteredList.stream().filter(agent -> agent.getAgentType().toString().equalsIgnoreCase(agentTypeComboBoxValue)).toList();
-        }
-        ObservableList<Agent> observableList = FXCollections.observableList(filteredList);
-        tableView.setItems(observableList);
-        numberOfAgents.setText(String.valueOf(observableList.size()));
+        numberOfAgents.setText(String.valueOf(filteredAgents.size()));
+    }
+
+    /**
+     * Loads all agents on the first call and afterwards only applies the agents changed since the last call,
+     * following the change feed with a {@link ChangeCursor} so that late commits are not missed.
+     * Any change, including ticket changes, reloads the {@link AgentWorkloadSnapshot} with one query
+     * and re-renders the rows so the assigned tickets and statuses stay current.
+     * The queries run in the background, the rows are updated once they finish.
+     */
+    private void loadAgentChanges() {
+        boolean firstLoad = tableView.getItems() != filteredAgents;
+        ChangeCursor changeCursor = cursor;
+        loader.load("changes", () -> {
+            long currentVersion = Database.getCurrentVersion();
+            if (firstLoad) {
+                return new AgentChanges(new ChangeCursor(currentVersion), null, AgentDatabase.getAllAgents(), null,
+                        TicketDatabase.getAgentWorkloadSnapshot());
+            }
+            ChangeCursor.Read read = changeCursor.nextRead(currentVersion);
+            if (read == null) {
+                return null;
+            }
+            return new AgentChanges(changeCursor, read, null, AgentDatabase.getChangesSince(read.since()),
+                    TicketDatabase.getAgentWorkloadSnapshot());
+        }, agentChanges -> {
+            if (agentChanges == null || changeCursor != cursor) {
+                return;
+            }
+            cursor = agentChanges.cursor();
+            if (agentChanges.read() != null) {
+                cursor.advance(agentChanges.read());
+            }
+            workloads = agentChanges.workloads();
+            if (agentChanges.allAgents() != null) {
+                agents.setAll(agentChanges.allAgents());
+                tableView.setItems(filteredAgents);
+            } else {
+                agentChanges.changes().applyTo(agents, Agent::getId);
+                tableView.refresh();
+            }
+            numberOfAgents.setText(String.valueOf(filteredAgents.size()));
+        });
+    }
+
+    /**
+     * The agents loaded by {@link #loadAgentChanges()}.
+     *
+     * @param cursor    the cursor following the change feed, new on the first load
+     * @param read      the read of the change feed the changes came from, or null on the first load
+     * @param allAgents all agents on the first load, otherwise null
+     * @param changes   the agents changed since the last load, or null on the first load
+     * @param workloads the assigned tickets of every agent
+     */
+    private record AgentChanges(ChangeCursor cursor, ChangeCursor.Read read, List<Agent> allAgents,
+                                ChangeSet<Agent> changes, AgentWorkloadSnapshot workloads) {
     }
 
     /**
@@ -150,7 +214,6 @@ public class AllAgentsController {
             String newValue = event.getNewValue();
             if (newValue.length() < 30) {
                 if (sharedConfirmationDialog("firstName", agent.getFirstName(), agent.getLastName())) {
-                    LoggedInUserDataRepository.updateLoggedInUser(agent);
                     EntityChange<Entity> entityChange = new EntityChange<>(agentMakingChanges, agent, ChangedFieldName.FIRSTNAME.toString(), agent.getFirstName(), newValue);
                     agent.setFirstName(event.getNewValue());
                     AgentDatabase.updateAgent("firstname", newValue, agent.getId());
@@ -168,7 +231,6 @@ public class AllAgentsController {
             String newValue = event.getNewValue();
             if (newValue.length() < 30) {
                 if (sharedConfirmationDialog("lastname", newValue, agent.getLastName())) {
-                    LoggedInUserDataRepository.updateLoggedInUser(agent);
                     EntityChange<Entity> entityChange = new EntityChange<>(agentMakingChanges, agent, ChangedFieldName.LASTNAME.toString(), agent.getLastName(), newValue);
                     agent.setLastName(event.getNewValue());
                     AgentDatabase.updateAgent("lastname", newValue, agent.getId());
@@ -189,7 +251,8 @@ public class AllAgentsController {
      */
     public void setLoggedInUser(LoggedInUser loggedInUser) {
         this.loggedInUser = loggedInUser;
-        this.agentMakingChanges = AgentDatabase.getAgentByEmail(loggedInUser.getEmail());
+        loader.load("agentMakingChanges", () -> AgentDatabase.getAgentByEmail(loggedInUser.getEmail()),
+                agent -> agentMakingChanges = agent);
     }
 
     /**
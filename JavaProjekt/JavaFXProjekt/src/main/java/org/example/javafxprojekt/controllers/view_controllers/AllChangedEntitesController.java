@@ -1,19 +1,24 @@
 package org.example.javafxprojekt.controllers.view_controllers;
 import hr.java.entity.Agent;
+import hr.java.data_repository.file_repository.ChangePage;
 import hr.java.data_repository.file_repository.ChangedDataRepository;
 import hr.java.entity.Entity;
 import hr.java.entity.EntityChange;
 import hr.java.entity.Ticket;
 import hr.java.enums.ChangedEntity;
 import hr.java.enums.ChangedFieldName;
+import hr.java.thread_managmenet.DataLoadService;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
 import javafx.scene.Parent;
 import javafx.scene.Scene;
 import javafx.scene.control.ComboBox;
+import javafx.scene.control.ScrollBar;
 import javafx.scene.control.TableColumn;
 import javafx.scene.control.TableRow;
 import javafx.scene.control.TableView;
@@ -21,14 +26,26 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 import static org.example.javafxprojekt.main.Main.logger;
 
 /**
  * Controller class for managing and displaying all entity changes in a TableView.
+ * The newest changes are shown first and older ones are loaded a page at a time when the user
+ * scrolls close to the end of the table. Pages are read in the background through a {@link DataLoadService}.
  */
 public class AllChangedEntitesController {
+    private static final int PAGE_SIZE = 1000;
+    private static final double LOAD_OLDER_AT = 0.9;
+    private static final String NEWEST_PAGE = "newestPage";
+    private static final String OLDER_PAGE = "olderPage";
+
+    private final DataLoadService loader = new DataLoadService("changedEntities");
+    private final ObservableList<EntityChange<Entity>> changes = FXCollections.observableArrayList();
+    private ChangedEntity shownEntity;
+    private ChangedFieldName shownFieldName;
+    private long olderThan;
+
     @FXML
     private TableView<EntityChange<Entity>> tableView;
     @FXML
@@ -53,6 +70,16 @@ public class AllChangedEntitesController {
      */
 
     public void initialize() {
+        agentIdColumn.setCellValueFactory(celldata -> new SimpleStringProperty(String.valueOf(celldata.getValue().getAgent().getId())));
+        changedEntityColumn.setCellValueFactory(celldata -> new SimpleStringProperty(
+                celldata.getValue().getEntityToChange().getClass().getSimpleName()
+        ));
+        fieldNameColumn.setCellValueFactory(new PropertyValueFactory<>("fieldName"));
+        oldValueColumn.setCellValueFactory(new PropertyValueFactory<>("oldValue"));
+        newValueColumn.setCellValueFactory(new PropertyValueFactory<>("newValue"));
+        changedAtColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getTime().format(DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss"))));
+        tableView.setItems(changes);
+        tableView.skinProperty().addListener((observable, oldSkin, newSkin) -> listenForScrolling());
         displayTable();
         displayComboBoxItems();
         tableView.setRowFactory(tv ->
@@ -75,36 +102,66 @@ public class AllChangedEntitesController {
     }
 
     /**
-     * Filters and displays the data in the TableView based on the selected filters.
+     * Filters and displays the newest page of changes in the TableView based on the selected filters.
+     * The filters are matched against the change journal index, so only matching changes are read.
      */
     public void displayTable() {
         String selectedChangedEntity = changedEntityComboBox.getValue();
         String selectedfieldName = fieldNameComboBox.getValue();
-        List<EntityChange<Entity>> filteredChanges = ChangedDataRepository.readChangedDataFromBinaryFile();
+        ChangedEntity changedEntity = null;
         if (selectedChangedEntity != null && !selectedChangedEntity.isEmpty()) {
-            filteredChanges = filteredChanges.stream()
-                    .filter(entityChange -> entityChange.getEntityToChange().getClass().getSimpleName()
-                            .equalsIgnoreCase(selectedChangedEntity))
-                    .toList();
+            changedEntity = ChangedEntity.valueOf(selectedChangedEntity);
         }
-
+        ChangedFieldName fieldName = null;
         if (selectedfieldName != null && !selectedfieldName.isEmpty()) {
-            filteredChanges = filteredChanges.stream()
-                    .filter(entityChange -> entityChange.getFieldName()
-                            .equalsIgnoreCase(selectedfieldName))
-                    .toList();
+            fieldName = ChangedFieldName.valueOf(selectedfieldName);
         }
+        ChangedEntity entity = changedEntity;
+        ChangedFieldName field = fieldName;
+        shownEntity = entity;
+        shownFieldName = field;
+        loader.cancel(OLDER_PAGE);
+        loader.load(NEWEST_PAGE, () -> ChangedDataRepository.readChangePage(entity, field, PAGE_SIZE, ChangePage.NEWEST),
+                page -> {
+                    olderThan = page.olderThan();
+                    changes.setAll(page.changes().reversed());
+                });
+    }
 
-        agentIdColumn.setCellValueFactory(celldata -> new SimpleStringProperty(String.valueOf(celldata.getValue().getAgent().getId())));
-        changedEntityColumn.setCellValueFactory(celldata -> new SimpleStringProperty(
-                celldata.getValue().getEntityToChange().getClass().getSimpleName()
-        ));
-        fieldNameColumn.setCellValueFactory(new PropertyValueFactory<>("fieldName"));
-        oldValueColumn.setCellValueFactory(new PropertyValueFactory<>("oldValue"));
-        newValueColumn.setCellValueFactory(new PropertyValueFactory<>("newValue"));
-        changedAtColumn.setCellValueFactory(cellData -> new SimpleStringProperty(cellData.getValue().getTime().format(DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss"))));
-        ObservableList<EntityChange<Entity>> changes = FXCollections.observableArrayList(filteredChanges);
-        tableView.setItems(changes);
+    /**
+     * Appends the next older page of changes, if there is one.
+     */
+    private void loadOlderChanges() {
+        if (olderThan <= 0 || loader.isLoading(NEWEST_PAGE) || loader.isLoading(OLDER_PAGE)) {
+            return;
+        }
+        ChangedEntity entity = shownEntity;
+        ChangedFieldName field = shownFieldName;
+        long before = olderThan;
+        loader.load(OLDER_PAGE, () -> ChangedDataRepository.readChangePage(entity, field, PAGE_SIZE, before),
+                page -> {
+                    if (before != olderThan) {
+                        return;
+                    }
+                    olderThan = page.olderThan();
+                    changes.addAll(page.changes().reversed());
+                });
+    }
+
+    /**
+     * Loads older changes whenever the vertical scroll bar gets close to the end.
+     * The scroll bar only exists once the table skin has been created.
+     */
+    private void listenForScrolling() {
+        for (Node node : tableView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL) {
+                scrollBar.valueProperty().addListener((observable, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax() * LOAD_OLDER_AT) {
+                        loadOlderChanges();
+                    }
+                });
+            }
+        }
     }
 
     /**
@@ -2,8 +2,8 @@ package org.example.javafxprojekt.controllers.view_controllers;
 
 import hr.java.entity.Customer;
 import hr.java.data_repository.database_repository.CustomerDatabase;
-import hr.java.data_repository.database_repository.TicketDatabase;
-import hr.java.entity.Ticket;
+import hr.java.data_repository.database_repository.CustomerTicketSummary;
+import hr.java.thread_managmenet.DataLoadService;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
@@ -11,14 +11,15 @@ import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 
-import java.util.HashSet;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 /**
  * Controller for managing and displaying customers in the application.
- * This class manages the customer table, filtering by first name, last name, and number of tickets.
+ * This class manages the customer table, filtering by the start of the first and last name and by the number of tickets.
  */
 public class AllCustomersNormalAgentController
 {
@@ -52,7 +53,8 @@ public class AllCustomersNormalAgentController
 
     @FXML
     private TableColumn<Customer, String> madeTicketsColumn;
-    List<Ticket> tickets = TicketDatabase.getAllTickets();
+    private Map<Long, List<Long>> ticketIDsByCustomer = Map.of();
+    private final DataLoadService loader = new DataLoadService("customersNormalAgent");
 
     /**
      * Initializes the controller and displays the customer table.
@@ -74,11 +76,10 @@ public class AllCustomersNormalAgentController
         madeTicketsColumn.setCellValueFactory(param ->
         {
             Customer customer = param.getValue();
-            List<String> matchingTicketIds = tickets.stream()
-                    .filter(ticket -> ticket.getCustomerID().equals(customer.getId()))
-                    .map(ticket -> String.valueOf(ticket.getId()))
-                    .toList();
-            return new SimpleStringProperty(String.join(", ", matchingTicketIds));
+            String matchingTicketIds = ticketIDsByCustomer.getOrDefault(customer.getId(), List.of()).stream()
+                    .map(String::valueOf)
+                    .collect(Collectors.joining(", "));
+            return new SimpleStringProperty(matchingTicketIds);
         });
 
         madeTicketsColumn.setCellFactory(param -> new TableCell<>()
@@ -99,31 +100,31 @@ public class AllCustomersNormalAgentController
             }
         });
 
-        Set<Customer> filteredCustomers = new HashSet<>(CustomerDatabase.getAllCustomers());
-
-        if (!firstNameInput.getText().isEmpty()) {
-            filteredCustomers = filteredCustomers.stream()
-                    .filter(customer -> customer.getFirstName().toLowerCase().contains(firstNameInput.getText().toLowerCase()))
-                    .collect(Collectors.toSet());
-        }
-
-        if (!lastNameInput.getText().isEmpty()) {
-            filteredCustomers = filteredCustomers.stream()
-                    .filter(customer -> customer.getLastName().toLowerCase().contains(lastNameInput.getText().toLowerCase()))
-                    .collect(Collectors.toSet());
+        Integer ticketsFilter = null;
+        if (!numberOfMadeTicketsInput.getText().isEmpty()) {
+            ticketsFilter = Integer.parseInt(numberOfMadeTicketsInput.getText());
         }
+        String firstName = firstNameInput.getText();
+        String lastName = lastNameInput.getText();
+        Integer madeTickets = ticketsFilter;
+        loader.load("summaries", () -> CustomerDatabase.getCustomerTicketSummaries(firstName, lastName, madeTickets),
+                this::showSummaries);
+    }
 
-        if (!numberOfMadeTicketsInput.getText().isEmpty()) {
-            int ticketsFilter = Integer.parseInt(numberOfMadeTicketsInput.getText());
-            filteredCustomers = filteredCustomers.stream()
-                    .filter(customer -> {
-                        long matchingTicketsCount = tickets.stream()
-                                .filter(ticket -> ticket.getCustomerID().equals(customer.getId()))
-                                .count();
-                        return matchingTicketsCount == ticketsFilter;
-                    })
-                    .collect(Collectors.toSet());
+    /**
+     * Shows the loaded customers and their tickets in the table.
+     *
+     * @param summaries the customers matching the filters with their ticket IDs
+     */
+    private void showSummaries(List<CustomerTicketSummary> summaries)
+    {
+        List<Customer> filteredCustomers = new ArrayList<>(summaries.size());
+        Map<Long, List<Long>> ticketIDs = new HashMap<>();
+        for (CustomerTicketSummary summary : summaries) {
+            filteredCustomers.add(summary.customer());
+            ticketIDs.put(summary.customer().getId(), summary.ticketIDs());
         }
+        ticketIDsByCustomer = ticketIDs;
 
         ObservableList<Customer> customerObservableList = FXCollections.observableArrayList(filteredCustomers);
         customerTable.setItems(customerObservableList);
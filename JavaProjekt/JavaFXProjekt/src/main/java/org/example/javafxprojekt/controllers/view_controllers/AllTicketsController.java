@@ -1,19 +1,17 @@
 package org.example.javafxprojekt.controllers.view_controllers;
 
 import hr.java.data_repository.database_repository.TicketDatabase;
+import hr.java.data_repository.database_repository.TicketQuery;
+import hr.java.data_repository.file_repository.TicketImageRepository;
 import hr.java.entity.LoggedInUser;
 import hr.java.entity.Ticket;
 import hr.java.enums.TicketPriority;
 import hr.java.enums.TicketStatus;
-import hr.java.exception.FileException;
-import hr.java.thread_managmenet.TicketManager;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.beans.property.ReadOnlyObjectWrapper;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Parent;
@@ -23,11 +21,7 @@ import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.stage.Stage;
 import javafx.util.Duration;
 
-import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 import java.util.Optional;
 
 import static org.example.javafxprojekt.main.Main.logger;
@@ -64,11 +58,12 @@ public class AllTicketsController
     private ComboBox<String> ticketStatusComboBox;
 
     LoggedInUser loggedInUser;
+    private TicketTablePager pager;
 
     /**
      * Displays the tickets in the TableView with filters applied from the ComboBoxes.
-     * This method sets up the data for the ticket columns, filters tickets based on selected
-     * priority and status, and updates the TableView with the filtered tickets.
+     * This method sets up the data for the ticket columns and lets the database filter the tickets
+     * by the selected priority and status. Tickets are loaded one page at a time as the user scrolls.
      */
     public void displayTable()
     {
@@ -94,26 +89,22 @@ public class AllTicketsController
         deleteColumn.setCellValueFactory(param -> new ReadOnlyObjectWrapper<>(param.getValue()));
         deleteColumn.setCellFactory(param -> new DeleteButtonCell());
 
+        TicketQuery.Builder query = new TicketQuery.Builder();
         String selectedPriority = ticketPriorityComboBox.getValue();
         String selectedStatus = ticketStatusComboBox.getValue();
-        List<Ticket> filteredTickets = TicketDatabase.getAllTickets();
         if (selectedPriority != null && !selectedPriority.isEmpty())
         {
-            filteredTickets = filteredTickets.stream()
-                    .filter(ticket -> ticket.getTicketPriority().toString().equalsIgnoreCase(selectedPriority.toLowerCase()))
-                    .toList();
+            query.setPriority(TicketPriority.valueOf(selectedPriority));
         }
         if (selectedStatus != null && !selectedStatus.isEmpty())
         {
-            filteredTickets = filteredTickets.stream()
-                    .filter(ticket -> ticket.getTicketStatus().toString().equalsIgnoreCase(selectedStatus.toLowerCase()))
-                    .toList();
+            query.setStatus(TicketStatus.valueOf(selectedStatus));
         }
-
-        ObservableList<Ticket> tickets = FXCollections.observableList(filteredTickets);
-        tableView.setItems(tickets);
-
-        numberOfTickets.setText(String.valueOf(tickets.size()));
+        if (pager == null)
+        {
+            pager = new TicketTablePager(tableView, numberOfTickets);
+        }
+        pager.show(query.build());
 
 
     }
@@ -146,7 +137,6 @@ public class AllTicketsController
     {
         displayTable();
         displayComboBoxItems();
-        assignAndResolve();
         tableView.setRowFactory(tv ->
         {
             TableRow<Ticket> row = new TableRow<>();
@@ -201,16 +191,6 @@ public class AllTicketsController
     {
         this.loggedInUser = loggedInUser;
     }
-    /**
-     * Starts a background thread to manage ticket assignments and resolution.
-     */
-    public void assignAndResolve()
-    {
-        Thread ticketManagerThread = new Thread(new TicketManager());
-        ticketManagerThread.setDaemon(true);
-        ticketManagerThread.start();
-    }
-
 
     /**
      * Custom TableCell to display a delete button for each row in the TableView.
@@ -232,14 +212,7 @@ public class AllTicketsController
                 if (result.isPresent() && result.get() == ButtonType.OK)
                 {
                     TicketDatabase.deleteTicket(ticketIDtoDelete);
-                    String imagePath = "data/ticket_images/" + ticketIDtoDelete + ".png";
-                    try
-                    {
-                        Files.deleteIfExists(Paths.get(imagePath));
-                    } catch (IOException e)
-                    {
-                        throw new FileException("Error deleting file" + e);
-                    }
+                    TicketImageRepository.deleteImage(ticketIDtoDelete);
                     displayTable();
                 }
             });
@@ -1,7 +1,7 @@
 package org.example.javafxprojekt.controllers.view_controllers;
 
 
-import hr.java.data_repository.database_repository.TicketDatabase;
+import hr.java.data_repository.database_repository.TicketQuery;
 import hr.java.entity.LoggedInUser;
 import hr.java.entity.Ticket;
 import hr.java.enums.TicketPriority;
@@ -10,15 +10,12 @@ import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
 import javafx.beans.property.SimpleStringProperty;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
 import javafx.util.Duration;
 
 import java.time.format.DateTimeFormatter;
-import java.util.List;
 
 /**
  * Controller for managing and displaying tickets in the application.
@@ -50,11 +47,12 @@ public class AllTicketsNormalAgentController
     private ComboBox<String> ticketStatusComboBox;
 
     LoggedInUser loggedInUser;
+    private TicketTablePager pager;
 
     /**
      * Displays the tickets in the TableView with filters applied from the ComboBoxes.
-     * This method sets up the data for the ticket columns, filters tickets based on selected
-     * priority and status, and updates the TableView with the filtered tickets.
+     * This method sets up the data for the ticket columns and lets the database filter the tickets
+     * by the selected priority and status. Tickets are loaded one page at a time as the user scrolls.
      */
     public void displayTable()
     {
@@ -78,26 +76,22 @@ public class AllTicketsNormalAgentController
             return new SimpleStringProperty(outPut);
         });
 
+        TicketQuery.Builder query = new TicketQuery.Builder();
         String selectedPriority = ticketPriorityComboBox.getValue();
         String selectedStatus = ticketStatusComboBox.getValue();
-        List<Ticket> filteredTickets = TicketDatabase.getAllTickets();
         if (selectedPriority != null && !selectedPriority.isEmpty())
         {
-            filteredTickets = filteredTickets.stream()
-                    .filter(ticket -> ticket.getTicketPriority().toString().equalsIgnoreCase(selectedPriority.toLowerCase()))
-                    .toList();
+            query.setPriority(TicketPriority.valueOf(selectedPriority));
         }
         if (selectedStatus != null && !selectedStatus.isEmpty())
         {
-            filteredTickets = filteredTickets.stream()
-                    .filter(ticket -> ticket.getTicketStatus().toString().equalsIgnoreCase(selectedStatus.toLowerCase()))
-                    .toList();
+            query.setStatus(TicketStatus.valueOf(selectedStatus));
         }
-
-        ObservableList<Ticket> tickets = FXCollections.observableList(filteredTickets);
-        tableView.setItems(tickets);
-
-        numberOfTickets.setText(String.valueOf(tickets.size()));
+        if (pager == null)
+        {
+            pager = new TicketTablePager(tableView, numberOfTickets);
+        }
+        pager.show(query.build());
 
 
     }
@@ -1,64 +1,103 @@
 package org.example.javafxprojekt.controllers.view_controllers;
 
-import hr.java.file_paths.FilePath;
+import hr.java.data_repository.file_repository.ResolutionLogFollower;
+import hr.java.data_repository.file_repository.ResolutionLogRepository;
+import hr.java.entity.ResolutionEvent;
+import hr.java.enums.ResolutionEventType;
+import hr.java.thread_managmenet.DataLoadService;
 import javafx.animation.Animation;
 import javafx.animation.KeyFrame;
 import javafx.animation.Timeline;
+import javafx.beans.value.ObservableValue;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
 import javafx.fxml.FXML;
-import javafx.scene.control.TextArea;
+import javafx.scene.Scene;
+import javafx.scene.control.ListView;
+import javafx.stage.Window;
 import javafx.util.Duration;
 
-import java.io.BufferedReader;
-import java.io.FileReader;
-import java.io.IOException;
-import java.util.ArrayList;
-import java.util.Collections;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 
-import static org.example.javafxprojekt.main.Main.logger;
-
 /**
  * Controller for displaying logs from the resolution log file.
- * This controller reads the contents of the log file and updates the UI
- * periodically to display the latest logs.
+ * This controller follows the resolution log and adds newly written entries
+ * to the top of the list every 2 seconds. The log is opened and read in the background,
+ * and only while the view is shown.
  */
 public class ResolutionLogController {
+    private static final int MAX_DISPLAYED_ENTRIES = 1000;
+    private static final String NEW_ENTRIES = "newEntries";
+    private static final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd.MM.yyyy. HH:mm:ss");
+
     @FXML
-    private TextArea textAreaLogs;
+    private ListView<String> listViewLogs;
+
+    private final ObservableList<String> entries = FXCollections.observableArrayList();
+    private final DataLoadService loader = new DataLoadService("resolutionLog");
+    private final Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(2), event2 -> loadNewEntries()));
+    private ObservableValue<Boolean> shown;
+    private volatile ResolutionLogFollower logFollower;
 
     /**
-     * Initializes the controller, loads the data from the log file,
-     * and sets up a timeline to refresh the displayed log every 2 seconds.
+     * Initializes the controller and sets up a timeline that adds new entries every 2 seconds
+     * while the view is shown in a window.
      */
     public void initialize() {
-        loadDataFromFile();
-        Timeline timeline = new Timeline(new KeyFrame(Duration.seconds(2), event2 -> loadDataFromFile()));
+        listViewLogs.setItems(entries);
         timeline.setCycleCount(Animation.INDEFINITE);
-        timeline.play();
+        shown = listViewLogs.sceneProperty()
+                .flatMap(Scene::windowProperty)
+                .flatMap(Window::showingProperty)
+                .orElse(false);
+        shown.addListener((observable, wasShown, isShown) -> {
+            if (isShown) {
+                loadNewEntries();
+                timeline.play();
+            } else {
+                timeline.stop();
+                loader.cancelAll();
+            }
+        });
     }
 
     /**
-     * Reads the content of the resolution log file and displays it in the TextArea.
-     * The file is read line by line, the lines are reversed (to show the latest logs at the top),
-     * and then concatenated to display the full log content.
+     * Reads the entries written since the last call in the background, opening the log on the first call.
      */
-    @FXML
-    private void loadDataFromFile() {
-        StringBuilder content = new StringBuilder();
-        List<String> lines = new ArrayList<>();
-        try (BufferedReader br = new BufferedReader(new FileReader(FilePath.RESOLUTION_LOG.getPath()))) {
-            String line;
-            while ((line = br.readLine()) != null) {
-                lines.add(line);
+    private void loadNewEntries() {
+        loader.load(NEW_ENTRIES, () -> {
+            if (logFollower == null) {
+                logFollower = ResolutionLogRepository.followEvents(MAX_DISPLAYED_ENTRIES);
             }
-        } catch (IOException e) {
-            logger.error("Error reading file {} ", e.getMessage());
+            return logFollower.poll();
+        }, this::showNewEntries);
+    }
+
+    /**
+     * Adds the new entries to the top of the list, newest first, and drops the oldest entries
+     * beyond the display limit. If the log was replaced, the list starts over.
+     *
+     * @param update the entries read by one poll
+     */
+    private void showNewEntries(ResolutionLogFollower.Update update) {
+        if (update.reset()) {
+            entries.clear();
         }
-        Collections.reverse(lines);
-        for (String line : lines) {
-            content.append(line).append("\n");
+        List<ResolutionEvent> newEvents = update.events();
+        if (newEvents.isEmpty()) {
+            return;
+        }
+        List<String> newestFirst = newEvents.reversed().stream().map(ResolutionLogController::describe).toList();
+        entries.addAll(0, newestFirst);
+        if (entries.size() > MAX_DISPLAYED_ENTRIES) {
+            entries.remove(MAX_DISPLAYED_ENTRIES, entries.size());
         }
-        textAreaLogs.setText(content.toString());
     }
 
+    private static String describe(ResolutionEvent event) {
+        String action = event.type() == ResolutionEventType.ASSIGNED ? "ASSIGNED to" : "RESOLVED by";
+        return "Ticket (ID: " + event.ticketID() + ") has been " + action + " agent (ID: " + event.agentID() + ") at "
+                + event.getDateTime().format(formatter);
+    }
 }
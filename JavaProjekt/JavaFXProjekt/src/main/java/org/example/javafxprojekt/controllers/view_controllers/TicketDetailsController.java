@@ -4,9 +4,11 @@ import hr.java.data_repository.database_repository.AgentDatabase;
 import hr.java.data_repository.database_repository.CustomerDatabase;
 import hr.java.data_repository.database_repository.TicketDatabase;
 import hr.java.data_repository.file_repository.ChangedDataRepository;
+import hr.java.data_repository.file_repository.TicketImageRepository;
 import hr.java.entity.*;
 import hr.java.enums.ChangedFieldName;
 import hr.java.file_paths.FilePath;
+import hr.java.thread_managmenet.DataLoadService;
 import javafx.fxml.FXML;
 import javafx.scene.control.Alert;
 import javafx.scene.control.ButtonType;
@@ -16,7 +18,6 @@ import javafx.scene.control.TitledPane;
 import javafx.scene.image.Image;
 import javafx.scene.image.ImageView;
 
-import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Optional;
 
@@ -52,6 +53,7 @@ public class TicketDetailsController
 
     private static final String DESCRIPTION = "description";
     private static final String SUMMARY = "summary";
+    private final DataLoadService loader = new DataLoadService("ticketDetails");
 
     /**
      * Sets the controller for the "All Tickets" view to allow refreshing of the ticket list when changes are saved.
@@ -66,6 +68,7 @@ public class TicketDetailsController
     /**
      * Sets the details of the selected ticket, including customer and agent information, description, summary, and associated image.
      * Also tracks changes made to the ticket description and summary.
+     * The agent and customer are loaded in the background and the customer labels are filled once they arrive.
      *
      * @param ticket The ticket whose details are to be displayed.
      * @param loggedInUser The logged-in user (agent) viewing the ticket.
@@ -74,29 +77,53 @@ public class TicketDetailsController
     {
         this.currentTicket = ticket;
         this.loggedInUser = loggedInUser;
-        this.agent = AgentDatabase.getAgentByEmail(loggedInUser.getEmail());
         titledPane.setText("Ticket ID: " + ticket.getId());
         customerIDLabel.setText(String.valueOf(ticket.getCustomerID()));
-
-        Customer customer = CustomerDatabase.getCustomerById(ticket.getCustomerID());
-        customerFirstNameLabel.setText(customer.getFirstName());
-        customerLastNameLabel.setText(customer.getLastName());
-        customerEmailLabel.setText(customer.getCustomerEmail());
+        loader.load("agent", () -> AgentDatabase.getAgentByEmail(loggedInUser.getEmail()),
+                loadedAgent -> this.agent = loadedAgent);
+        loader.load("customer", () -> CustomerDatabase.getCustomerById(ticket.getCustomerID()), customer ->
+        {
+            customerFirstNameLabel.setText(customer.getFirstName());
+            customerLastNameLabel.setText(customer.getLastName());
+            customerEmailLabel.setText(customer.getCustomerEmail());
+        });
 
         ticketDescription.setText(ticket.getDescription());
         ticketSummary.setText(ticket.getSummary());
 
-        String imagePath = "data/ticket_images/" + ticket.getId() + ".png";
-        if (Files.exists(Paths.get(imagePath)))
-        {
-            ticketImageView.setImage(new Image(Paths.get(imagePath).toUri().toString()));
-        } else
-        {
-            ticketImageView.setImage(new Image(Paths.get(FilePath.IMAGE_NOT_FOUND.getPath()).toUri().toString()));
-        }
+        showThumbnail(ticket);
         trackChanges(ticket);
     }
 
+    /**
+     * Shows the cached thumbnail of the ticket image, loaded in the background.
+     * Clicking the thumbnail loads the full-size image.
+     *
+     * @param ticket The ticket whose image is shown.
+     */
+    private void showThumbnail(Ticket ticket)
+    {
+        ticketImageView.setImage(null);
+        ticketImageView.setOnMouseClicked(null);
+        loader.load("thumbnail", () -> TicketImageRepository.getThumbnail(ticket.getId()), thumbnail ->
+        {
+            if (thumbnail == null)
+            {
+                ticketImageView.setImage(new Image(Paths.get(FilePath.IMAGE_NOT_FOUND.getPath()).toUri().toString()));
+                return;
+            }
+            ticketImageView.setImage(thumbnail);
+            ticketImageView.setOnMouseClicked(event -> loader.load("image",
+                    () -> TicketImageRepository.loadImage(ticket.getId()), image ->
+                    {
+                        if (image != null)
+                        {
+                            ticketImageView.setImage(image);
+                        }
+                    }));
+        });
+    }
+
     /**
      * Tracks changes to the ticket fields (description and summary) and prompts the user to save or discard changes.
      * A listener is added to the ticket description and summary fields to detect when they lose focus, indicating a potential change.
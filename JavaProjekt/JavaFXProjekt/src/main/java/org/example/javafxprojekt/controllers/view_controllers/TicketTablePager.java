@@ -0,0 +1,274 @@
+package org.example.javafxprojekt.controllers.view_controllers;
+
+import hr.java.data_repository.database_repository.ChangeCursor;
+import hr.java.data_repository.database_repository.ChangeSet;
+import hr.java.data_repository.database_repository.Database;
+import hr.java.data_repository.database_repository.TicketDatabase;
+import hr.java.data_repository.database_repository.TicketQuery;
+import hr.java.entity.Ticket;
+import hr.java.thread_managmenet.DataLoadService;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.collections.transformation.SortedList;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableView;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Loads tickets into a TableView one page at a time.
+ * The first page is loaded when the query changes and the next page is loaded
+ * when the user scrolls close to the end of the table. Refreshing only applies the
+ * tickets that changed since the last refresh to the rows already shown, following the change feed
+ * with a {@link ChangeCursor}.
+ * All queries run in the background through a {@link DataLoadService}, the rows are
+ * only changed on the JavaFX thread. The loaded rows are kept in the order of the query, the table shows
+ * them through a {@link SortedList}, so sorting by a column header does not reorder the loaded pages.
+ */
+class TicketTablePager
+{
+    private static final double LOAD_NEXT_PAGE_AT = 0.9;
+    private static final String FIRST_PAGE = "firstPage";
+    private static final String REFRESH = "refresh";
+    private static final String NEXT_PAGE = "nextPage";
+
+    private final DataLoadService loader = new DataLoadService("tickets");
+
+    private final TableView<Ticket> tableView;
+    private final Label countLabel;
+    private final ObservableList<Ticket> tickets = FXCollections.observableArrayList();
+    private TicketQuery query;
+    private boolean hasMorePages;
+    private Ticket lastPageTicket;
+    private ChangeCursor cursor;
+
+    /**
+     * Creates a pager for the table and starts listening for scrolling.
+     *
+     * @param tableView  the table showing the tickets
+     * @param countLabel the label showing the number of matching tickets
+     */
+    TicketTablePager(TableView<Ticket> tableView, Label countLabel)
+    {
+        this.tableView = tableView;
+        this.countLabel = countLabel;
+        SortedList<Ticket> sortedTickets = new SortedList<>(tickets);
+        sortedTickets.comparatorProperty().bind(tableView.comparatorProperty());
+        tableView.setItems(sortedTickets);
+        tableView.skinProperty().addListener((observable, oldSkin, newSkin) -> listenForScrolling());
+    }
+
+    /**
+     * Shows the tickets matching the query. A new query starts again from the first page,
+     * the same query refreshes the pages that are already shown.
+     *
+     * @param newQuery the first page query
+     */
+    void show(TicketQuery newQuery)
+    {
+        if (newQuery.equals(query))
+        {
+            refresh();
+            return;
+        }
+        query = newQuery;
+        loader.cancel(REFRESH);
+        loader.cancel(NEXT_PAGE);
+        loader.load(FIRST_PAGE, () ->
+        {
+            long firstPageVersion = Database.getCurrentVersion();
+            return new FirstPage(firstPageVersion, TicketDatabase.findTickets(newQuery), TicketDatabase.countTickets(newQuery));
+        }, firstPage ->
+        {
+            cursor = new ChangeCursor(firstPage.version());
+            hasMorePages = firstPage.tickets().size() == newQuery.getPageSize();
+            lastPageTicket = firstPage.tickets().isEmpty() ? null : firstPage.tickets().getLast();
+            tickets.setAll(firstPage.tickets());
+            countLabel.setText(String.valueOf(firstPage.count()));
+        });
+    }
+
+    /**
+     * Applies the tickets changed since the last refresh to the loaded rows. Changed tickets are replaced in place,
+     * tickets that no longer match are removed and new matching tickets are inserted at their sorted position if
+     * they fall within the loaded pages. Recent changes are read again until their versions have settled, so a ticket
+     * committed after a newer version was read is not missed. When nothing changed this costs a single version lookup.
+     * Refreshing waits until the first page of a new query is shown.
+     */
+    void refresh()
+    {
+        if (query == null || loader.isLoading(FIRST_PAGE))
+        {
+            return;
+        }
+        TicketQuery refreshedQuery = query;
+        ChangeCursor refreshedCursor = cursor;
+        loader.load(REFRESH, () ->
+        {
+            ChangeCursor.Read read = refreshedCursor.nextRead(Database.getCurrentVersion());
+            if (read == null)
+            {
+                return null;
+            }
+            ChangeSet<Ticket> changes = TicketDatabase.getChangesSince(read.since());
+            int count = changes.isEmpty() ? -1 : TicketDatabase.countTickets(refreshedQuery);
+            return new Refresh(read, changes, count);
+        }, refresh ->
+        {
+            if (refresh != null && refreshedQuery.equals(query) && refreshedCursor == cursor)
+            {
+                applyChanges(refresh);
+            }
+        });
+    }
+
+    /**
+     * Applies loaded changes to the rows.
+     *
+     * @param refresh the changes and the new ticket count
+     */
+    private void applyChanges(Refresh refresh)
+    {
+        cursor.advance(refresh.read());
+        ChangeSet<Ticket> changes = refresh.changes();
+        if (changes.isEmpty())
+        {
+            return;
+        }
+
+        Set<Long> removed = new HashSet<>(changes.deletedIds());
+        Map<Long, Ticket> matching = new HashMap<>();
+        for (Ticket ticket : changes.upserted())
+        {
+            if (query.matches(ticket))
+            {
+                matching.put(ticket.getId(), ticket);
+            }
+            else
+            {
+                removed.add(ticket.getId());
+            }
+        }
+        for (int i = 0; i < tickets.size(); i++)
+        {
+            Ticket replacement = matching.remove(tickets.get(i).getId());
+            if (replacement != null)
+            {
+                tickets.set(i, replacement);
+            }
+        }
+        tickets.removeIf(ticket -> removed.contains(ticket.getId()));
+        for (Ticket ticket : matching.values())
+        {
+            insertIfLoaded(ticket);
+        }
+        countLabel.setText(String.valueOf(refresh.count()));
+    }
+
+    /**
+     * Inserts a ticket at its sorted position, unless it belongs to a page that has not been loaded yet.
+     *
+     * @param ticket the ticket to insert
+     */
+    private void insertIfLoaded(Ticket ticket)
+    {
+        int index = Collections.binarySearch(tickets, ticket, query.comparator());
+        if (index >= 0)
+        {
+            return;
+        }
+        int insertionPoint = -index - 1;
+        if (insertionPoint < tickets.size() || !hasMorePages)
+        {
+            tickets.add(insertionPoint, ticket);
+        }
+    }
+
+    /**
+     * Appends the next page, if there is one. Rows that a refresh already inserted are not added twice.
+     */
+    private void loadNextPage()
+    {
+        if (!hasMorePages || lastPageTicket == null || loader.isLoading(NEXT_PAGE) || loader.isLoading(FIRST_PAGE))
+        {
+            return;
+        }
+        TicketQuery pagedQuery = query;
+        TicketQuery nextPageQuery = query.nextPage(lastPageTicket);
+        loader.load(NEXT_PAGE, () -> TicketDatabase.findTickets(nextPageQuery), nextPage ->
+        {
+            if (!pagedQuery.equals(query))
+            {
+                return;
+            }
+            hasMorePages = nextPage.size() == pagedQuery.getPageSize();
+            if (!nextPage.isEmpty())
+            {
+                lastPageTicket = nextPage.getLast();
+            }
+            Set<Long> shown = new HashSet<>();
+            for (Ticket ticket : tickets)
+            {
+                shown.add(ticket.getId());
+            }
+            for (Ticket ticket : nextPage)
+            {
+                if (shown.add(ticket.getId()))
+                {
+                    tickets.add(ticket);
+                }
+            }
+        });
+    }
+
+    /**
+     * Loads the next page whenever the vertical scroll bar gets close to the end.
+     * The scroll bar only exists once the table skin has been created.
+     */
+    private void listenForScrolling()
+    {
+        for (Node node : tableView.lookupAll(".scroll-bar"))
+        {
+            if (node instanceof ScrollBar scrollBar && scrollBar.getOrientation() == Orientation.VERTICAL)
+            {
+                scrollBar.valueProperty().addListener((observable, oldValue, newValue) ->
+                {
+                    if (newValue.doubleValue() >= scrollBar.getMax() * LOAD_NEXT_PAGE_AT)
+                    {
+                        loadNextPage();
+                    }
+                });
+            }
+        }
+    }
+
+    /**
+     * The first page of a query.
+     *
+     * @param version the change version the page was read at
+     * @param tickets the tickets of the first page
+     * @param count   the number of matching tickets
+     */
+    private record FirstPage(long version, List<Ticket> tickets, int count)
+    {
+    }
+
+    /**
+     * The tickets changed since the last refresh.
+     *
+     * @param read    the read of the change feed the changes came from
+     * @param changes the changed tickets
+     * @param count   the number of matching tickets, or -1 if nothing changed
+     */
+    private record Refresh(ChangeCursor.Read read, ChangeSet<Ticket> changes, int count)
+    {
+    }
+}
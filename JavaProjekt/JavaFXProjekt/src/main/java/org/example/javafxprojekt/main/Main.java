@@ -1,5 +1,10 @@
 package org.example.javafxprojekt.main;
 
+import hr.java.data_repository.database_repository.Database;
+import hr.java.data_repository.file_repository.ChangedDataRepository;
+import hr.java.data_repository.file_repository.ResolutionLogRepository;
+import hr.java.thread_managmenet.BackgroundExecutor;
+import hr.java.thread_managmenet.TicketManager;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
@@ -19,7 +24,8 @@ public class Main extends javafx.application.Application
     public static final Logger logger = LoggerFactory.getLogger(Main.class);
     /**
      * The start method is the main entry point for JavaFX applications.
-     * It loads the StartupScene.fxml file and sets it as the scene for the primary stage.
+     * It loads the StartupScene.fxml file, sets it as the scene for the primary stage
+     * and starts the {@link TicketManager} service.
      *
      * @param stage The primary stage for this JavaFX application.
      * @throws IOException If the FXMLLoader encounters an issue while loading the FXML file.
@@ -32,6 +38,20 @@ public class Main extends javafx.application.Application
         stage.setTitle("PROJEKT");
         stage.setScene(scene);
         stage.show();
+        TicketManager.getInstance().start();
+    }
+
+    /**
+     * Releases shared resources when the application exits.
+     */
+    @Override
+    public void stop()
+    {
+        TicketManager.getInstance().stop();
+        BackgroundExecutor.shutdown();
+        Database.closeConnectionPool();
+        ChangedDataRepository.close();
+        ResolutionLogRepository.close();
     }
 
     /**